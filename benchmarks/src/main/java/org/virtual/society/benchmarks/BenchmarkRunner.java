@@ -0,0 +1,22 @@
+package org.virtual.society.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Entry point of benchmarks.jar: JMH's own Main, but machine-readable results default to JSON in
+// jmh-result.json. Passing -rf or -rff yourself overrides that.
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(List.of(args));
+        if (!options.contains("-rf") && !options.contains("-rff")) {
+            options.addAll(0, List.of("-rf", "json", "-rff", "jmh-result.json"));
+        }
+        Main.main(options.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,67 @@
+package org.virtual.society.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.virtual.society.service.ProgressLineParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Parses a full `yt-dlp -v --newline` log per invocation, so scores are per download's worth of output.
+// Run with `-prof gc` to compare allocation per operation as well.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ProgressLineParserBenchmark {
+
+    private List<String> lines;
+    private ProgressLineParser parser;
+
+    @Setup
+    public void load() throws IOException {
+        try (InputStream log = getClass().getResourceAsStream("/yt-dlp-download.log")) {
+            if (log == null) {
+                throw new IOException("Missing yt-dlp-download.log");
+            }
+            lines = new BufferedReader(new InputStreamReader(log, StandardCharsets.UTF_8)).lines().toList();
+        }
+        parser = new ProgressLineParser();
+    }
+
+    @Benchmark
+    public void legacyRegex(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(LegacyProgressRegex.parseProgressLine(line));
+        }
+    }
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        for (String line : lines) {
+            ProgressLineParser.LineType type = parser.parse(line);
+            if (type != ProgressLineParser.LineType.NONE) {
+                blackhole.consume(parser.percent());
+                blackhole.consume(parser.downloadedBytes());
+                blackhole.consume(parser.bytesPerSecond());
+                blackhole.consume(parser.etaSeconds());
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.virtual.society.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.service.YoutubeDownloadService;
+
+import java.util.concurrent.TimeUnit;
+
+// isValidYouTubeUrl and extractVideoId through resolveVideoId, which runs on every info, download and
+// cache lookup. resolve() goes through both; reject() stops at the URL check, exception included.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class VideoIdBenchmark {
+
+    private static final String[] VALID = {
+            "https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+            "https://youtu.be/dQw4w9WgXcQ?si=4Cq0ylLz2Yl3QH8c",
+            "youtube.com/watch?v=dQw4w9WgXcQ&list=PLFgquLnL59alCl_2TQvOiD5Vgm1hCaGSI&index=3",
+            "https://www.youtube.com/watch?feature=player_embedded&v=aqz-KE-bpKQ",
+            "https://www.youtube.com/embed/jNQXAC9IVRw?start=10",
+            "http://youtube.com/v/jNQXAC9IVRw",
+    };
+
+    private static final String[] INVALID = {
+            "https://vimeo.com/76979871",
+            "https://www.youtube.com.evil.example/watch?v=dQw4w9WgXcQ",
+            "not a url",
+    };
+
+    private YoutubeDownloadService service;
+
+    @Setup
+    public void create() {
+        // resolveVideoId touches none of the injected collaborators
+        service = new YoutubeDownloadService();
+    }
+
+    @Benchmark
+    public void resolve(Blackhole blackhole) {
+        for (String url : VALID) {
+            blackhole.consume(service.resolveVideoId(url));
+        }
+    }
+
+    @Benchmark
+    public void reject(Blackhole blackhole) {
+        for (String url : INVALID) {
+            try {
+                blackhole.consume(service.resolveVideoId(url));
+            } catch (DownloadException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+}
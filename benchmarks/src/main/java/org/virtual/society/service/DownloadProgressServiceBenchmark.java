@@ -0,0 +1,71 @@
+package org.virtual.society.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.virtual.society.model.DownloadPhase;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// updateTransfer from many download threads at once, as the output readers of concurrent jobs call it.
+// "distinct" gives every thread its own job, so only the store's shard locks are shared; "shared" puts
+// all threads on one job, the worst case for the per-entry lock. Vary the thread count with -t.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+public class DownloadProgressServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Service {
+        @Param({"distinct", "shared"})
+        String jobs;
+
+        DownloadProgressService progress;
+
+        @Setup(Level.Trial)
+        public void create() {
+            progress = new DownloadProgressService();
+            progress.rateWindow = Duration.ofSeconds(5);
+            progress.shards = 16;
+            progress.maxEntries = 100_000;
+            progress.finishedTtl = Duration.ofMinutes(10);
+            progress.idleTtl = Duration.ofHours(6);
+            progress.backendType = "memory";
+            progress.init();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Job {
+        String downloadId;
+        long bytesDone;
+
+        @Setup(Level.Trial)
+        public void start(Service service, ThreadParams thread) {
+            downloadId = "distinct".equals(service.jobs) ? "job-" + thread.getThreadIndex() : "job";
+            service.progress.updatePhase(downloadId, DownloadPhase.DOWNLOADING);
+        }
+    }
+
+    @Benchmark
+    public void updateTransfer(Service service, Job job) {
+        // Wraps instead of finishing, so the job never turns terminal mid-measurement
+        job.bytesDone = (job.bytesDone + 65_536) % 1_000_000_000L;
+        service.progress.updateTransfer(job.downloadId, job.bytesDone / 1e7, job.bytesDone, 1_000_000_000L);
+    }
+}
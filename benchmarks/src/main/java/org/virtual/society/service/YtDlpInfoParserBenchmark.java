@@ -0,0 +1,80 @@
+package org.virtual.society.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.virtual.society.model.ResolvedMedia;
+import org.virtual.society.model.VideoInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// One `yt-dlp --dump-json` document per invocation (yt-dlp-dump.json: a 1080p video with the usual
+// storyboards, DASH formats and ~120 automatic caption languages). Sits in the service package because
+// the parser is package-private. Run with `-prof gc` to compare allocation per lookup as well.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class YtDlpInfoParserBenchmark {
+
+    private String document;
+
+    @Setup
+    public void load() throws IOException {
+        try (InputStream dump = getClass().getResourceAsStream("/yt-dlp-dump.json")) {
+            if (dump == null) {
+                throw new IOException("Missing yt-dlp-dump.json");
+            }
+            document = new String(dump.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public VideoInfo legacyTree() {
+        return LegacyDumpJsonTree.parseYtDlpJsonOutput(document);
+    }
+
+    @Benchmark
+    public VideoInfo videoInfo() throws IOException {
+        return YtDlpInfoParser.parseVideoInfo(new StringReader(document));
+    }
+
+    @Benchmark
+    public ResolvedMedia resolvedMedia() throws IOException {
+        return YtDlpInfoParser.parseResolvedMedia(new StringReader(document));
+    }
+
+    // The helpers run once per format and per lookup; each case covers every branch
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void formatFileSize(Blackhole blackhole) {
+        blackhole.consume(YtDlpInfoParser.formatFileSize("0"));
+        blackhole.consume(YtDlpInfoParser.formatFileSize("734003"));
+        blackhole.consume(YtDlpInfoParser.formatFileSize("58923712"));
+        blackhole.consume(YtDlpInfoParser.formatFileSize("4831838208"));
+        blackhole.consume(YtDlpInfoParser.formatFileSize("null"));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void formatDuration(Blackhole blackhole) {
+        blackhole.consume(YtDlpInfoParser.formatDuration("212"));
+        blackhole.consume(YtDlpInfoParser.formatDuration("212.091"));
+        blackhole.consume(YtDlpInfoParser.formatDuration("11045"));
+        blackhole.consume(YtDlpInfoParser.formatDuration(""));
+    }
+}
@@ -0,0 +1,393 @@
+package org.virtual.society.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.virtual.society.dto.BulkProgressResponse;
+import org.virtual.society.dto.ProgressResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drives a running instance (started with the loadtest profile, so downloads go through fake-yt-dlp)
+// at each concurrency level in turn: submits that many downloads at once and polls them to the end
+// through the bulk progress endpoint, while a few callers keep /info busy with uncached videos.
+// Reports jobs/s, /info and progress-poll latency, and the process's CPU, heap, threads and open
+// files as sampled from /q/metrics. Results go to stdout and, as JSON, to --out.
+public final class LoadDriver {
+
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "app", "http://127.0.0.1:8080",
+            "media-port", "8090",
+            "media-rate", "524288",
+            "levels", "10,100,1000",
+            "info-callers", "4",
+            "poll-interval", "PT1S",
+            "level-timeout", "PT10M",
+            "out", "loadtest-result.json");
+
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final String app;
+    private final Duration pollInterval;
+    private final Duration levelTimeout;
+    private final int infoCallers;
+    private final boolean infoFirst;
+    private final AtomicLong videoIds = new AtomicLong();
+    private final String runTag;
+
+    private LoadDriver(Map<String, String> options) {
+        this.app = options.get("app").replaceAll("/+$", "");
+        this.pollInterval = Duration.parse(options.get("poll-interval"));
+        this.levelTimeout = Duration.parse(options.get("level-timeout"));
+        this.infoCallers = Integer.parseInt(options.get("info-callers"));
+        this.infoFirst = options.containsKey("info-first");
+        String seconds = Long.toString(System.currentTimeMillis() / 1000 % (36 * 36 * 36 * 36), 36);
+        this.runTag = "0".repeat(4 - seconds.length()) + seconds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        try (MediaServer media = new MediaServer(Integer.parseInt(options.get("media-port")),
+                Long.parseLong(options.get("media-rate")))) {
+            media.start();
+            System.out.println("Media server on http://127.0.0.1:" + media.port() + " (FAKE_YTDLP_MEDIA_URL)");
+            if (options.containsKey("serve-only")) {
+                Thread.currentThread().join();
+            }
+            LoadDriver driver = new LoadDriver(options);
+            List<LevelResult> results = new ArrayList<>();
+            for (String level : options.get("levels").split(",")) {
+                LevelResult result = driver.runLevel(Integer.parseInt(level.trim()));
+                results.add(result);
+                System.out.println(result.summary());
+            }
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("app", driver.app);
+            report.put("mediaBytesServed", media.bytesServed());
+            report.put("mediaRequests", media.requests());
+            report.put("levels", results);
+            Path out = Path.of(options.get("out"));
+            driver.mapper.writeValue(out.toFile(), report);
+            System.out.println("Results written to " + out.toAbsolutePath());
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if ("serve-only".equals(name) || "info-first".equals(name)) {
+                options.put(name, "true");
+            } else if (!DEFAULTS.containsKey(name) || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unknown option or missing value: " + args[i]
+                        + " (options: " + DEFAULTS.keySet() + ", --serve-only, --info-first)");
+            } else {
+                options.put(name, args[++i]);
+            }
+        }
+        return options;
+    }
+
+    private LevelResult runLevel(int jobs) throws Exception {
+        System.out.println("Level " + jobs + ": submitting " + jobs + " downloads");
+        ResourceSampler resources = new ResourceSampler();
+        Latencies info = new Latencies();
+        Latencies polls = new Latencies();
+        AtomicLong pollBytes = new AtomicLong();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Map<String, Double> before = scrape();
+        Set<String> pending = ConcurrentHashMap.newKeySet();
+        Map<String, ProgressResponse> finished = new ConcurrentHashMap<>();
+
+        long started = System.nanoTime();
+        long deadline = started + levelTimeout.toNanos();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            threads.execute(() -> resources.run(running));
+            for (int i = 0; i < infoCallers; i++) {
+                threads.execute(() -> callInfo(info, running));
+            }
+            List<Future<String>> submissions = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                submissions.add(threads.submit(() -> submit(rejected, deadline)));
+            }
+            for (Future<String> submission : submissions) {
+                String downloadId = submission.get();
+                if (downloadId != null) {
+                    pending.add(downloadId);
+                }
+            }
+            while (!pending.isEmpty() && System.nanoTime() < deadline) {
+                poll(pending, finished, polls, pollBytes);
+                TimeUnit.MILLISECONDS.sleep(pollInterval.toMillis());
+            }
+            running.set(false);
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        Map<String, Double> after = scrape();
+
+        int completed = 0;
+        long bytes = 0;
+        for (ProgressResponse progress : finished.values()) {
+            if ("COMPLETED".equals(String.valueOf(progress.phase))) {
+                completed++;
+                bytes += Math.max(0, progress.bytesDone);
+            }
+        }
+        return new LevelResult(jobs, completed, finished.size() - completed, pending.size(), rejected.get(),
+                seconds, completed / seconds, bytes / seconds / (1024 * 1024),
+                info.count(), info.percentileMillis(50), info.percentileMillis(99), info.errors(),
+                polls.count(), polls.percentileMillis(50), polls.percentileMillis(99),
+                polls.count() == 0 ? 0 : pollBytes.get() / polls.count(),
+                delta(before, after, "dlf_subprocess_spawn_seconds_count"),
+                resources.averageCpu(), resources.peakHeapMb(), resources.peakThreads(), resources.peakOpenFiles());
+    }
+
+    // Returns the download ID, or null if the submission failed or the queue stayed full past the deadline.
+    // With --info-first every download follows an /info call for its video, as in the web UI.
+    private String submit(AtomicInteger rejected, long deadline) throws Exception {
+        String videoUrl = "https://www.youtube.com/watch?v=" + nextVideoId('L');
+        if (infoFirst) {
+            String query = URLEncoder.encode(videoUrl, StandardCharsets.UTF_8);
+            client.send(HttpRequest.newBuilder(URI.create(app + "/api/download/info?url=" + query))
+                    .timeout(Duration.ofSeconds(60)).GET().build(), HttpResponse.BodyHandlers.discarding());
+        }
+        String body = mapper.writeValueAsString(Map.of("url", videoUrl));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(app + "/api/download/request"))
+                .header("Content-Type", "application/json")
+                .header("X-Client-Id", "loadtest")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        while (System.nanoTime() < deadline) {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200) {
+                return mapper.readTree(response.body()).path("downloadId").asText(null);
+            }
+            if (response.statusCode() != 429) {
+                System.err.println("Submission failed with HTTP " + response.statusCode() + ": " + response.body());
+                return null;
+            }
+            // The app asks for 30s; a load test wants to know as soon as a slot frees up
+            rejected.incrementAndGet();
+            TimeUnit.MILLISECONDS.sleep(250);
+        }
+        return null;
+    }
+
+    private void poll(Set<String> pending, Map<String, ProgressResponse> finished, Latencies polls,
+                      AtomicLong pollBytes) throws IOException, InterruptedException {
+        List<String> ids = new ArrayList<>(pending);
+        // The app caps a bulk lookup at app.progress.bulk.max-ids (1000 by default)
+        for (int from = 0; from < ids.size(); from += 1000) {
+            String query = URLEncoder.encode(String.join(",", ids.subList(from, Math.min(ids.size(), from + 1000))),
+                    StandardCharsets.UTF_8);
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = client.send(
+                    HttpRequest.newBuilder(URI.create(app + "/api/download/progress?ids=" + query)).GET().build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            polls.record(System.nanoTime() - start, response.statusCode() == 200);
+            pollBytes.addAndGet(response.body().length);
+            if (response.statusCode() != 200) {
+                continue;
+            }
+            BulkProgressResponse bulk = mapper.readValue(response.body(), BulkProgressResponse.class);
+            for (ProgressResponse progress : bulk.progress) {
+                String phase = String.valueOf(progress.phase);
+                if ("COMPLETED".equals(phase) || "FAILED".equals(phase)) {
+                    finished.put(progress.downloadId, progress);
+                    pending.remove(progress.downloadId);
+                }
+            }
+            // Expired or evicted before we saw it finish
+            for (String missing : bulk.missing) {
+                pending.remove(missing);
+            }
+        }
+    }
+
+    // Every call asks for a video nobody asked for before, so each one costs a real extraction
+    private void callInfo(Latencies latencies, AtomicBoolean running) {
+        while (running.get()) {
+            String url = URLEncoder.encode("https://www.youtube.com/watch?v=" + nextVideoId('I'), StandardCharsets.UTF_8);
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(
+                        HttpRequest.newBuilder(URI.create(app + "/api/download/info?url=" + url))
+                                .timeout(Duration.ofSeconds(60)).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                latencies.record(System.nanoTime() - start, response.statusCode() == 200);
+            } catch (IOException e) {
+                latencies.record(System.nanoTime() - start, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 11 characters like a real video ID. The run tag keeps IDs from earlier runs, whose files are
+    // still in the artifact store, from turning downloads into cache hits.
+    private String nextVideoId(char prefix) {
+        return prefix + runTag + String.format("%06d", videoIds.incrementAndGet());
+    }
+
+    // Prometheus text format, summed over all label sets of a name
+    private Map<String, Double> scrape() {
+        Map<String, Double> values = new HashMap<>();
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(app + "/q/metrics"))
+                    .timeout(Duration.ofSeconds(10)).GET().build(), HttpResponse.BodyHandlers.ofString());
+            for (String line : response.body().split("\n")) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int space = line.lastIndexOf(' ');
+                int labels = line.indexOf('{');
+                String name = line.substring(0, labels > 0 && labels < space ? labels : space);
+                String key = name.equals("jvm_memory_used_bytes") && line.contains("area=\"heap\"") ? name + ":heap" : name;
+                try {
+                    values.merge(key, Double.parseDouble(line.substring(space + 1)), Double::sum);
+                } catch (NumberFormatException e) {
+                    // NaN gauges and the like
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not scrape " + app + "/q/metrics: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return values;
+    }
+
+    private static long delta(Map<String, Double> before, Map<String, Double> after, String name) {
+        return Math.round(after.getOrDefault(name, 0.0) - before.getOrDefault(name, 0.0));
+    }
+
+    private final class ResourceSampler {
+        private double cpuTotal;
+        private int cpuSamples;
+        private double peakHeap;
+        private double peakThreads;
+        private double peakOpenFiles;
+
+        private void run(AtomicBoolean running) {
+            while (running.get()) {
+                Map<String, Double> sample = scrape();
+                synchronized (this) {
+                    Double cpu = sample.get("process_cpu_usage");
+                    if (cpu != null) {
+                        cpuTotal += cpu;
+                        cpuSamples++;
+                    }
+                    peakHeap = Math.max(peakHeap, sample.getOrDefault("jvm_memory_used_bytes:heap", 0.0));
+                    peakThreads = Math.max(peakThreads, sample.getOrDefault("jvm_threads_live_threads", 0.0));
+                    peakOpenFiles = Math.max(peakOpenFiles, sample.getOrDefault("process_files_open_files", 0.0));
+                }
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        // Share of all cores, as Micrometer reports it
+        synchronized double averageCpu() {
+            return cpuSamples == 0 ? 0 : cpuTotal / cpuSamples;
+        }
+
+        synchronized long peakHeapMb() {
+            return Math.round(peakHeap / (1024 * 1024));
+        }
+
+        synchronized long peakThreads() {
+            return Math.round(peakThreads);
+        }
+
+        synchronized long peakOpenFiles() {
+            return Math.round(peakOpenFiles);
+        }
+    }
+
+    private static final class Latencies {
+        private long[] nanos = new long[1024];
+        private int count;
+        private int errors;
+
+        synchronized void record(long elapsed, boolean success) {
+            if (!success) {
+                errors++;
+                return;
+            }
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = elapsed;
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized int errors() {
+            return errors;
+        }
+
+        synchronized double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+        }
+    }
+
+    record LevelResult(int jobs, int completed, int failed, int unfinished, int queueRejections,
+                       double seconds, double jobsPerSecond, double mebibytesPerSecond,
+                       int infoCalls, double infoP50Millis, double infoP99Millis, int infoErrors,
+                       int progressPolls, double pollP50Millis, double pollP99Millis, long pollBytes,
+                       long processesSpawned, double averageCpu, long peakHeapMb, long peakThreads,
+                       long peakOpenFiles) {
+
+        String summary() {
+            return String.format("Level %d: %d done, %d failed, %d unfinished in %.1fs (%.2f jobs/s, %.1f MiB/s, "
+                            + "%d queue rejections) | /info p50 %.1fms p99 %.1fms (%d calls, %d errors) | "
+                            + "progress poll p50 %.1fms p99 %.1fms, %d B/poll | cpu %.0f%%, heap %d MiB, "
+                            + "%d threads, %d open files, %d processes",
+                    jobs, completed, failed, unfinished, seconds, jobsPerSecond, mebibytesPerSecond, queueRejections,
+                    infoP50Millis, infoP99Millis, infoCalls, infoErrors, pollP50Millis, pollP99Millis, pollBytes,
+                    averageCpu * 100, peakHeapMb, peakThreads, peakOpenFiles, processesSpawned);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.virtual.society.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Serves synthetic media for fake-yt-dlp and the in-JVM engine: GET /media/<name>?size=N returns N bytes
+// with Range support (single ranges, as yt-dlp and SegmentedDownloader send them), paced per response
+// to bytesPerSecond so a job lasts long enough to be observed mid-transfer.
+final class MediaServer implements AutoCloseable {
+
+    private static final Pattern SIZE = Pattern.compile("(?:^|&)size=(\\d+)");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final int CHUNK = 16 * 1024;
+    private static final byte[] PATTERN = new byte[CHUNK];
+
+    static {
+        Arrays.fill(PATTERN, (byte) 0x5a);
+    }
+
+    private final HttpServer server;
+    private final long bytesPerSecond;
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    MediaServer(int port, long bytesPerSecond) throws IOException {
+        this.bytesPerSecond = bytesPerSecond;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("media-", 1).factory()));
+        server.createContext("/media/", this::serveMedia);
+        server.createContext("/thumb/", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+    }
+
+    void start() {
+        server.start();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    long bytesServed() {
+        return bytesServed.get();
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void serveMedia(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            String query = exchange.getRequestURI().getRawQuery();
+            Matcher size = SIZE.matcher(query == null ? "" : query);
+            long length = size.find() ? Long.parseLong(size.group(1)) : 1024 * 1024;
+            long start = 0;
+            long end = length - 1;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            boolean partial = false;
+            if (range != null) {
+                Matcher matcher = RANGE.matcher(range);
+                if (matcher.matches()) {
+                    start = Long.parseLong(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, Long.parseLong(matcher.group(2)));
+                    }
+                    if (start > end) {
+                        exchange.getResponseHeaders().set("Content-Range", "bytes */" + length);
+                        exchange.sendResponseHeaders(416, -1);
+                        return;
+                    }
+                    partial = true;
+                }
+            }
+            long count = end - start + 1;
+            exchange.getResponseHeaders().set("Content-Type", "video/mp4");
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            if (partial) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+            exchange.sendResponseHeaders(partial ? 206 : 200, count);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                return;
+            }
+            write(exchange.getResponseBody(), count);
+        }
+    }
+
+    private void write(OutputStream body, long count) throws IOException {
+        long began = System.nanoTime();
+        long sent = 0;
+        while (sent < count) {
+            int chunk = (int) Math.min(CHUNK, count - sent);
+            body.write(PATTERN, 0, chunk);
+            sent += chunk;
+            bytesServed.addAndGet(chunk);
+            if (bytesPerSecond > 0) {
+                long due = began + sent * 1_000_000_000L / bytesPerSecond;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while pacing", e);
+                    }
+                }
+            }
+        }
+    }
+}
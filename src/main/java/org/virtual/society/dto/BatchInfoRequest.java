@@ -0,0 +1,7 @@
+package org.virtual.society.dto;
+
+import java.util.List;
+
+public class BatchInfoRequest {
+    public List<String> urls;
+}
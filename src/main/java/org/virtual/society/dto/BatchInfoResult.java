@@ -0,0 +1,31 @@
+package org.virtual.society.dto;
+
+import org.virtual.society.model.VideoInfo;
+
+import java.util.List;
+
+// One line of the batch response: either the info or the error for every submitted URL of one video
+public class BatchInfoResult {
+    public String videoId;
+    public List<String> urls;
+    public boolean cached;
+    public VideoInfo info;
+    public String error;
+
+    public static BatchInfoResult success(String videoId, List<String> urls, VideoInfo info, boolean cached) {
+        BatchInfoResult result = new BatchInfoResult();
+        result.videoId = videoId;
+        result.urls = urls;
+        result.info = info;
+        result.cached = cached;
+        return result;
+    }
+
+    public static BatchInfoResult failure(String videoId, List<String> urls, String error) {
+        BatchInfoResult result = new BatchInfoResult();
+        result.videoId = videoId;
+        result.urls = urls;
+        result.error = error;
+        return result;
+    }
+}
@@ -0,0 +1,10 @@
+package org.virtual.society.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Progress of many downloads in one response; IDs nothing is known about (any more) are listed in missing
+public class BulkProgressResponse {
+    public List<ProgressResponse> progress = new ArrayList<>();
+    public List<String> missing = new ArrayList<>();
+}
@@ -0,0 +1,28 @@
+package org.virtual.society.dto;
+
+// Turns numeric transfer figures into the speed/ETA strings the progress API exposes
+final class ProgressFormat {
+
+    private ProgressFormat() {
+    }
+
+    static String speed(double bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            return "Unknown";
+        }
+        if (bytesPerSecond >= 1024 * 1024) {
+            return String.format("%.2fMiB/s", bytesPerSecond / (1024 * 1024));
+        }
+        return String.format("%.2fKiB/s", bytesPerSecond / 1024);
+    }
+
+    static String eta(long seconds) {
+        if (seconds < 0) {
+            return "Unknown";
+        }
+        if (seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+        }
+        return String.format("%02d:%02d", seconds / 60, seconds % 60);
+    }
+}
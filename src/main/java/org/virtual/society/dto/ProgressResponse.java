@@ -0,0 +1,59 @@
+package org.virtual.society.dto;
+
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.DownloadProgress;
+
+// API view of a job's progress: the numeric fields as stored, plus the display strings the
+// progress endpoints have always returned (status, speed, eta), which are only built here
+public class ProgressResponse {
+    public String downloadId;
+    public DownloadPhase phase;
+    public double percentage;
+    public String status;
+    public String speed;
+    public String eta;
+    public long bytesDone;
+    public long bytesTotal;
+    public double bytesPerSecond;
+    public double currentBytesPerSecond;
+    public long etaSeconds;
+    public long lastUpdate;
+    // Only set for playlist jobs
+    public Integer entriesCompleted;
+    public Integer entriesFailed;
+    public Integer entriesTotal;
+
+    public static ProgressResponse from(DownloadProgress progress) {
+        ProgressResponse response = new ProgressResponse();
+        response.downloadId = progress.getDownloadId();
+        response.phase = progress.getPhase();
+        response.percentage = progress.getPercentage();
+        response.status = status(progress);
+        boolean transferring = progress.getPhase() == DownloadPhase.DOWNLOADING;
+        response.speed = ProgressFormat.speed(transferring ? progress.getSmoothedBytesPerSecond() : 0);
+        response.eta = ProgressFormat.eta(progress.getEtaSeconds());
+        response.bytesDone = progress.getBytesDone();
+        response.bytesTotal = progress.getBytesTotal();
+        response.bytesPerSecond = transferring ? progress.getSmoothedBytesPerSecond() : 0;
+        response.currentBytesPerSecond = transferring ? progress.getBytesPerSecond() : 0;
+        response.etaSeconds = progress.getEtaSeconds();
+        response.lastUpdate = progress.getLastUpdate();
+        if (progress.isPlaylist()) {
+            response.entriesCompleted = progress.getEntriesCompleted();
+            response.entriesFailed = progress.getEntriesFailed();
+            response.entriesTotal = progress.getEntriesTotal();
+        }
+        return response;
+    }
+
+    private static String status(DownloadProgress progress) {
+        return switch (progress.getPhase()) {
+            case QUEUED -> "Queued";
+            case STARTING -> "Starting download...";
+            case DOWNLOADING -> "Downloading";
+            case MERGING -> "Merging";
+            case COMPLETED -> "Download completed";
+            case FAILED -> "ERROR: " + progress.getMessage();
+        };
+    }
+}
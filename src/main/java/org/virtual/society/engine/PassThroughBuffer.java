@@ -0,0 +1,227 @@
+package org.virtual.society.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Hands the bytes of one transfer to one reader without letting the reader hold up the transfer. Bytes
+// go into a fixed off-heap ring; once the reader is a full ring behind, further bytes are appended to a
+// spill file, and the ring is only used again after the reader has caught up with the file. The writer
+// never waits for the reader, and memory stays bounded however slow the reader is.
+//
+// One writer thread and one reader thread. Copies happen outside the lock: the writer only fills space
+// the reader has released, the reader only takes bytes the writer has published.
+public final class PassThroughBuffer implements WritableByteChannel {
+
+    private final ByteBuffer ring;
+    private final int capacity;
+    private final Path spillDir;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition readable = lock.newCondition();
+    // Absolute byte counts; a count maps to ring slot count % capacity
+    private long ringWritten;
+    private long ringRead;
+    // Offsets in the spill file, which only ever grows and is deleted with the buffer
+    private FileChannel spill;
+    private long spillWritten;
+    private long spillRead;
+    private boolean finished;
+    private IOException failure;
+    private volatile boolean closed;
+
+    // ring is typically a pooled direct buffer; the spill file is only created if the reader falls behind
+    public PassThroughBuffer(ByteBuffer ring, Path spillDir) {
+        this.ring = ring;
+        this.capacity = ring.capacity();
+        this.spillDir = spillDir;
+    }
+
+    // Never blocks on the reader. Once the reader has closed, bytes are accepted and dropped.
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        int length = source.remaining();
+        int toRing;
+        long ringAt;
+        long spillAt;
+        FileChannel spillChannel = null;
+        lock.lock();
+        try {
+            if (closed) {
+                source.position(source.limit());
+                return length;
+            }
+            // While the spill file holds unread bytes, newer bytes have to queue behind them
+            toRing = spillWritten > spillRead ? 0 : (int) Math.min(length, capacity - (ringWritten - ringRead));
+            ringAt = ringWritten;
+            spillAt = spillWritten;
+            if (toRing < length) {
+                spillChannel = openSpill();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (toRing > 0) {
+            copyToRing(ringAt, source, toRing);
+        }
+        try {
+            while (source.hasRemaining()) {
+                spillAt += spillChannel.write(source, spillAt);
+            }
+        } catch (ClosedChannelException e) {
+            if (!closed) {
+                throw e;
+            }
+            source.position(source.limit());
+            return length;
+        }
+        lock.lock();
+        try {
+            ringWritten += toRing;
+            spillWritten += length - toRing;
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return length;
+    }
+
+    // Blocks until bytes are available; -1 once everything written before finish() has been read
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        long at;
+        int available;
+        boolean fromRing;
+        lock.lock();
+        try {
+            while (ringWritten == ringRead && spillWritten == spillRead && !finished && failure == null && !closed) {
+                readable.await();
+            }
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            if (failure != null) {
+                throw new IOException("Transfer failed: " + failure.getMessage(), failure);
+            }
+            fromRing = ringWritten > ringRead;
+            if (fromRing) {
+                at = ringRead;
+                available = (int) Math.min(length, ringWritten - ringRead);
+            } else if (spillWritten > spillRead) {
+                at = spillRead;
+                available = (int) Math.min(length, spillWritten - spillRead);
+            } else {
+                return -1;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for data", e);
+        } finally {
+            lock.unlock();
+        }
+
+        int read;
+        if (fromRing) {
+            copyFromRing(at, buffer, offset, available);
+            read = available;
+        } else {
+            read = spill.read(ByteBuffer.wrap(buffer, offset, available), at);
+        }
+        lock.lock();
+        try {
+            if (fromRing) {
+                ringRead += read;
+            } else {
+                spillRead += read;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return read;
+    }
+
+    // The writer is done; the reader still gets everything written so far
+    public void finish() {
+        lock.lock();
+        try {
+            finished = true;
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The writer gave up; the reader's next read fails instead of seeing a truncated stream as complete
+    public void fail(IOException cause) {
+        lock.lock();
+        try {
+            failure = cause;
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Bytes that went through the spill file instead of the ring
+    public long spilledBytes() {
+        lock.lock();
+        try {
+            return spillWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    // Called by the reader when it stops; later writes are dropped and the spill file is deleted
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (spill != null) {
+            spill.close();
+        }
+    }
+
+    private FileChannel openSpill() throws IOException {
+        if (spill == null) {
+            Files.createDirectories(spillDir);
+            Path file = Files.createTempFile(spillDir, "stream", ".spill");
+            spill = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        return spill;
+    }
+
+    private void copyToRing(long at, ByteBuffer source, int length) {
+        int index = (int) (at % capacity);
+        int first = Math.min(length, capacity - index);
+        ring.put(index, source, source.position(), first);
+        ring.put(0, source, source.position() + first, length - first);
+        source.position(source.position() + length);
+    }
+
+    private void copyFromRing(long at, byte[] target, int offset, int length) {
+        int index = (int) (at % capacity);
+        int first = Math.min(length, capacity - index);
+        ring.get(index, target, offset, first);
+        ring.get(0, target, offset + first, length - first);
+    }
+}
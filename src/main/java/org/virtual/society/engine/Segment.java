@@ -0,0 +1,77 @@
+package org.virtual.society.engine;
+
+import org.virtual.society.model.SegmentState;
+
+// A byte range [start, end) of the target file owned by one connection. Bytes up to `reserved`
+// have been handed out for writing, bytes up to `written` are on disk. The end can shrink when
+// another connection takes over the tail (see split).
+final class Segment {
+    private final long start;
+    private long written;
+    private long reserved;
+    private long end;
+    private boolean started;
+
+    Segment(long start, long end) {
+        this(start, start, end);
+    }
+
+    Segment(long start, long written, long end) {
+        this.start = start;
+        this.written = written;
+        this.reserved = written;
+        this.end = end;
+    }
+
+    // Only written bytes are reported, so a resumed transfer never skips data that was not stored
+    synchronized SegmentState snapshot() {
+        return new SegmentState(start, written, end);
+    }
+
+    synchronized long position() {
+        return reserved;
+    }
+
+    synchronized long end() {
+        return end;
+    }
+
+    synchronized long remaining() {
+        return end - reserved;
+    }
+
+    synchronized boolean isDone() {
+        return reserved >= end;
+    }
+
+    synchronized boolean tryStart() {
+        if (started) {
+            return false;
+        }
+        started = true;
+        return true;
+    }
+
+    // Reserves up to length bytes at the current position; returns how many may be written there
+    synchronized int claim(int length) {
+        int allowed = (int) Math.max(0, Math.min(length, end - reserved));
+        reserved += allowed;
+        return allowed;
+    }
+
+    synchronized void commit(int length) {
+        written += length;
+    }
+
+    // Hands the upper half of the remaining range to a new segment, or null if it is too small to split
+    synchronized Segment split(long minSegmentBytes) {
+        long remaining = end - reserved;
+        if (!started || remaining < 2 * minSegmentBytes) {
+            return null;
+        }
+        long mid = reserved + remaining / 2;
+        Segment tail = new Segment(mid, end);
+        end = mid;
+        return tail;
+    }
+}
@@ -0,0 +1,496 @@
+package org.virtual.society.engine;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.model.SegmentState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Fetches one HTTP resource over several concurrent Range requests, writing every chunk
+// straight to its offset in a preallocated file.
+@ApplicationScoped
+public class SegmentedDownloader {
+
+    private static final Pattern CONTENT_RANGE_TOTAL = Pattern.compile("bytes\\s+\\d+-\\d+/(\\d+)");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CHECKPOINT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Segments of an in-order transfer; connections take them front to back
+    private static final int IN_ORDER_SEGMENTS = 32;
+
+    @ConfigProperty(name = "app.engine.connections", defaultValue = "8")
+    int connections;
+
+    @ConfigProperty(name = "app.engine.min-segment-bytes", defaultValue = "1048576")
+    long minSegmentBytes;
+
+    @ConfigProperty(name = "app.engine.segment-retries", defaultValue = "3")
+    int segmentRetries;
+
+    @ConfigProperty(name = "app.engine.request-timeout-seconds", defaultValue = "30")
+    int requestTimeoutSeconds;
+
+    // A connection that delivers no bytes for this long is abandoned and retried
+    @ConfigProperty(name = "app.engine.read-timeout-seconds", defaultValue = "30")
+    int readTimeoutSeconds;
+
+    private HttpClient httpClient;
+    // One virtual thread per connection; bounded by scheduler concurrency x connections per download
+    private ExecutorService segmentExecutor;
+    private ScheduledExecutorService stallMonitor;
+
+    @PostConstruct
+    void init() {
+        httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(requestTimeoutSeconds))
+                .build();
+        segmentExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dlf-segment-", 1).factory());
+        stallMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dlf-segment-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        segmentExecutor.shutdownNow();
+        stallMonitor.shutdownNow();
+    }
+
+    public long download(URI uri, Map<String, String> headers, Path target, TransferListener listener) throws IOException {
+        return download(uri, headers, target, listener, List.of(), Throttle.NONE);
+    }
+
+    public long download(URI uri, Map<String, String> headers, Path target, TransferListener listener,
+                         List<SegmentState> resumeFrom, Throttle throttle) throws IOException {
+        return download(uri, headers, target, listener, resumeFrom, throttle, false);
+    }
+
+    // Resumes from the given segment checkpoint when the partial file still matches the remote size.
+    // Every connection of the transfer draws from the same throttle. inOrder splits the file into many
+    // small segments instead of one per connection, so the checkpointed prefix of the file grows steadily
+    // and a reader can follow the download.
+    public long download(URI uri, Map<String, String> headers, Path target, TransferListener listener,
+                         List<SegmentState> resumeFrom, Throttle throttle, boolean inOrder) throws IOException {
+        Probe probe = probe(uri, headers);
+        if (!probe.rangesSupported || probe.length < 2 * minSegmentBytes || connections <= 1) {
+            return downloadSingle(uri, headers, target, probe.length, listener, throttle);
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        long alreadyDone = 0;
+        if (canResume(target, probe.length, resumeFrom)) {
+            for (SegmentState state : resumeFrom) {
+                segments.add(new Segment(state.getStart(), state.getPosition(), state.getEnd()));
+                alreadyDone += state.getPosition() - state.getStart();
+            }
+        } else {
+            try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+                file.setLength(probe.length);
+            }
+            int initialSegments = (int) Math.min(inOrder ? Math.max(connections, IN_ORDER_SEGMENTS) : connections,
+                    probe.length / minSegmentBytes);
+            long segmentSize = probe.length / initialSegments;
+            for (int i = 0; i < initialSegments; i++) {
+                long start = i * segmentSize;
+                long end = i == initialSegments - 1 ? probe.length : start + segmentSize;
+                segments.add(new Segment(start, end));
+            }
+        }
+
+        Transfer transfer = new Transfer(uri, headers, probe.length, segments, listener, throttle, alreadyDone);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                workers.add(segmentExecutor.submit(() -> {
+                    transfer.work(channel);
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            transfer.checkpoint(channel);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Segmented download failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            // Stops the connections at their next read
+            transfer.failed = true;
+            Thread.currentThread().interrupt();
+            throw new IOException("Segmented download interrupted", e);
+        }
+        return probe.length;
+    }
+
+    // Fetches the resource front to back over one connection and hands every chunk to the sink as it
+    // arrives, for callers that pass the bytes on while they download instead of reading a file afterwards
+    public long stream(URI uri, Map<String, String> headers, WritableByteChannel sink, TransferListener listener,
+                       Throttle throttle) throws IOException {
+        HttpResponse<InputStream> response = send(newRequest(uri, headers).GET().build());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Media URL returned HTTP " + response.statusCode());
+        }
+        long total = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        long written = 0;
+        InputStream body = response.body();
+        ReadGuard guard = new ReadGuard(body);
+        try (body) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (true) {
+                guard.reading(true);
+                int read = body.read(buffer);
+                guard.reading(false);
+                if (read == -1) {
+                    break;
+                }
+                throttle.acquire(read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    sink.write(chunk);
+                }
+                written += read;
+                listener.onProgress(written, total);
+            }
+        } catch (IOException e) {
+            if (guard.fired()) {
+                throw new IOException("No data received for " + readTimeoutSeconds + " seconds", e);
+            }
+            throw e;
+        } finally {
+            guard.cancel();
+        }
+        if (total > 0 && written != total) {
+            throw new IOException("Download truncated: " + written + " of " + total + " bytes");
+        }
+        return written;
+    }
+
+    private boolean canResume(Path target, long length, List<SegmentState> resumeFrom) throws IOException {
+        if (resumeFrom == null || resumeFrom.isEmpty() || !Files.exists(target) || Files.size(target) != length) {
+            return false;
+        }
+        long covered = 0;
+        for (SegmentState state : resumeFrom) {
+            covered += state.getEnd() - state.getStart();
+        }
+        return covered == length;
+    }
+
+    private Probe probe(URI uri, Map<String, String> headers) throws IOException {
+        HttpRequest request = newRequest(uri, headers).header("Range", "bytes=0-0").GET().build();
+        HttpResponse<InputStream> response = send(request);
+        // Only the one-byte answer is read; a server that ignores Range sends the whole resource, and
+        // closing the body unread aborts that transfer instead of downloading it twice
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 206) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+        if (response.statusCode() == 206) {
+            String contentRange = response.headers().firstValue("Content-Range").orElse("");
+            Matcher matcher = CONTENT_RANGE_TOTAL.matcher(contentRange);
+            if (matcher.find()) {
+                return new Probe(true, Long.parseLong(matcher.group(1)));
+            }
+        }
+        if (response.statusCode() >= 400) {
+            throw new IOException("Media URL returned HTTP " + response.statusCode());
+        }
+        return new Probe(false, response.headers().firstValueAsLong("Content-Length").orElse(-1));
+    }
+
+    private long downloadSingle(URI uri, Map<String, String> headers, Path target, long expectedLength,
+                                TransferListener listener, Throttle throttle) throws IOException {
+        HttpResponse<InputStream> response = send(newRequest(uri, headers).GET().build());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Media URL returned HTTP " + response.statusCode());
+        }
+        long total = response.headers().firstValueAsLong("Content-Length").orElse(expectedLength);
+        long written = 0;
+        InputStream body = response.body();
+        ReadGuard guard = new ReadGuard(body);
+        try (body;
+             FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (true) {
+                guard.reading(true);
+                int read = body.read(buffer);
+                guard.reading(false);
+                if (read == -1) {
+                    break;
+                }
+                throttle.acquire(read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    written += channel.write(chunk, written);
+                }
+                listener.onProgress(written, total);
+            }
+        } catch (IOException e) {
+            if (guard.fired()) {
+                throw new IOException("No data received for " + readTimeoutSeconds + " seconds", e);
+            }
+            throw e;
+        } finally {
+            guard.cancel();
+        }
+        if (total > 0 && written != total) {
+            throw new IOException("Download truncated: " + written + " of " + total + " bytes");
+        }
+        return written;
+    }
+
+    private HttpRequest.Builder newRequest(URI uri, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(requestTimeoutSeconds));
+        if (headers != null) {
+            headers.forEach((name, value) -> {
+                // Restricted headers are managed by the client itself
+                if (!"Host".equalsIgnoreCase(name) && !"Connection".equalsIgnoreCase(name)
+                        && !"Content-Length".equalsIgnoreCase(name)) {
+                    builder.header(name, value);
+                }
+            });
+        }
+        return builder;
+    }
+
+    private HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while connecting to " + request.uri().getHost(), e);
+        }
+    }
+
+    private record Probe(boolean rangesSupported, long length) {}
+
+    // Shared state of one segmented transfer; every connection runs work() until no segment is left
+    private final class Transfer {
+        private final URI uri;
+        private final Map<String, String> headers;
+        private final long total;
+        private final List<Segment> segments;
+        private final TransferListener listener;
+        private final Throttle throttle;
+        private final AtomicLong bytesDone;
+        private final AtomicLong lastCheckpoint = new AtomicLong(System.nanoTime());
+        private volatile boolean failed;
+
+        private Transfer(URI uri, Map<String, String> headers, long total, List<Segment> segments,
+                         TransferListener listener, Throttle throttle, long alreadyDone) {
+            this.uri = uri;
+            this.headers = headers;
+            this.total = total;
+            this.segments = segments;
+            this.listener = listener;
+            this.throttle = throttle;
+            this.bytesDone = new AtomicLong(alreadyDone);
+        }
+
+        private void checkpoint(FileChannel channel) throws IOException {
+            // Snapshot first, then fsync: every byte the snapshot counts as done was written before the
+            // force, so it is durable before anyone can record it. Bytes other connections write in
+            // between are simply left for the next checkpoint.
+            List<SegmentState> states = new ArrayList<>();
+            synchronized (segments) {
+                for (Segment segment : segments) {
+                    states.add(segment.snapshot());
+                }
+            }
+            channel.force(false);
+            listener.onCheckpoint(states);
+        }
+
+        private void maybeCheckpoint(FileChannel channel) throws IOException {
+            long last = lastCheckpoint.get();
+            long now = System.nanoTime();
+            if (now - last > CHECKPOINT_INTERVAL_NANOS && lastCheckpoint.compareAndSet(last, now)) {
+                checkpoint(channel);
+            }
+        }
+
+        private void work(FileChannel channel) throws IOException {
+            Segment segment;
+            while (!failed && (segment = nextSegment()) != null) {
+                try {
+                    fetch(segment, channel);
+                } catch (IOException e) {
+                    failed = true;
+                    throw e;
+                }
+            }
+        }
+
+        // Picks an unstarted segment, otherwise splits the one with the most bytes left
+        private Segment nextSegment() {
+            synchronized (segments) {
+                Segment largest = null;
+                for (Segment segment : segments) {
+                    if (segment.tryStart()) {
+                        return segment;
+                    }
+                    if (!segment.isDone() && (largest == null || segment.remaining() > largest.remaining())) {
+                        largest = segment;
+                    }
+                }
+                Segment tail = largest == null ? null : largest.split(minSegmentBytes);
+                if (tail != null) {
+                    tail.tryStart();
+                    segments.add(tail);
+                }
+                return tail;
+            }
+        }
+
+        private void fetch(Segment segment, FileChannel channel) throws IOException {
+            int attempt = 0;
+            while (!segment.isDone() && !failed) {
+                try {
+                    fetchOnce(segment, channel);
+                } catch (IOException e) {
+                    if (++attempt > segmentRetries) {
+                        throw new IOException("Segment at byte " + segment.position() + " failed after "
+                                + segmentRetries + " retries: " + e.getMessage(), e);
+                    }
+                    backoff(attempt);
+                }
+            }
+        }
+
+        private void fetchOnce(Segment segment, FileChannel channel) throws IOException {
+            String range = "bytes=" + segment.position() + "-" + (segment.end() - 1);
+            HttpResponse<InputStream> response = send(newRequest(uri, headers).header("Range", range).GET().build());
+            InputStream body = response.body();
+            ReadGuard guard = new ReadGuard(body);
+            try (body) {
+                if (response.statusCode() != 206) {
+                    throw new IOException("Expected HTTP 206 for " + range + " but got " + response.statusCode());
+                }
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (!failed) {
+                    guard.reading(true);
+                    int read = body.read(buffer);
+                    guard.reading(false);
+                    if (read == -1) {
+                        if (!segment.isDone()) {
+                            throw new IOException("Connection closed early at byte " + segment.position());
+                        }
+                        return;
+                    }
+                    // Waits outside the read, so the stall guard does not count throttling as a stall
+                    throttle.acquire(read);
+                    long offset = segment.position();
+                    int allowed = segment.claim(read);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, allowed);
+                    while (chunk.hasRemaining()) {
+                        offset += channel.write(chunk, offset);
+                    }
+                    segment.commit(allowed);
+                    listener.onProgress(bytesDone.addAndGet(allowed), total);
+                    maybeCheckpoint(channel);
+                    if (segment.isDone()) {
+                        // The tail may have been handed to another connection; drop the rest of this response
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                if (guard.fired()) {
+                    throw new IOException("No data received for " + readTimeoutSeconds + " seconds", e);
+                }
+                throw e;
+            } finally {
+                guard.cancel();
+            }
+        }
+
+        private void backoff(int attempt) throws IOException {
+            try {
+                Thread.sleep(Math.min(200L << attempt, 5_000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while retrying segment", e);
+            }
+        }
+    }
+
+    // Closes a connection's body when it stops delivering bytes, which fails the blocked read; the HTTP
+    // client has no body read timeout of its own. Interrupting the reader instead could land in a
+    // FileChannel write and close the channel every connection of the transfer shares.
+    private final class ReadGuard {
+        private final InputStream body;
+        private final ScheduledFuture<?> check;
+        private volatile long lastActivity = System.nanoTime();
+        private volatile boolean reading;
+        private volatile boolean fired;
+
+        private ReadGuard(InputStream body) {
+            this.body = body;
+            long periodMillis = Math.max(100, TimeUnit.SECONDS.toMillis(readTimeoutSeconds) / 4);
+            this.check = stallMonitor.scheduleAtFixedRate(this::check, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // Time spent outside reads (throttling, writing) does not count towards a stall
+        private void reading(boolean reading) {
+            lastActivity = System.nanoTime();
+            this.reading = reading;
+        }
+
+        private boolean fired() {
+            return fired;
+        }
+
+        private void cancel() {
+            check.cancel(false);
+        }
+
+        private void check() {
+            if (reading && !fired && System.nanoTime() - lastActivity > TimeUnit.SECONDS.toNanos(readTimeoutSeconds)) {
+                fired = true;
+                check.cancel(false);
+                try {
+                    body.close();
+                } catch (IOException e) {
+                    // The blocked read fails either way
+                }
+            }
+        }
+    }
+}
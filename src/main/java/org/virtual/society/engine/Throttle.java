@@ -0,0 +1,12 @@
+package org.virtual.society.engine;
+
+import java.io.IOException;
+
+// Paces a transfer: called with every chunk read, blocks until the chunk fits the allowed rate
+@FunctionalInterface
+public interface Throttle {
+    Throttle NONE = bytes -> {
+    };
+
+    void acquire(int bytes) throws IOException;
+}
@@ -0,0 +1,54 @@
+package org.virtual.society.engine;
+
+// Token bucket that lets callers overdraw: a reservation always succeeds and returns how long the
+// caller has to wait until the debt is paid off. Concurrent callers queue up behind each other's
+// debt, so the combined rate never exceeds the configured one no matter how reads are sized.
+public final class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private long bytesPerSecond;
+    private long burstBytes;
+    private double tokens;
+    private long refilledAt;
+
+    // A rate of 0 means unlimited
+    public TokenBucket(long bytesPerSecond, long burstBytes, long now) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstBytes = burstBytes;
+        this.tokens = burstBytes;
+        this.refilledAt = now;
+    }
+
+    // Takes the bytes and returns the nanoseconds to wait before using them
+    public synchronized long reserve(long bytes, long now) {
+        if (bytesPerSecond <= 0) {
+            return 0;
+        }
+        refill(now);
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens * NANOS_PER_SECOND / bytesPerSecond);
+    }
+
+    // Outstanding debt carries over, so lowering the rate takes effect on the next reservation
+    public synchronized void setRate(long bytesPerSecond, long burstBytes, long now) {
+        refill(now);
+        if (this.bytesPerSecond <= 0) {
+            tokens = burstBytes;
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstBytes = burstBytes;
+        tokens = Math.min(tokens, burstBytes);
+    }
+
+    public synchronized long getRate() {
+        return bytesPerSecond;
+    }
+
+    private void refill(long now) {
+        if (bytesPerSecond > 0) {
+            tokens = Math.min(burstBytes, tokens + (now - refilledAt) * bytesPerSecond / NANOS_PER_SECOND);
+        }
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,14 @@
+package org.virtual.society.engine;
+
+import org.virtual.society.model.SegmentState;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface TransferListener {
+    void onProgress(long bytesDone, long bytesTotal);
+
+    // Periodic snapshot of every segment so an interrupted transfer can be resumed
+    default void onCheckpoint(List<SegmentState> segments) {
+    }
+}
@@ -0,0 +1,7 @@
+package org.virtual.society.exceptions;
+
+public class NotStreamableException extends DownloadException {
+    public NotStreamableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package org.virtual.society.exceptions;
+
+// A yt-dlp (or ffmpeg) process that exited non-zero or had to be killed after its timeout
+public class ProcessFailedException extends DownloadException {
+    private final int exitCode;
+    private final boolean timedOut;
+
+    public ProcessFailedException(String message, int exitCode, boolean timedOut) {
+        super(message);
+        this.exitCode = exitCode;
+        this.timedOut = timedOut;
+    }
+
+    // -1 when the process was killed
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+}
@@ -0,0 +1,7 @@
+package org.virtual.society.exceptions;
+
+public class QueueFullException extends DownloadException {
+    public QueueFullException(String message) {
+        super(message);
+    }
+}
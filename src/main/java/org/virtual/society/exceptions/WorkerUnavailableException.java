@@ -0,0 +1,11 @@
+package org.virtual.society.exceptions;
+
+public class WorkerUnavailableException extends DownloadException {
+    public WorkerUnavailableException(String message) {
+        super(message);
+    }
+
+    public WorkerUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
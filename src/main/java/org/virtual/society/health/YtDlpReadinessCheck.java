@@ -0,0 +1,37 @@
+package org.virtual.society.health;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
+import org.eclipse.microprofile.health.Readiness;
+import org.virtual.society.model.YtDlpStatus;
+import org.virtual.society.service.YtDlpHealthProber;
+
+@Readiness
+@ApplicationScoped
+public class YtDlpReadinessCheck implements HealthCheck {
+
+    @Inject
+    YtDlpHealthProber prober;
+
+    @Override
+    public HealthCheckResponse call() {
+        YtDlpStatus status = prober.getStatus();
+        HealthCheckResponseBuilder builder = HealthCheckResponse.named("yt-dlp")
+                .status(status.isAvailable())
+                .withData("ffmpeg", status.isFfmpegAvailable())
+                .withData("checkedAt", status.getCheckedAt());
+        if (status.getVersion() != null) {
+            builder.withData("version", status.getVersion());
+        }
+        if (status.getExtractionWorking() != null) {
+            builder.withData("extraction", status.getExtractionWorking());
+        }
+        if (status.getError() != null) {
+            builder.withData("error", status.getError());
+        }
+        return builder.build();
+    }
+}
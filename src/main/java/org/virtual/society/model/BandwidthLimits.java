@@ -0,0 +1,23 @@
+package org.virtual.society.model;
+
+// Caps in bytes per second; 0 means unlimited
+public class BandwidthLimits {
+    private long globalBytesPerSecond;
+    private long perClientBytesPerSecond;
+    private long perJobBytesPerSecond;
+
+    public BandwidthLimits() {}
+
+    public BandwidthLimits(long globalBytesPerSecond, long perClientBytesPerSecond, long perJobBytesPerSecond) {
+        this.globalBytesPerSecond = globalBytesPerSecond;
+        this.perClientBytesPerSecond = perClientBytesPerSecond;
+        this.perJobBytesPerSecond = perJobBytesPerSecond;
+    }
+
+    public long getGlobalBytesPerSecond() { return globalBytesPerSecond; }
+    public void setGlobalBytesPerSecond(long globalBytesPerSecond) { this.globalBytesPerSecond = globalBytesPerSecond; }
+    public long getPerClientBytesPerSecond() { return perClientBytesPerSecond; }
+    public void setPerClientBytesPerSecond(long perClientBytesPerSecond) { this.perClientBytesPerSecond = perClientBytesPerSecond; }
+    public long getPerJobBytesPerSecond() { return perJobBytesPerSecond; }
+    public void setPerJobBytesPerSecond(long perJobBytesPerSecond) { this.perJobBytesPerSecond = perJobBytesPerSecond; }
+}
@@ -0,0 +1,35 @@
+package org.virtual.society.model;
+
+public class CacheStats {
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    private long loadFailureCount;
+    private double averageLoadMillis;
+    private long estimatedSize;
+    private long weightedSize;
+
+    public CacheStats() {}
+
+    public CacheStats(long hitCount, long missCount, double hitRate, long evictionCount, long loadFailureCount,
+                      double averageLoadMillis, long estimatedSize, long weightedSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.hitRate = hitRate;
+        this.evictionCount = evictionCount;
+        this.loadFailureCount = loadFailureCount;
+        this.averageLoadMillis = averageLoadMillis;
+        this.estimatedSize = estimatedSize;
+        this.weightedSize = weightedSize;
+    }
+
+    public long getHitCount() { return hitCount; }
+    public long getMissCount() { return missCount; }
+    public double getHitRate() { return hitRate; }
+    public long getEvictionCount() { return evictionCount; }
+    public long getLoadFailureCount() { return loadFailureCount; }
+    public double getAverageLoadMillis() { return averageLoadMillis; }
+    public long getEstimatedSize() { return estimatedSize; }
+    public long getWeightedSize() { return weightedSize; }
+}
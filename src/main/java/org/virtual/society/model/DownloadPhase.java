@@ -0,0 +1,14 @@
+package org.virtual.society.model;
+
+public enum DownloadPhase {
+    QUEUED,
+    STARTING,
+    DOWNLOADING,
+    MERGING,
+    COMPLETED,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
@@ -1,67 +1,169 @@
 package org.virtual.society.model;
 
+// Progress of one job as plain numbers. The service keeps one instance per job and updates it in place;
+// readers get a copy. Rates are in bytes per second, -1 means unknown.
 public class DownloadProgress {
     private String downloadId;
+    private DownloadPhase phase;
+    private String message;
     private double percentage;
-    private String status;
-    private String speed;
-    private String eta;
+    private long bytesDone;
+    private long bytesTotal = -1;
+    private double bytesPerSecond = -1;
+    private double smoothedBytesPerSecond = -1;
+    private long etaSeconds = -1;
     private long lastUpdate;
+    // Playlist jobs count entries instead of bytes; entriesTotal is -1 while still enumerating
+    private boolean playlist;
+    private int entriesCompleted;
+    private int entriesFailed;
+    private int entriesTotal = -1;
+    // Bytes received by this run across all files, and when the first and latest of them arrived
+    private long bytesTransferred;
+    private long transferStartedAt;
+    private long lastTransferAt;
+    // Sample the next instantaneous rate is measured against
+    private long sampleBytes;
+    private long sampleTime;
 
-    public DownloadProgress(String downloadId, double percentage, String status, String speed, String eta, long lastUpdate) {
-        this.downloadId = downloadId;
-        this.percentage = percentage;
-        this.status = status;
-        this.speed = speed;
-        this.eta = eta;
-        this.lastUpdate = lastUpdate;
-    }
+    public DownloadProgress() {}
 
-    public String getDownloadId() {
-        return downloadId;
-    }
-
-    public void setDownloadId(String downloadId) {
+    public DownloadProgress(String downloadId, DownloadPhase phase, long lastUpdate) {
         this.downloadId = downloadId;
+        this.phase = phase;
+        this.lastUpdate = lastUpdate;
     }
 
-    public double getPercentage() {
-        return percentage;
-    }
-
-    public void setPercentage(double percentage) {
+    // Folds a transfer sample into the rates. The EWMA weight follows the time since the previous sample,
+    // so irregular reporting intervals smooth the same way as regular ones.
+    public synchronized void recordTransfer(double percentage, long bytesDone, long bytesTotal, long now,
+                                            long smoothingWindowMillis) {
+        this.phase = DownloadPhase.DOWNLOADING;
+        this.message = null;
         this.percentage = percentage;
+        this.bytesTotal = bytesTotal;
+        this.lastUpdate = now;
+        if (bytesDone < 0) {
+            // Size unknown (e.g. live streams): only the percentage is meaningful
+            this.bytesDone = 0;
+            bytesPerSecond = -1;
+            etaSeconds = -1;
+            return;
+        }
+        if (bytesDone < sampleBytes || sampleTime == 0) {
+            // First sample, or yt-dlp moved on to the next file of a merged format
+            if (sampleTime == 0) {
+                transferStartedAt = now;
+            } else {
+                bytesTransferred += bytesDone;
+            }
+            lastTransferAt = now;
+            sampleBytes = bytesDone;
+            sampleTime = now;
+            this.bytesDone = bytesDone;
+            updateEta();
+            return;
+        }
+        this.bytesDone = bytesDone;
+        long elapsed = now - sampleTime;
+        if (elapsed <= 0) {
+            updateEta();
+            return;
+        }
+        bytesTransferred += bytesDone - sampleBytes;
+        lastTransferAt = now;
+        double instant = (bytesDone - sampleBytes) * 1000.0 / elapsed;
+        bytesPerSecond = instant;
+        if (smoothedBytesPerSecond < 0) {
+            smoothedBytesPerSecond = instant;
+        } else {
+            double alpha = 1 - Math.exp(-(double) elapsed / smoothingWindowMillis);
+            smoothedBytesPerSecond += alpha * (instant - smoothedBytesPerSecond);
+        }
+        sampleBytes = bytesDone;
+        sampleTime = now;
+        updateEta();
     }
 
-    public String getStatus() {
-        return status;
-    }
-
-    public void setStatus(String status) {
-        this.status = status;
+    public synchronized void recordEntries(int completed, int failed, int total, long now) {
+        this.phase = DownloadPhase.DOWNLOADING;
+        this.playlist = true;
+        this.entriesCompleted = completed;
+        this.entriesFailed = failed;
+        this.entriesTotal = total;
+        this.percentage = total > 0 ? Math.min(100.0, (completed + failed) * 100.0 / total) : 0;
+        this.lastUpdate = now;
     }
 
-    public String getSpeed() {
-        return speed;
+    public synchronized void transition(DownloadPhase phase, String message, long now) {
+        this.phase = phase;
+        this.message = message;
+        this.lastUpdate = now;
+        if (phase == DownloadPhase.COMPLETED) {
+            percentage = 100;
+            if (bytesTotal > 0) {
+                bytesDone = bytesTotal;
+            }
+        }
+        if (phase != DownloadPhase.DOWNLOADING) {
+            bytesPerSecond = -1;
+            etaSeconds = phase == DownloadPhase.COMPLETED ? 0 : -1;
+        }
     }
 
-    public void setSpeed(String speed) {
-        this.speed = speed;
+    // Smoothed rate while the job is transferring, 0 otherwise
+    public synchronized double activeBytesPerSecond() {
+        return phase == DownloadPhase.DOWNLOADING && smoothedBytesPerSecond > 0 ? smoothedBytesPerSecond : 0;
     }
 
-    public String getEta() {
-        return eta;
+    // Finished jobs are kept for terminalTtl after their last update, others for idleTtl without one
+    public synchronized long expiresAt(long terminalTtlMillis, long idleTtlMillis) {
+        return lastUpdate + (phase.isTerminal() ? terminalTtlMillis : idleTtlMillis);
     }
 
-    public void setEta(String eta) {
-        this.eta = eta;
+    public synchronized DownloadProgress copy() {
+        DownloadProgress copy = new DownloadProgress(downloadId, phase, lastUpdate);
+        copy.message = message;
+        copy.percentage = percentage;
+        copy.bytesDone = bytesDone;
+        copy.bytesTotal = bytesTotal;
+        copy.bytesPerSecond = bytesPerSecond;
+        copy.smoothedBytesPerSecond = smoothedBytesPerSecond;
+        copy.etaSeconds = etaSeconds;
+        copy.bytesTransferred = bytesTransferred;
+        copy.transferStartedAt = transferStartedAt;
+        copy.lastTransferAt = lastTransferAt;
+        copy.playlist = playlist;
+        copy.entriesCompleted = entriesCompleted;
+        copy.entriesFailed = entriesFailed;
+        copy.entriesTotal = entriesTotal;
+        return copy;
     }
 
-    public long getLastUpdate() {
-        return lastUpdate;
+    private void updateEta() {
+        if (bytesTotal > 0 && smoothedBytesPerSecond > 0) {
+            etaSeconds = (long) Math.ceil(Math.max(0, bytesTotal - bytesDone) / smoothedBytesPerSecond);
+        } else {
+            etaSeconds = -1;
+        }
     }
 
-    public void setLastUpdate(long lastUpdate) {
-        this.lastUpdate = lastUpdate;
-    }
+    public String getDownloadId() { return downloadId; }
+    public DownloadPhase getPhase() { return phase; }
+    // Error text for FAILED, otherwise usually null
+    public String getMessage() { return message; }
+    public double getPercentage() { return percentage; }
+    public long getBytesDone() { return bytesDone; }
+    public long getBytesTotal() { return bytesTotal; }
+    public double getBytesPerSecond() { return bytesPerSecond; }
+    public double getSmoothedBytesPerSecond() { return smoothedBytesPerSecond; }
+    public long getEtaSeconds() { return etaSeconds; }
+    public long getLastUpdate() { return lastUpdate; }
+    public long getBytesTransferred() { return bytesTransferred; }
+    public long getTransferStartedAt() { return transferStartedAt; }
+    public long getLastTransferAt() { return lastTransferAt; }
+    public boolean isPlaylist() { return playlist; }
+    public int getEntriesCompleted() { return entriesCompleted; }
+    public int getEntriesFailed() { return entriesFailed; }
+    public int getEntriesTotal() { return entriesTotal; }
 }
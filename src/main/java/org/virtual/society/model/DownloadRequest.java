@@ -3,6 +3,7 @@ package org.virtual.society.model;
 public class DownloadRequest {
     private String url;
     private String formatId;
+    private JobPriority priority;
 
     // Constructors
     public DownloadRequest() {}
@@ -18,4 +19,7 @@ public class DownloadRequest {
 
     public String getFormatId() { return formatId; }
     public void setFormatId(String formatId) { this.formatId = formatId; }
+
+    public JobPriority getPriority() { return priority; }
+    public void setPriority(JobPriority priority) { this.priority = priority; }
 }
@@ -0,0 +1,16 @@
+package org.virtual.society.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+public enum JobPriority {
+    INTERACTIVE,
+    BATCH;
+
+    @JsonCreator
+    public static JobPriority fromValue(String value) {
+        if (value == null || value.isBlank()) {
+            return INTERACTIVE;
+        }
+        return valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,114 @@
+package org.virtual.society.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JobRecord {
+    private String downloadId;
+    // Null in journals written before playlists existed, which only held videos
+    private JobType type;
+    private String url;
+    private String formatId;
+    private String clientId;
+    private JobPriority priority;
+    private JobState state;
+    private String outputPath;
+    private String error;
+    // Identifies the artifact (video ID + resolved format) so identical requests share one job
+    private String artifactKey;
+    private long createdAt;
+    private long updatedAt;
+    // Segment progress of in-JVM transfers, keyed by the file being written
+    private Map<String, List<SegmentState>> segments = new LinkedHashMap<>();
+    // Playlist jobs: entry counts and the 1-based index enumeration resumes from. Every entry before
+    // resumeIndex has finished; later ones may have too and are then served from the artifact store.
+    private int entriesTotal = -1;
+    private int entriesCompleted;
+    private int entriesFailed;
+    private int resumeIndex = 1;
+
+    // Constructors
+    public JobRecord() {}
+
+    public JobRecord(String downloadId, String url, String formatId, String clientId, JobPriority priority) {
+        this.downloadId = downloadId;
+        this.url = url;
+        this.formatId = formatId;
+        this.clientId = clientId;
+        this.priority = priority;
+        this.type = JobType.VIDEO;
+        this.state = JobState.QUEUED;
+        this.createdAt = System.currentTimeMillis();
+        this.updatedAt = createdAt;
+    }
+
+    public JobRecord copy() {
+        JobRecord copy = new JobRecord(downloadId, url, formatId, clientId, priority);
+        copy.type = type;
+        copy.state = state;
+        copy.outputPath = outputPath;
+        copy.error = error;
+        copy.artifactKey = artifactKey;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.segments = new LinkedHashMap<>(segments);
+        copy.entriesTotal = entriesTotal;
+        copy.entriesCompleted = entriesCompleted;
+        copy.entriesFailed = entriesFailed;
+        copy.resumeIndex = resumeIndex;
+        return copy;
+    }
+
+    // Getters and setters
+    public String getDownloadId() { return downloadId; }
+    public void setDownloadId(String downloadId) { this.downloadId = downloadId; }
+
+    public JobType getType() { return type == null ? JobType.VIDEO : type; }
+    public void setType(JobType type) { this.type = type; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public String getFormatId() { return formatId; }
+    public void setFormatId(String formatId) { this.formatId = formatId; }
+
+    public String getClientId() { return clientId; }
+    public void setClientId(String clientId) { this.clientId = clientId; }
+
+    public JobPriority getPriority() { return priority; }
+    public void setPriority(JobPriority priority) { this.priority = priority; }
+
+    public JobState getState() { return state; }
+    public void setState(JobState state) { this.state = state; }
+
+    public String getOutputPath() { return outputPath; }
+    public void setOutputPath(String outputPath) { this.outputPath = outputPath; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getArtifactKey() { return artifactKey; }
+    public void setArtifactKey(String artifactKey) { this.artifactKey = artifactKey; }
+
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    public Map<String, List<SegmentState>> getSegments() { return segments; }
+    public void setSegments(Map<String, List<SegmentState>> segments) { this.segments = segments; }
+
+    public int getEntriesTotal() { return entriesTotal; }
+    public void setEntriesTotal(int entriesTotal) { this.entriesTotal = entriesTotal; }
+
+    public int getEntriesCompleted() { return entriesCompleted; }
+    public void setEntriesCompleted(int entriesCompleted) { this.entriesCompleted = entriesCompleted; }
+
+    public int getEntriesFailed() { return entriesFailed; }
+    public void setEntriesFailed(int entriesFailed) { this.entriesFailed = entriesFailed; }
+
+    public int getResumeIndex() { return resumeIndex; }
+    public void setResumeIndex(int resumeIndex) { this.resumeIndex = resumeIndex; }
+}
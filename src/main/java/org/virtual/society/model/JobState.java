@@ -0,0 +1,12 @@
+package org.virtual.society.model;
+
+public enum JobState {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == DONE || this == FAILED;
+    }
+}
@@ -0,0 +1,20 @@
+package org.virtual.society.model;
+
+public class JobSubmission {
+    // started: a new download; attached: joined an identical download in flight; cached: already stored
+    private String downloadId;
+    private String status;
+
+    public JobSubmission() {}
+
+    public JobSubmission(String downloadId, String status) {
+        this.downloadId = downloadId;
+        this.status = status;
+    }
+
+    public String getDownloadId() { return downloadId; }
+    public void setDownloadId(String downloadId) { this.downloadId = downloadId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+}
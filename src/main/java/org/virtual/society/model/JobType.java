@@ -0,0 +1,7 @@
+package org.virtual.society.model;
+
+public enum JobType {
+    VIDEO,
+    // A playlist or channel; its entries run as VIDEO jobs
+    PLAYLIST
+}
@@ -0,0 +1,59 @@
+package org.virtual.society.model;
+
+import java.util.Map;
+
+public class MediaStream {
+    private String formatId;
+    private String url;
+    private String ext;
+    private String protocol;
+    private long fileSize;
+    private boolean video;
+    private boolean audio;
+    private Map<String, String> httpHeaders;
+
+    // Constructors
+    public MediaStream() {}
+
+    public MediaStream(String formatId, String url, String ext, String protocol, long fileSize,
+                       boolean video, boolean audio, Map<String, String> httpHeaders) {
+        this.formatId = formatId;
+        this.url = url;
+        this.ext = ext;
+        this.protocol = protocol;
+        this.fileSize = fileSize;
+        this.video = video;
+        this.audio = audio;
+        this.httpHeaders = httpHeaders;
+    }
+
+    // Plain http(s) streams can be fetched with byte ranges; manifests (m3u8, dash) are left to yt-dlp
+    public boolean isDirectHttp() {
+        return "https".equals(protocol) || "http".equals(protocol);
+    }
+
+    // Getters and setters
+    public String getFormatId() { return formatId; }
+    public void setFormatId(String formatId) { this.formatId = formatId; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public String getExt() { return ext; }
+    public void setExt(String ext) { this.ext = ext; }
+
+    public String getProtocol() { return protocol; }
+    public void setProtocol(String protocol) { this.protocol = protocol; }
+
+    public long getFileSize() { return fileSize; }
+    public void setFileSize(long fileSize) { this.fileSize = fileSize; }
+
+    public boolean isVideo() { return video; }
+    public void setVideo(boolean video) { this.video = video; }
+
+    public boolean isAudio() { return audio; }
+    public void setAudio(boolean audio) { this.audio = audio; }
+
+    public Map<String, String> getHttpHeaders() { return httpHeaders; }
+    public void setHttpHeaders(Map<String, String> httpHeaders) { this.httpHeaders = httpHeaders; }
+}
@@ -0,0 +1,37 @@
+package org.virtual.society.model;
+
+import java.util.List;
+
+public class ResolvedMedia {
+    private String videoId;
+    private String title;
+    private String ext;
+    private List<MediaStream> streams;
+
+    // Constructors
+    public ResolvedMedia() {}
+
+    public ResolvedMedia(String videoId, String title, String ext, List<MediaStream> streams) {
+        this.videoId = videoId;
+        this.title = title;
+        this.ext = ext;
+        this.streams = streams;
+    }
+
+    public boolean isDirectHttp() {
+        return streams != null && !streams.isEmpty() && streams.stream().allMatch(MediaStream::isDirectHttp);
+    }
+
+    // Getters and setters
+    public String getVideoId() { return videoId; }
+    public void setVideoId(String videoId) { this.videoId = videoId; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getExt() { return ext; }
+    public void setExt(String ext) { this.ext = ext; }
+
+    public List<MediaStream> getStreams() { return streams; }
+    public void setStreams(List<MediaStream> streams) { this.streams = streams; }
+}
@@ -0,0 +1,42 @@
+package org.virtual.society.model;
+
+public class SchedulerStats {
+    private int maxConcurrent;
+    private int running;
+    private int queueCapacity;
+    private int queuedInteractive;
+    private int queuedBatch;
+    private int waitingClients;
+    private long rejected;
+    private long started;
+    private double averageWaitMillis;
+    private long maxWaitMillis;
+
+    public SchedulerStats() {}
+
+    public SchedulerStats(int maxConcurrent, int running, int queueCapacity, int queuedInteractive, int queuedBatch,
+                          int waitingClients, long rejected, long started, double averageWaitMillis, long maxWaitMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.running = running;
+        this.queueCapacity = queueCapacity;
+        this.queuedInteractive = queuedInteractive;
+        this.queuedBatch = queuedBatch;
+        this.waitingClients = waitingClients;
+        this.rejected = rejected;
+        this.started = started;
+        this.averageWaitMillis = averageWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public int getMaxConcurrent() { return maxConcurrent; }
+    public int getRunning() { return running; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public int getQueuedInteractive() { return queuedInteractive; }
+    public int getQueuedBatch() { return queuedBatch; }
+    public int getQueueDepth() { return queuedInteractive + queuedBatch; }
+    public int getWaitingClients() { return waitingClients; }
+    public long getRejected() { return rejected; }
+    public long getStarted() { return started; }
+    public double getAverageWaitMillis() { return averageWaitMillis; }
+    public long getMaxWaitMillis() { return maxWaitMillis; }
+}
@@ -0,0 +1,26 @@
+package org.virtual.society.model;
+
+public class SegmentState {
+    private long start;
+    private long position;
+    private long end;
+
+    // Constructors
+    public SegmentState() {}
+
+    public SegmentState(long start, long position, long end) {
+        this.start = start;
+        this.position = position;
+        this.end = end;
+    }
+
+    // Getters and setters
+    public long getStart() { return start; }
+    public void setStart(long start) { this.start = start; }
+
+    public long getPosition() { return position; }
+    public void setPosition(long position) { this.position = position; }
+
+    public long getEnd() { return end; }
+    public void setEnd(long end) { this.end = end; }
+}
@@ -0,0 +1,35 @@
+package org.virtual.society.model;
+
+public class StoreStats {
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long coalescedCount;
+    private long evictionCount;
+    private long entries;
+    private long bytes;
+    private long maxBytes;
+
+    public StoreStats() {}
+
+    public StoreStats(long hitCount, long missCount, long evictionCount, long entries, long bytes, long maxBytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.hitRate = hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount);
+        this.evictionCount = evictionCount;
+        this.entries = entries;
+        this.bytes = bytes;
+        this.maxBytes = maxBytes;
+    }
+
+    public long getHitCount() { return hitCount; }
+    public long getMissCount() { return missCount; }
+    public double getHitRate() { return hitRate; }
+    // Requests attached to a download that was already in flight
+    public long getCoalescedCount() { return coalescedCount; }
+    public void setCoalescedCount(long coalescedCount) { this.coalescedCount = coalescedCount; }
+    public long getEvictionCount() { return evictionCount; }
+    public long getEntries() { return entries; }
+    public long getBytes() { return bytes; }
+    public long getMaxBytes() { return maxBytes; }
+}
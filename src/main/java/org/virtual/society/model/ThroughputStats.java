@@ -0,0 +1,20 @@
+package org.virtual.society.model;
+
+public class ThroughputStats {
+    private int activeDownloads;
+    private int trackedDownloads;
+    private double bytesPerSecond;
+
+    public ThroughputStats() {}
+
+    public ThroughputStats(int activeDownloads, int trackedDownloads, double bytesPerSecond) {
+        this.activeDownloads = activeDownloads;
+        this.trackedDownloads = trackedDownloads;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public int getActiveDownloads() { return activeDownloads; }
+    public int getTrackedDownloads() { return trackedDownloads; }
+    // Sum of the smoothed rates of all transferring jobs
+    public double getBytesPerSecond() { return bytesPerSecond; }
+}
@@ -0,0 +1,36 @@
+package org.virtual.society.model;
+
+public class YtDlpStatus {
+    private boolean available;
+    private String version;
+    private boolean ffmpegAvailable;
+    private String ffmpegVersion;
+    // null until the first extraction probe has run
+    private Boolean extractionWorking;
+    private String error;
+    private long checkedAt;
+    private long extractionCheckedAt;
+
+    public YtDlpStatus() {}
+
+    public YtDlpStatus(boolean available, String version, boolean ffmpegAvailable, String ffmpegVersion,
+                       Boolean extractionWorking, String error, long checkedAt, long extractionCheckedAt) {
+        this.available = available;
+        this.version = version;
+        this.ffmpegAvailable = ffmpegAvailable;
+        this.ffmpegVersion = ffmpegVersion;
+        this.extractionWorking = extractionWorking;
+        this.error = error;
+        this.checkedAt = checkedAt;
+        this.extractionCheckedAt = extractionCheckedAt;
+    }
+
+    public boolean isAvailable() { return available; }
+    public String getVersion() { return version; }
+    public boolean isFfmpegAvailable() { return ffmpegAvailable; }
+    public String getFfmpegVersion() { return ffmpegVersion; }
+    public Boolean getExtractionWorking() { return extractionWorking; }
+    public String getError() { return error; }
+    public long getCheckedAt() { return checkedAt; }
+    public long getExtractionCheckedAt() { return extractionCheckedAt; }
+}
@@ -0,0 +1,61 @@
+package org.virtual.society.resource;
+
+// A single satisfiable byte range of a file of known length, parsed from a Range header
+record ByteRange(long start, long end) {
+
+    long length() {
+        return end - start + 1;
+    }
+
+    String contentRange(long fileLength) {
+        return "bytes " + start + "-" + end + "/" + fileLength;
+    }
+
+    // Returns null when the whole file should be sent: no header, a unit other than bytes, several ranges
+    // (which we are allowed to ignore) or a malformed one such as a last position before the first.
+    // Throws IllegalArgumentException when unsatisfiable.
+    static ByteRange parse(String header, long fileLength) {
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        if (spec.contains(",")) {
+            return null;
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the final N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    throw new IllegalArgumentException("Empty suffix range");
+                }
+                start = Math.max(0, fileLength - suffix);
+                end = fileLength - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = fileLength - 1;
+                if (!last.isEmpty()) {
+                    long lastPosition = Long.parseLong(last);
+                    if (lastPosition < start) {
+                        return null;
+                    }
+                    end = Math.min(lastPosition, end);
+                }
+            }
+            if (start < 0 || start >= fileLength) {
+                throw new IllegalArgumentException("Range not satisfiable: " + header);
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -2,107 +2,473 @@ package org.virtual.society.resource;
 
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
-import jakarta.ws.rs.container.AsyncResponse;
-import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import io.quarkus.virtual.threads.VirtualThreads;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.http.HttpServerRequest;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.FilePart;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
+import org.virtual.society.dto.BatchInfoRequest;
+import org.virtual.society.dto.BatchInfoResult;
+import org.virtual.society.dto.BulkProgressResponse;
+import org.virtual.society.dto.ProgressResponse;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.exceptions.NotStreamableException;
+import org.virtual.society.exceptions.QueueFullException;
+import org.virtual.society.model.BandwidthLimits;
 import org.virtual.society.model.DownloadProgress;
 import org.virtual.society.model.DownloadRequest;
+import org.virtual.society.model.JobRecord;
+import org.virtual.society.model.JobState;
+import org.virtual.society.model.JobSubmission;
+import org.virtual.society.model.ThroughputStats;
 import org.virtual.society.model.VideoInfo;
+import org.virtual.society.model.YtDlpStatus;
+import org.virtual.society.service.ArtifactStore;
+import org.virtual.society.service.BandwidthManager;
+import org.virtual.society.service.DownloadJobService;
 import org.virtual.society.service.DownloadProgressService;
+import org.virtual.society.service.DownloadScheduler;
+import org.virtual.society.service.PassThroughService;
+import org.virtual.society.service.PlaylistJobService;
+import org.virtual.society.service.ProgressSubscription;
+import org.virtual.society.service.VideoInfoCache;
+import org.virtual.society.service.YtDlpHealthProber;
 import org.virtual.society.service.YoutubeDownloadService;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 @Path("/api/download")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class DownloadController {
 
+    private static final int STREAM_CHUNK_BYTES = 64 * 1024;
+
     @Inject
     YoutubeDownloadService downloadService;
 
     @Inject
     DownloadProgressService progressService;
 
-    // Store active downloads
-    private final ConcurrentHashMap<String, CompletableFuture<File>> activeDownloads = new ConcurrentHashMap<>();
+    @Inject
+    DownloadScheduler scheduler;
+
+    @Inject
+    DownloadJobService jobService;
+
+    @Inject
+    VideoInfoCache videoInfoCache;
+
+    @Inject
+    YtDlpHealthProber healthProber;
+
+    @Inject
+    ArtifactStore artifactStore;
+
+    // yt-dlp lookups block for seconds; on virtual threads they hold no pooled worker meanwhile
+    @Inject
+    @VirtualThreads
+    ExecutorService virtualThreads;
+
+    @Inject
+    BandwidthManager bandwidthManager;
+
+    @Inject
+    PlaylistJobService playlistService;
+
+    @Inject
+    PassThroughService passThroughService;
+
+    // Upper bound on pushed updates per second per subscriber
+    @ConfigProperty(name = "app.progress.stream.max-rate", defaultValue = "4")
+    double streamMaxRate;
+
+    @ConfigProperty(name = "app.progress.stream.max-ids", defaultValue = "500")
+    int streamMaxIds;
 
-    private VideoInfo videoInfo = new VideoInfo();
+    @ConfigProperty(name = "app.progress.bulk.max-ids", defaultValue = "1000")
+    int bulkMaxIds;
 
+    @ConfigProperty(name = "app.info.batch.max-urls", defaultValue = "500")
+    int batchMaxUrls;
+
+    // Concurrent yt-dlp lookups per batch request
+    @ConfigProperty(name = "app.info.batch.parallelism", defaultValue = "4")
+    int batchParallelism;
 
     @GET
     @Path("/health")
     public Response checkHealth(){
-        boolean ytDlpAvailable = downloadService.checkYtDlpAvailability();
-        if (ytDlpAvailable){
-            return Response.ok().entity("{\"status\": \"healthy\", \"yt-dlp\": \"available\"}").build();
-        } else {
-            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
-                    .entity("{\"status\": \"unhealthy\", \"yt-dlp\": \"not available\"}")
-                    .build();
+        YtDlpStatus status = healthProber.getStatus();
+        Map<String, Object> body = new HashMap<>();
+        body.put("status", status.isAvailable() ? "healthy" : "unhealthy");
+        body.put("yt-dlp", status.isAvailable() ? "available" : "not available");
+        body.put("version", status.getVersion());
+        body.put("ffmpeg", status.isFfmpegAvailable() ? "available" : "not available");
+        body.put("extraction", status.getExtractionWorking());
+        body.put("checkedAt", status.getCheckedAt());
+        if (status.getError() != null) {
+            body.put("error", status.getError());
         }
+        return Response.status(status.isAvailable() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+                .entity(body)
+                .build();
     }
 
     @GET
     @Path("/info")
-    public void getVideoInfo(@QueryParam("url") String url , @Suspended final AsyncResponse asyncResponse) {
-        new Thread(() -> {
+    @RunOnVirtualThread
+    public Response getVideoInfo(@QueryParam("url") String url) {
+        // Rejecting from the cached probe result costs nothing
+        if (!healthProber.getStatus().isAvailable() && healthProber.getStatus().getCheckedAt() > 0) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity("{\"error\": \"yt-dlp is not available\"}")
+                    .build();
+        }
+        try {
+            VideoInfo videoInfo = downloadService.getVideoInfo(url);
+            return Response.ok(videoInfo).build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+    // Resolves many links in one call. URLs are grouped by video ID, cache hits are written first and
+    // the misses follow one NDJSON line each as they finish, at most batchParallelism at a time.
+    @POST
+    @Path("/info/batch")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<BatchInfoResult> getVideoInfoBatch(BatchInfoRequest request) {
+        if (request == null || request.urls == null || request.urls.isEmpty() || request.urls.size() > batchMaxUrls) {
+            throw new BadRequestException("urls must list between 1 and " + batchMaxUrls + " links");
+        }
+        Map<String, List<String>> urlsByVideoId = new LinkedHashMap<>();
+        List<BatchInfoResult> immediate = new ArrayList<>();
+        for (String url : request.urls) {
             try {
-                boolean ytDlpWorking = downloadService.testYtDlpWithSimpleVideo();
-                if (!ytDlpWorking) {
-                    asyncResponse.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity("{\"error\": \"yt-dlp is not working properly\"}")
-                            .build());
-                    return;
-                }
-
-                videoInfo = downloadService.getVideoInfo(url);
-                asyncResponse.resume(Response.ok(videoInfo).build());
-            } catch (Exception e) {
-                asyncResponse.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                        .entity("{\"error\": \"" + e.getMessage() + "\"}")
-                        .build());
+                urlsByVideoId.computeIfAbsent(downloadService.resolveVideoId(url), id -> new ArrayList<>()).add(url);
+            } catch (DownloadException e) {
+                immediate.add(BatchInfoResult.failure(null, List.of(String.valueOf(url)), e.getMessage()));
             }
-        }).start();
+        }
+        List<Map.Entry<String, List<String>>> misses = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : urlsByVideoId.entrySet()) {
+            VideoInfo cached = videoInfoCache.getIfPresent(entry.getKey());
+            if (cached != null) {
+                immediate.add(BatchInfoResult.success(entry.getKey(), entry.getValue(), cached, true));
+            } else {
+                misses.add(entry);
+            }
+        }
+
+        Multi<BatchInfoResult> resolved = Multi.createFrom().iterable(misses)
+                .onItem().transformToUni(entry -> Uni.createFrom().item(() -> resolveBatchEntry(entry))
+                        .runSubscriptionOn(virtualThreads))
+                .merge(batchParallelism);
+        return Multi.createBy().concatenating().streams(Multi.createFrom().iterable(immediate), resolved);
+    }
+
+    private BatchInfoResult resolveBatchEntry(Map.Entry<String, List<String>> entry) {
+        try {
+            VideoInfo info = downloadService.getVideoInfo(entry.getValue().get(0));
+            return BatchInfoResult.success(entry.getKey(), entry.getValue(), info, false);
+        } catch (Exception e) {
+            return BatchInfoResult.failure(entry.getKey(), entry.getValue(), e.getMessage());
+        }
     }
+
     @GET
     @Path("/status/{jobId}")
     public Response getDownloadStatus(@PathParam("jobId") String jobId) {
-        // In a real implementation, you would track download status
-        return Response.ok()
-                .entity("{\"status\": \"completed\", \"jobId\": \"" + jobId + "\"}")
+        JobRecord job = jobService.getJob(jobId);
+        if (job == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("{\"error\": \"Download not found\"}")
+                    .build();
+        }
+        return Response.ok(job).build();
+    }
+
+    // Serves a finished download through Vert.x sendfile, so the bytes never enter the heap and any
+    // number of clients can read the same file. Supports single byte ranges and conditional requests.
+    @GET
+    @Path("/file/{downloadId}")
+    @Produces(MediaType.WILDCARD)
+    @RunOnVirtualThread
+    public Response getFile(@PathParam("downloadId") String downloadId,
+                            @HeaderParam("Range") String range,
+                            @HeaderParam("If-Range") String ifRange,
+                            @HeaderParam("If-None-Match") String ifNoneMatch,
+                            @HeaderParam("If-Modified-Since") String ifModifiedSince) {
+        JobRecord job = jobService.getJob(downloadId);
+        if (job == null || job.getState() == JobState.FAILED) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("error", "Download not found"))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+        if (job.getState() != JobState.DONE || job.getOutputPath() == null) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(Map.of("error", "Download has not finished yet"))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+        File file = new File(job.getOutputPath());
+        if (!file.isFile()) {
+            return Response.status(Response.Status.GONE)
+                    .entity(Map.of("error", "Downloaded file is no longer available"))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+
+        artifactStore.touch(job.getArtifactKey());
+        long length = file.length();
+        long lastModified = file.lastModified();
+        // Size and mtime change whenever the file is replaced, which is all a validator needs here
+        EntityTag entityTag = new EntityTag(Long.toHexString(length) + "-" + Long.toHexString(lastModified));
+        String etag = "\"" + entityTag.getValue() + "\"";
+        Date lastModifiedDate = new Date(lastModified / 1000 * 1000);
+        if (ifNoneMatch != null
+                ? matchesEtag(ifNoneMatch, etag)
+                : notModifiedSince(ifModifiedSince, lastModified)) {
+            return Response.notModified(entityTag).lastModified(lastModifiedDate).build();
+        }
+
+        ByteRange byteRange;
+        try {
+            // A stale If-Range means the client's partial copy is outdated, so it gets the whole file
+            byteRange = ifRange == null || ifRange.equals(etag) ? ByteRange.parse(range, length) : null;
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + length)
+                    .build();
+        }
+
+        Response.ResponseBuilder response = byteRange == null
+                ? Response.ok(new FilePart(file, 0, length))
+                : Response.status(Response.Status.PARTIAL_CONTENT)
+                        .entity(new FilePart(file, byteRange.start(), byteRange.length()))
+                        .header("Content-Range", byteRange.contentRange(length));
+        return response
+                .type(contentType(file))
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Disposition", attachment(file))
+                .tag(entityTag)
+                .lastModified(lastModifiedDate)
                 .build();
     }
 
+    // Sends the video while it is still downloading instead of after it has landed on our disk, for
+    // one-off requests. Only progressive formats can be streamed this way; a stored copy is sent as is.
+    // With persist=true the streamed bytes are also kept in the store for later requests.
+    @GET
+    @Path("/stream")
+    @Produces(MediaType.WILDCARD)
+    @RunOnVirtualThread
+    public Response streamVideo(@QueryParam("url") String url,
+                                @QueryParam("formatId") String formatId,
+                                @QueryParam("persist") boolean persist,
+                                @HeaderParam("X-Client-Id") String clientId,
+                                @Context HttpServerRequest httpRequest) {
+        try {
+            downloadService.resolveVideoId(url);
+        } catch (DownloadException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", e.getMessage()))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+        PassThroughService.PassThrough stream;
+        try {
+            stream = passThroughService.open(url, formatId, persist, resolveClientId(clientId, httpRequest));
+        } catch (QueueFullException e) {
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", "5")
+                    .entity(Map.of("error", e.getMessage()))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        } catch (NotStreamableException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(Map.of("error", e.getMessage()))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(Map.of("error", String.valueOf(e.getMessage())))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+
+        File name = new File(stream.getFileName());
+        if (stream.getStoredFile() != null) {
+            return Response.ok(new FilePart(stream.getStoredFile(), 0, stream.getStoredFile().length()))
+                    .type(contentType(name))
+                    .header("Content-Disposition", attachment(name))
+                    .build();
+        }
+        // Writes block while the client's connection is backed up; the transfer keeps going meanwhile.
+        // Writes to a connection the client has closed are silently dropped, so the loop checks for it.
+        StreamingOutput body = output -> {
+            try (stream) {
+                byte[] chunk = new byte[STREAM_CHUNK_BYTES];
+                int read;
+                while ((read = stream.read(chunk, 0, chunk.length)) != -1) {
+                    if (httpRequest != null && httpRequest.response().closed()) {
+                        return;
+                    }
+                    output.write(chunk, 0, read);
+                }
+            }
+        };
+        return Response.ok(body)
+                .type(contentType(name))
+                .header("Content-Disposition", attachment(name))
+                .header("X-Download-Id", stream.getDownloadId())
+                .build();
+    }
+
+    private String attachment(File file) {
+        return "attachment; filename*=UTF-8''" + URLEncoder.encode(file.getName(), StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private boolean notModifiedSince(String header, long lastModified) {
+        if (header == null) {
+            return false;
+        }
+        try {
+            long since = ZonedDateTime.parse(header, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return lastModified / 1000 <= since / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private boolean matchesEtag(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if ("*".equals(value) || etag.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String contentType(File file) {
+        try {
+            String type = Files.probeContentType(file.toPath());
+            if (type != null) {
+                return type;
+            }
+        } catch (IOException e) {
+            System.err.println("Could not detect content type of " + file.getName() + ": " + e.getMessage());
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    @GET
+    @Path("/cache/stats")
+    public Response getCacheStats() {
+        return Response.ok(videoInfoCache.getStats()).build();
+    }
+
+    @GET
+    @Path("/store/stats")
+    public Response getStoreStats() {
+        return Response.ok(jobService.getStoreStats()).build();
+    }
+
+    @GET
+    @Path("/queue")
+    public Response getQueueStats() {
+        return Response.ok(scheduler.getStats()).build();
+    }
+
+    @GET
+    @Path("/admin/bandwidth")
+    public BandwidthLimits getBandwidthLimits() {
+        return bandwidthManager.getLimits();
+    }
+
+    // Caps in bytes per second (0 = unlimited); running in-JVM transfers pick them up immediately
+    @PUT
+    @Path("/admin/bandwidth")
+    public Response setBandwidthLimits(BandwidthLimits limits) {
+        if (limits == null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "Request body is required"))
+                    .build();
+        }
+        try {
+            bandwidthManager.setLimits(limits);
+            return Response.ok(bandwidthManager.getLimits()).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", e.getMessage()))
+                    .build();
+        }
+    }
+
     @POST
     @Path("/request")
-    public Response downloadVideo(DownloadRequest request){
+    @RunOnVirtualThread
+    public Response downloadVideo(DownloadRequest request,
+                                  @HeaderParam("X-Client-Id") String clientId,
+                                  @Context HttpServerRequest httpRequest){
         try {
-            String downloadId = UUID.randomUUID().toString();
-            CompletableFuture<File> downloadFuture = downloadService.downloadVideo(
+            JobSubmission submission = jobService.submit(
                     request.getUrl(),
                     request.getFormatId(),
-                    downloadId
+                    resolveClientId(clientId, httpRequest),
+                    request.getPriority()
             );
-            activeDownloads.put(downloadId, downloadFuture);
-            // Clean up when completed
-            downloadFuture.whenComplete((result, throwable) -> {
-                activeDownloads.remove(downloadId);
-                if (throwable != null) {
-                    System.err.println("Download failed for " + downloadId + ": " + throwable.getMessage());
-                }
-            });
             Map<String, String> response = new HashMap<>();
-            response.put("downloadId", downloadId);
-            response.put("status", "started");
+            response.put("downloadId", submission.getDownloadId());
+            response.put("status", submission.getStatus());
             System.out.println(response );
             return Response.ok() .entity(response).build();
+        } catch (QueueFullException e) {
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", "30")
+                    .entity(Map.of("error", e.getMessage()))
+                    .build();
+        } catch (DownloadException e) {
+            // Submission only fails this way for URLs we cannot identify a video in
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", e.getMessage()))
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(Map.of("error", e.getMessage()))
@@ -110,6 +476,28 @@ public class DownloadController {
         }
     }
 
+    // Downloads every entry of a playlist or channel; progress and status are reported under the returned ID
+    @POST
+    @Path("/playlist")
+    @RunOnVirtualThread
+    public Response downloadPlaylist(DownloadRequest request,
+                                     @HeaderParam("X-Client-Id") String clientId,
+                                     @Context HttpServerRequest httpRequest) {
+        try {
+            String downloadId = playlistService.submit(
+                    request.getUrl(),
+                    request.getFormatId(),
+                    resolveClientId(clientId, httpRequest),
+                    request.getPriority()
+            );
+            return Response.accepted(Map.of("downloadId", downloadId, "status", "started")).build();
+        } catch (DownloadException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", e.getMessage()))
+                    .build();
+        }
+    }
+
     @GET
     @Path("/progress/{downloadId}")
     public Response getProgress(@PathParam("downloadId") String  downloadId){
@@ -120,15 +508,77 @@ public class DownloadController {
                       .entity("{\"error\": \"Download not found\"}")
                       .build();
           }
-          if (progress.getPercentage() >= 100 &&
-                  System.currentTimeMillis() - progress.getLastUpdate() > 30000) { // 30 seconds
-              progressService.removeProgress(downloadId);
-          }
-          return Response.ok(progress).build();
+          return Response.ok(ProgressResponse.from(progress)).build();
       }catch (Exception e){
           return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                   .entity("{\"error\": \"" + e.getMessage() + "\"}")
                   .build();
       }
     }
+
+    // Many downloads in one request, for dashboards that would otherwise poll them one by one
+    @GET
+    @Path("/progress")
+    public BulkProgressResponse getProgressBulk(@QueryParam("ids") String ids) {
+        Set<String> downloadIds = parseIds(ids, bulkMaxIds);
+        Map<String, DownloadProgress> found = progressService.getProgress(downloadIds);
+        BulkProgressResponse response = new BulkProgressResponse();
+        for (String downloadId : downloadIds) {
+            DownloadProgress progress = found.get(downloadId);
+            if (progress == null) {
+                response.missing.add(downloadId);
+            } else {
+                response.progress.add(ProgressResponse.from(progress));
+            }
+        }
+        return response;
+    }
+
+    // Combined transfer rate of all running downloads
+    @GET
+    @Path("/progress/throughput")
+    public ThroughputStats getThroughput() {
+        return progressService.getThroughput();
+    }
+
+    // Server-Sent Events for many downloads over one connection. Updates are coalesced per download
+    // and flushed at most maxRate times per second; ticks a slow client cannot take are dropped.
+    @GET
+    @Path("/progress/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<ProgressResponse> streamProgress(@QueryParam("ids") String ids, @QueryParam("maxRate") Double maxRate) {
+        Set<String> downloadIds = parseIds(ids, streamMaxIds);
+        double rate = maxRate == null || maxRate <= 0 ? streamMaxRate : Math.min(maxRate, streamMaxRate);
+        Duration interval = Duration.ofMillis(Math.max(1, (long) (1000 / rate)));
+
+        ProgressSubscription subscription = progressService.subscribe(downloadIds);
+        return Multi.createFrom().ticks().every(interval)
+                .onOverflow().drop()
+                .select().first(tick -> !subscription.isFinished())
+                .onItem().transformToIterable(tick -> subscription.drain())
+                .onItem().transform(ProgressResponse::from)
+                .onTermination().invoke(() -> progressService.unsubscribe(subscription));
+    }
+
+    private Set<String> parseIds(String ids, int maxIds) {
+        Set<String> downloadIds = ids == null ? Set.of() : Arrays.stream(ids.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (downloadIds.isEmpty() || downloadIds.size() > maxIds) {
+            throw new BadRequestException("ids must list between 1 and " + maxIds + " download ids");
+        }
+        return downloadIds;
+    }
+
+    private String resolveClientId(String clientId, HttpServerRequest httpRequest) {
+        if (clientId != null && !clientId.isBlank()) {
+            return clientId.trim();
+        }
+        if (httpRequest != null && httpRequest.remoteAddress() != null) {
+            return httpRequest.remoteAddress().host();
+        }
+        return "anonymous";
+    }
 }
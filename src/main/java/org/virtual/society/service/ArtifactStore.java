@@ -0,0 +1,215 @@
+package org.virtual.society.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.model.StoreStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Finished downloads live under a path derived from what was downloaded (video ID + format selector),
+// so a completion is one rename and never needs to search a shared directory. Each job writes into
+// its own staging directory first, which also keeps partial files of concurrent jobs apart. The store
+// doubles as a cache: repeat requests are served from it, and the least recently used artifacts are
+// deleted once it grows past its quota.
+@ApplicationScoped
+public class ArtifactStore {
+
+    @ConfigProperty(name = "app.store.max-bytes", defaultValue = "21474836480")
+    long maxBytes;
+
+    @ConfigProperty(name = "app.store.dir", defaultValue = "downloads/store")
+    String storeDir;
+
+    @ConfigProperty(name = "app.store.staging-dir", defaultValue = "downloads/.staging")
+    String stagingDir;
+
+    // Access-ordered, so iteration starts at the least recently used artifact
+    private final LinkedHashMap<String, Artifact> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // One walk of the store at startup; afterwards the index is maintained incrementally
+    @PostConstruct
+    void init() {
+        Path root = Paths.get(storeDir).toAbsolutePath();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        List<Artifact> found = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> root.relativize(file).getNameCount() == 3)
+                    .forEach(file -> found.add(new Artifact(file.getParent().getFileName().toString(), file,
+                            file.toFile().length(), file.toFile().lastModified())));
+        } catch (IOException e) {
+            System.err.println("Failed to index artifact store " + root + ": " + e.getMessage());
+        }
+        found.sort(Comparator.comparingLong(Artifact::storedAt));
+        synchronized (index) {
+            for (Artifact artifact : found) {
+                index.put(artifact.key(), artifact);
+                totalBytes += artifact.size();
+            }
+            evictOverQuota(null);
+        }
+    }
+
+    // The stored file for the key, or null; a hit counts as a use for eviction purposes
+    public File lookup(String key) {
+        return lookup(key, false);
+    }
+
+    // Another look right after lookup() missed, e.g. once a concurrent job may have stored the key: a hit
+    // replaces that miss in the stats, and a second miss is not counted
+    public File recheck(String key) {
+        return lookup(key, true);
+    }
+
+    private File lookup(String key, boolean recheck) {
+        synchronized (index) {
+            Artifact artifact = index.get(key);
+            if (artifact != null && !Files.isRegularFile(artifact.path())) {
+                index.remove(key);
+                totalBytes -= artifact.size();
+                artifact = null;
+            }
+            if (artifact == null) {
+                if (!recheck) {
+                    misses++;
+                }
+                return null;
+            }
+            if (recheck) {
+                misses--;
+            }
+            hits++;
+            return artifact.path().toFile();
+        }
+    }
+
+    // Marks a stored file as used without counting a hit, e.g. when it is served to a client
+    public void touch(String key) {
+        if (key == null) {
+            return;
+        }
+        synchronized (index) {
+            index.get(key);
+        }
+    }
+
+    public StoreStats getStats() {
+        synchronized (index) {
+            return new StoreStats(hits, misses, evictions, index.size(), totalBytes, maxBytes);
+        }
+    }
+
+    // Stable per job, so a resumed job finds its partial files again
+    public Path stagingDir(String downloadId) {
+        Path dir = Paths.get(stagingDir, downloadId).toAbsolutePath();
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new DownloadException("Failed to create staging directory " + dir, e);
+        }
+        return dir;
+    }
+
+    // Atomically moves a finished file into the store; a concurrent commit of the same artifact simply wins or loses the rename
+    public File commit(String downloadId, String videoId, String formatSelector, Path stagedFile) {
+        String key = key(videoId, formatSelector);
+        Path dir = Paths.get(storeDir, key.substring(0, 2), key).toAbsolutePath();
+        Path target = dir.resolve(stagedFile.getFileName().toString());
+        try {
+            Files.createDirectories(dir);
+            Files.move(stagedFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new DownloadException("Failed to store " + stagedFile.getFileName() + ": " + e.getMessage(), e);
+        }
+        discardStaging(downloadId);
+        Artifact artifact = new Artifact(key, target, target.toFile().length(), System.currentTimeMillis());
+        synchronized (index) {
+            Artifact previous = index.put(key, artifact);
+            if (previous != null) {
+                totalBytes -= previous.size();
+                if (!previous.path().equals(target)) {
+                    delete(previous.path());
+                }
+            }
+            totalBytes += artifact.size();
+            evictOverQuota(key);
+        }
+        return target.toFile();
+    }
+
+    public void discardStaging(String downloadId) {
+        Path dir = Paths.get(stagingDir, downloadId).toAbsolutePath();
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Failed to clean staging directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    // Open readers keep their file descriptors, so evicting a file that is being served is safe
+    private void evictOverQuota(String keep) {
+        Iterator<Artifact> iterator = index.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Artifact artifact = iterator.next();
+            if (artifact.key().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= artifact.size();
+            evictions++;
+            delete(artifact.path());
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            try {
+                Files.deleteIfExists(file.getParent());
+            } catch (DirectoryNotEmptyException e) {
+                // Another file of the same artifact replaced this one
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to delete stored artifact " + file + ": " + e.getMessage());
+        }
+    }
+
+    public static String key(String videoId, String formatSelector) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((videoId + "|" + formatSelector).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Artifact(String key, Path path, long size, long storedAt) {}
+}
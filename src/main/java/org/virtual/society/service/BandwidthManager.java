@@ -0,0 +1,204 @@
+package org.virtual.society.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.engine.Throttle;
+import org.virtual.society.engine.TokenBucket;
+import org.virtual.society.model.BandwidthLimits;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hierarchical bandwidth shaping: every chunk a job reads is charged to its own bucket, its client's
+// bucket and the global bucket, and the job waits for whichever of them is furthest in debt.
+// yt-dlp processes cannot share our buckets, so they get a fixed --limit-rate worked out from the
+// same caps when they start, and that rate is taken out of the global and client buckets until they end.
+@ApplicationScoped
+public class BandwidthManager {
+
+    @ConfigProperty(name = "app.bandwidth.global-bytes-per-second", defaultValue = "0")
+    long globalBytesPerSecond;
+
+    @ConfigProperty(name = "app.bandwidth.per-client-bytes-per-second", defaultValue = "0")
+    long perClientBytesPerSecond;
+
+    @ConfigProperty(name = "app.bandwidth.per-job-bytes-per-second", defaultValue = "0")
+    long perJobBytesPerSecond;
+
+    // How far a bucket may run ahead after being idle
+    @ConfigProperty(name = "app.bandwidth.burst-bytes", defaultValue = "262144")
+    long burstBytes;
+
+    private volatile BandwidthLimits limits;
+    private TokenBucket global;
+    // Sum of the fixed rates handed to running yt-dlp processes, guarded by this
+    private long reservedGlobal;
+    private final Map<String, ClientShare> clients = new ConcurrentHashMap<>();
+    private final Map<String, JobThrottle> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        limits = new BandwidthLimits(globalBytesPerSecond, perClientBytesPerSecond, perJobBytesPerSecond);
+        global = new TokenBucket(globalBytesPerSecond, burstBytes, System.nanoTime());
+    }
+
+    public BandwidthLimits getLimits() {
+        BandwidthLimits current = limits;
+        return new BandwidthLimits(current.getGlobalBytesPerSecond(), current.getPerClientBytesPerSecond(),
+                current.getPerJobBytesPerSecond());
+    }
+
+    // Applies to running in-JVM transfers from their next chunk on; running yt-dlp processes keep their rate
+    public void setLimits(BandwidthLimits updated) {
+        if (updated.getGlobalBytesPerSecond() < 0 || updated.getPerClientBytesPerSecond() < 0
+                || updated.getPerJobBytesPerSecond() < 0) {
+            throw new IllegalArgumentException("Bandwidth limits must not be negative");
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            limits = new BandwidthLimits(updated.getGlobalBytesPerSecond(), updated.getPerClientBytesPerSecond(),
+                    updated.getPerJobBytesPerSecond());
+            global.setRate(unreserved(updated.getGlobalBytesPerSecond(), reservedGlobal), burstBytes, now);
+            for (ClientShare share : clients.values()) {
+                share.bucket.setRate(unreserved(updated.getPerClientBytesPerSecond(), share.reserved.get()),
+                        burstBytes, now);
+            }
+            for (JobThrottle job : jobs.values()) {
+                job.bucket.setRate(updated.getPerJobBytesPerSecond(), burstBytes, now);
+            }
+        }
+    }
+
+    // Registers a running job; close the throttle when the job ends so its client's share is released
+    public JobThrottle open(String downloadId, String clientId) {
+        String client = clientId == null ? "anonymous" : clientId;
+        long now = System.nanoTime();
+        synchronized (this) {
+            BandwidthLimits current = limits;
+            ClientShare share = clients.computeIfAbsent(client,
+                    key -> new ClientShare(new TokenBucket(current.getPerClientBytesPerSecond(), burstBytes, now)));
+            share.jobs.incrementAndGet();
+            JobThrottle throttle = new JobThrottle(downloadId, client, share,
+                    new TokenBucket(current.getPerJobBytesPerSecond(), burstBytes, now));
+            JobThrottle previous = jobs.put(downloadId, throttle);
+            if (previous != null) {
+                release(previous);
+            }
+            return throttle;
+        }
+    }
+
+    // Fixed rate for a job that cannot draw from the buckets: its fair share of every cap it falls under,
+    // counted at the moment it starts. 0 means unlimited. The rate stays reserved until the job closes or
+    // asks again, so in-JVM transfers only get what is left of the global and client caps.
+    synchronized long commandRate(JobThrottle throttle) {
+        BandwidthLimits current = limits;
+        long rate = current.getPerJobBytesPerSecond();
+        rate = tightest(rate, share(current.getPerClientBytesPerSecond(), throttle.share.jobs.get()));
+        rate = tightest(rate, share(current.getGlobalBytesPerSecond(), jobs.size()));
+        if (jobs.get(throttle.downloadId) == throttle) {
+            reserve(throttle, rate);
+        }
+        return rate;
+    }
+
+    private void reserve(JobThrottle throttle, long rate) {
+        long change = rate - throttle.reserved;
+        if (change == 0) {
+            return;
+        }
+        throttle.reserved = rate;
+        reservedGlobal += change;
+        throttle.share.reserved.addAndGet(change);
+        BandwidthLimits current = limits;
+        long now = System.nanoTime();
+        global.setRate(unreserved(current.getGlobalBytesPerSecond(), reservedGlobal), burstBytes, now);
+        throttle.share.bucket.setRate(unreserved(current.getPerClientBytesPerSecond(), throttle.share.reserved.get()),
+                burstBytes, now);
+    }
+
+    // What a cap leaves for the buckets once yt-dlp reservations are taken out. A sliver is always kept,
+    // since a rate of 0 would mean unlimited and in-JVM transfers should crawl rather than stall outright
+    // while yt-dlp holds the whole cap.
+    private static long unreserved(long cap, long reserved) {
+        return cap <= 0 ? 0 : Math.max(Math.max(1, cap / 64), cap - reserved);
+    }
+
+    private static long share(long cap, int jobCount) {
+        return cap <= 0 ? 0 : Math.max(1, cap / Math.max(1, jobCount));
+    }
+
+    private static long tightest(long a, long b) {
+        if (a <= 0) {
+            return b;
+        }
+        return b <= 0 ? a : Math.min(a, b);
+    }
+
+    private synchronized void close(JobThrottle throttle) {
+        if (jobs.remove(throttle.downloadId, throttle)) {
+            release(throttle);
+        }
+    }
+
+    private void release(JobThrottle throttle) {
+        reserve(throttle, 0);
+        if (throttle.share.jobs.decrementAndGet() == 0) {
+            clients.remove(throttle.client, throttle.share);
+        }
+    }
+
+    private record ClientShare(TokenBucket bucket, AtomicInteger jobs, AtomicLong reserved) {
+        private ClientShare(TokenBucket bucket) {
+            this(bucket, new AtomicInteger(), new AtomicLong());
+        }
+    }
+
+    public final class JobThrottle implements Throttle, AutoCloseable {
+        private final String downloadId;
+        private final String client;
+        private final ClientShare share;
+        private final TokenBucket bucket;
+        // Rate currently handed to a yt-dlp process for this job, guarded by the manager
+        private long reserved;
+
+        private JobThrottle(String downloadId, String client, ClientShare share, TokenBucket bucket) {
+            this.downloadId = downloadId;
+            this.client = client;
+            this.share = share;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public void acquire(int bytes) throws IOException {
+            long now = System.nanoTime();
+            long wait = Math.max(bucket.reserve(bytes, now),
+                    Math.max(share.bucket.reserve(bytes, now), global.reserve(bytes, now)));
+            if (wait <= 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+        }
+
+        // yt-dlp --limit-rate value in bytes per second, 0 when no cap applies
+        public long commandRate() {
+            return BandwidthManager.this.commandRate(this);
+        }
+
+        @Override
+        public void close() {
+            BandwidthManager.this.close(this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.virtual.society.service;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.virtual.society.model.DownloadProgress;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+// Shares progress through a directory every instance mounts (one small JSON file per job, replaced
+// atomically), so a client can poll any instance. Files of an instance that died are dropped by the
+// readers once they are older than the idle TTL.
+public class DirectoryProgressBackend implements ProgressBackend {
+
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9_-]{1,128}");
+
+    private final Path dir;
+    private final long staleMillis;
+    // Every field, so a snapshot round-trips with its rate samples intact
+    private final ObjectMapper mapper = new ObjectMapper()
+            .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public DirectoryProgressBackend(Path dir, Duration staleAfter) {
+        this.dir = dir;
+        this.staleMillis = staleAfter.toMillis();
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create progress directory " + dir, e);
+        }
+    }
+
+    @Override
+    public void save(DownloadProgress progress) {
+        Path target = file(progress.getDownloadId());
+        if (target == null) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(dir, ".progress", ".tmp");
+            try {
+                Files.write(temp, mapper.writeValueAsBytes(progress));
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to share progress of " + progress.getDownloadId() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public DownloadProgress load(String downloadId) {
+        Path source = file(downloadId);
+        if (source == null) {
+            return null;
+        }
+        try {
+            if (System.currentTimeMillis() - Files.getLastModifiedTime(source).toMillis() > staleMillis) {
+                Files.deleteIfExists(source);
+                return null;
+            }
+            return mapper.readValue(source.toFile(), DownloadProgress.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Failed to read shared progress of " + downloadId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(String downloadId) {
+        Path target = file(downloadId);
+        if (target == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            System.err.println("Failed to delete shared progress of " + downloadId + ": " + e.getMessage());
+        }
+    }
+
+    // Download IDs come from clients, so only plain IDs are ever turned into paths
+    private Path file(String downloadId) {
+        return downloadId != null && SAFE_ID.matcher(downloadId).matches() ? dir.resolve(downloadId + ".json") : null;
+    }
+}
@@ -0,0 +1,219 @@
+package org.virtual.society.service;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.exceptions.QueueFullException;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.JobPriority;
+import org.virtual.society.model.JobRecord;
+import org.virtual.society.model.JobState;
+import org.virtual.society.model.JobSubmission;
+import org.virtual.society.model.JobType;
+import org.virtual.society.model.StoreStats;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Owns the lifecycle of download jobs: submission, journaling and resumption after a restart.
+// Requests for an artifact that is already stored or already downloading share that result
+// instead of starting another download.
+@ApplicationScoped
+public class DownloadJobService {
+
+    @Inject
+    YoutubeDownloadService downloadService;
+
+    @Inject
+    DownloadProgressService progressService;
+
+    @Inject
+    JobJournal journal;
+
+    @Inject
+    ArtifactStore artifactStore;
+
+    // Store active downloads
+    private final ConcurrentHashMap<String, CompletableFuture<File>> activeDownloads = new ConcurrentHashMap<>();
+    // Artifact key -> download ID of the job currently producing it
+    private final ConcurrentHashMap<String, String> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    void onStart(@Observes StartupEvent event) {
+        List<JobRecord> unfinished = journal.unfinishedJobs();
+        // Playlists are resumed by PlaylistJobService
+        unfinished.removeIf(record -> record.getType() == JobType.PLAYLIST);
+        for (JobRecord record : unfinished) {
+            String key = record.getArtifactKey() != null ? record.getArtifactKey() : artifactKey(record);
+            if (key != null) {
+                inFlight.putIfAbsent(key, record.getDownloadId());
+            }
+            try {
+                start(record, key);
+            } catch (QueueFullException e) {
+                markFailed(record.getDownloadId(), key, e);
+            }
+        }
+        if (!unfinished.isEmpty()) {
+            System.out.println("Resumed " + unfinished.size() + " unfinished downloads from the journal");
+        }
+    }
+
+    public JobSubmission submit(String url, String formatId, String clientId, JobPriority priority) {
+        String key = ArtifactStore.key(downloadService.resolveVideoId(url), downloadService.resolveFormatSelector(formatId));
+        File stored = artifactStore.lookup(key);
+        if (stored != null) {
+            return cached(url, formatId, clientId, priority, key, stored);
+        }
+
+        JobRecord record = newRecord(url, formatId, clientId, priority, key);
+        File[] storedMeanwhile = new File[1];
+        String downloadId = inFlight.computeIfAbsent(key, k -> {
+            // The job that held this key may have stored its file and left since the lookup above
+            storedMeanwhile[0] = artifactStore.recheck(key);
+            if (storedMeanwhile[0] != null) {
+                return null;
+            }
+            journal.record(record);
+            // Registered before the job starts so that attached requests can already wait for it
+            activeDownloads.put(record.getDownloadId(), new CompletableFuture<>());
+            return record.getDownloadId();
+        });
+        if (downloadId == null) {
+            return cached(url, formatId, clientId, priority, key, storedMeanwhile[0]);
+        }
+        if (!downloadId.equals(record.getDownloadId())) {
+            // Follows the in-flight job, including its progress stream
+            coalesced.incrementAndGet();
+            return new JobSubmission(downloadId, "attached");
+        }
+        try {
+            start(record, key);
+        } catch (QueueFullException e) {
+            markFailed(downloadId, key, e);
+            throw e;
+        }
+        return new JobSubmission(downloadId, "started");
+    }
+
+    private JobSubmission cached(String url, String formatId, String clientId, JobPriority priority, String key,
+                                 File stored) {
+        JobRecord record = newRecord(url, formatId, clientId, priority, key);
+        record.setState(JobState.DONE);
+        record.setOutputPath(stored.getAbsolutePath());
+        journal.record(record);
+        progressService.updatePhase(record.getDownloadId(), DownloadPhase.COMPLETED);
+        return new JobSubmission(record.getDownloadId(), "cached");
+    }
+
+    public StoreStats getStoreStats() {
+        StoreStats stats = artifactStore.getStats();
+        stats.setCoalescedCount(coalesced.get());
+        return stats;
+    }
+
+    public JobRecord getJob(String downloadId) {
+        return journal.get(downloadId);
+    }
+
+    public boolean isActive(String downloadId) {
+        return activeDownloads.containsKey(downloadId);
+    }
+
+    // Queued and running video jobs
+    public int activeCount() {
+        return activeDownloads.size();
+    }
+
+    // Completes with the stored file once the job has finished, whether it is queued, running or already done
+    public CompletableFuture<File> completion(String downloadId) {
+        CompletableFuture<File> active = activeDownloads.get(downloadId);
+        if (active != null) {
+            return active;
+        }
+        JobRecord record = journal.get(downloadId);
+        if (record != null && record.getState() == JobState.FAILED) {
+            return CompletableFuture.failedFuture(new DownloadException(record.getError()));
+        }
+        return CompletableFuture.completedFuture(
+                record == null || record.getOutputPath() == null ? null : new File(record.getOutputPath()));
+    }
+
+    private void start(JobRecord record, String key) {
+        String downloadId = record.getDownloadId();
+        CompletableFuture<File> tracker = activeDownloads.computeIfAbsent(downloadId, id -> new CompletableFuture<>());
+        CompletableFuture<File> downloadFuture;
+        try {
+            downloadFuture = downloadService.downloadVideo(
+                    record.getUrl(),
+                    record.getFormatId(),
+                    downloadId,
+                    record.getClientId(),
+                    record.getPriority()
+            );
+        } catch (RuntimeException e) {
+            activeDownloads.remove(downloadId);
+            tracker.completeExceptionally(e);
+            throw e;
+        }
+        // Clean up when completed. The final record goes in before the job stops counting as active,
+        // so completion() always finds one of the two.
+        downloadFuture.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                System.err.println("Download failed for " + downloadId + ": " + throwable.getMessage());
+                markFailed(downloadId, key, throwable);
+                activeDownloads.remove(downloadId);
+                tracker.completeExceptionally(throwable);
+            } else {
+                journal.update(downloadId, job -> {
+                    job.setState(JobState.DONE);
+                    job.setOutputPath(result.getAbsolutePath());
+                    job.getSegments().clear();
+                });
+                releaseKey(key, downloadId);
+                activeDownloads.remove(downloadId);
+                tracker.complete(result);
+            }
+        });
+    }
+
+    private JobRecord newRecord(String url, String formatId, String clientId, JobPriority priority, String key) {
+        JobRecord record = new JobRecord(UUID.randomUUID().toString(), url, formatId, clientId, priority);
+        record.setArtifactKey(key);
+        return record;
+    }
+
+    // Journals written before artifact keys existed
+    private String artifactKey(JobRecord record) {
+        try {
+            return ArtifactStore.key(downloadService.resolveVideoId(record.getUrl()),
+                    downloadService.resolveFormatSelector(record.getFormatId()));
+        } catch (DownloadException e) {
+            return null;
+        }
+    }
+
+    private void releaseKey(String key, String downloadId) {
+        if (key != null) {
+            inFlight.remove(key, downloadId);
+        }
+    }
+
+    private void markFailed(String downloadId, String key, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        journal.update(downloadId, job -> {
+            job.setState(JobState.FAILED);
+            job.setError(cause.getMessage());
+        });
+        releaseKey(key, downloadId);
+    }
+}
@@ -0,0 +1,134 @@
+package org.virtual.society.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.virtual.society.exceptions.ProcessFailedException;
+import org.virtual.society.exceptions.QueueFullException;
+import org.virtual.society.exceptions.WorkerUnavailableException;
+import org.virtual.society.model.DownloadProgress;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Event meters of the download pipeline. Every tag takes a value from a small fixed set (process kind,
+// metadata source, failure cause), never a URL or job ID. Meters are looked up once per tag value and
+// cached; progress updates are not metered at all, the gauges in PipelineGauges read them at scrape time.
+@ApplicationScoped
+public class DownloadMetrics {
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Map<String, Timer> spawnTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> metadataTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> failureCounters = new ConcurrentHashMap<>();
+    private volatile DistributionSummary jobThroughput;
+
+    // Starts the process and records how long the fork/exec took; kind is e.g. "download" or "worker"
+    public Process spawn(String kind, ProcessBuilder builder) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return builder.start();
+        } finally {
+            spawnTimer(kind).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // source is "worker" or "process"
+    public void recordMetadataFetch(String source, boolean success, long startNanos) {
+        String key = source + (success ? ":success" : ":error");
+        metadataTimers.computeIfAbsent(key, k -> Timer.builder("dlf.metadata.fetch")
+                        .description("yt-dlp metadata extraction latency")
+                        .tag("source", source)
+                        .tag("outcome", success ? "success" : "error")
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(50))
+                        .maximumExpectedValue(Duration.ofMinutes(5))
+                        .register(registry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // operation is "download", "metadata" or "playlist"
+    public void recordFailure(String operation, Throwable error) {
+        String cause = causeOf(error);
+        failureCounters.computeIfAbsent(operation + ":" + cause, k -> Counter.builder("dlf.failures")
+                        .description("Failed operations by cause")
+                        .tag("operation", operation)
+                        .tag("cause", cause)
+                        .register(registry))
+                .increment();
+    }
+
+    // Average rate of one finished job, from the byte counts its progress reported
+    public void recordJobFinished(DownloadProgress progress) {
+        if (progress == null || progress.getBytesTransferred() <= 0) {
+            return;
+        }
+        long millis = progress.getLastTransferAt() - progress.getTransferStartedAt();
+        if (millis <= 0) {
+            return;
+        }
+        DistributionSummary summary = jobThroughput;
+        if (summary == null) {
+            summary = DistributionSummary.builder("dlf.job.throughput")
+                    .description("Average transfer rate per finished job")
+                    .baseUnit("bytes_per_second")
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(1024.0)
+                    .maximumExpectedValue(1024.0 * 1024 * 1024)
+                    .register(registry);
+            jobThroughput = summary;
+        }
+        summary.record(progress.getBytesTransferred() * 1000.0 / millis);
+    }
+
+    static String causeOf(Throwable error) {
+        boolean io = false;
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof ProcessFailedException failed) {
+                return failed.isTimedOut() ? "timeout" : "exit_code";
+            }
+            if (current instanceof TimeoutException || current instanceof HttpTimeoutException
+                    || current instanceof SocketTimeoutException) {
+                return "timeout";
+            }
+            if (current instanceof JsonProcessingException) {
+                return "parse_error";
+            }
+            if (current instanceof QueueFullException) {
+                return "queue_full";
+            }
+            if (current instanceof WorkerUnavailableException) {
+                return "worker_unavailable";
+            }
+            if (current instanceof IOException) {
+                io = true;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return io ? "io" : "other";
+    }
+
+    private Timer spawnTimer(String kind) {
+        return spawnTimers.computeIfAbsent(kind, k -> Timer.builder("dlf.subprocess.spawn")
+                .description("Time to start an external process")
+                .tag("kind", kind)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry));
+    }
+}
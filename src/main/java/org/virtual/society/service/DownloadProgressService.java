@@ -1,25 +1,214 @@
 package org.virtual.society.service;
 
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.model.DownloadPhase;
 import org.virtual.society.model.DownloadProgress;
+import org.virtual.society.model.ThroughputStats;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+// Progress is kept as numbers per job; rates and ETAs are computed here from byte counts rather than
+// copied from whatever the downloader printed, and turned into strings only by the API.
 @ApplicationScoped
 public class DownloadProgressService {
-    private final Map<String, DownloadProgress> progressMap = new ConcurrentHashMap<>();
+    // Time constant of the rate EWMA: a sample this old weighs 1/e of a fresh one
+    @ConfigProperty(name = "app.progress.rate-window", defaultValue = "PT5S")
+    Duration rateWindow;
+
+    @ConfigProperty(name = "app.progress.store.shards", defaultValue = "16")
+    int shards;
+
+    // Hard cap; past it the oldest finished (failing that, oldest) entries make room
+    @ConfigProperty(name = "app.progress.store.max-entries", defaultValue = "100000")
+    int maxEntries;
+
+    // How long a finished or failed job stays visible after its last update
+    @ConfigProperty(name = "app.progress.store.finished-ttl", defaultValue = "PT10M")
+    Duration finishedTtl;
+
+    // Jobs that stop reporting without finishing (abandoned, lost with a crashed process) go after this
+    @ConfigProperty(name = "app.progress.store.idle-ttl", defaultValue = "PT6H")
+    Duration idleTtl;
+
+    // "memory" keeps progress local; "directory" also shares it through app.progress.backend.dir
+    @ConfigProperty(name = "app.progress.backend", defaultValue = "memory")
+    String backendType;
+
+    @ConfigProperty(name = "app.progress.backend.dir")
+    Optional<String> backendDir;
+
+    private ProgressStore store;
+    private ProgressBackend backend = ProgressBackend.NONE;
+    // Updated since the last backend flush
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    // Push subscribers indexed by the download they watch, so an update only touches its own watchers
+    private final Map<String, Set<ProgressSubscription>> subscribers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        store = new ProgressStore(shards, maxEntries, finishedTtl.toMillis(), idleTtl.toMillis(),
+                System.currentTimeMillis());
+        if ("directory".equals(backendType)) {
+            Path dir = Path.of(backendDir.orElseThrow(() ->
+                    new IllegalStateException("app.progress.backend=directory needs app.progress.backend.dir")));
+            backend = new DirectoryProgressBackend(dir, idleTtl);
+        } else if (!"memory".equals(backendType)) {
+            throw new IllegalStateException("Unknown progress backend: " + backendType);
+        }
+    }
+
+    void setBackend(ProgressBackend backend) {
+        this.backend = backend;
+    }
+
+    @Scheduled(every = "${app.progress.store.tick:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void tick() {
+        maintain(System.currentTimeMillis());
+    }
+
+    // Expires entries and writes the ones updated since the last tick to the backend
+    void maintain(long now) {
+        for (String downloadId : store.expire(now)) {
+            dirty.remove(downloadId);
+            backend.delete(downloadId);
+        }
+        if (backend == ProgressBackend.NONE) {
+            return;
+        }
+        for (String downloadId : dirty) {
+            dirty.remove(downloadId);
+            DownloadProgress progress = store.get(downloadId);
+            if (progress != null) {
+                backend.save(progress.copy());
+            }
+        }
+    }
+
+    public void updatePhase(String downloadId, DownloadPhase phase) {
+        updatePhase(downloadId, phase, null);
+    }
+
+    public void updatePhase(String downloadId, DownloadPhase phase, String message) {
+        DownloadProgress progress = entry(downloadId);
+        progress.transition(phase, message, System.currentTimeMillis());
+        publish(progress);
+    }
 
-    public void updateProgress(String downloadId, double percentage, String status, String speed, String eta) {
-        DownloadProgress progress = new DownloadProgress(downloadId, percentage, status, speed, eta, System.currentTimeMillis());
-        progressMap.put(downloadId, progress);
+    // bytesDone/bytesTotal are -1 when the downloader did not report a size
+    public void updateTransfer(String downloadId, double percentage, long bytesDone, long bytesTotal) {
+        DownloadProgress progress = entry(downloadId);
+        progress.recordTransfer(percentage, bytesDone, bytesTotal, System.currentTimeMillis(),
+                Math.max(1, rateWindow.toMillis()));
+        publish(progress);
     }
 
+    // Aggregate progress of a playlist job; total is -1 while the playlist is still being enumerated
+    public void updateEntries(String downloadId, int completed, int failed, int total) {
+        DownloadProgress progress = entry(downloadId);
+        progress.recordEntries(completed, failed, total, System.currentTimeMillis());
+        publish(progress);
+    }
+
+    // Falls back to the shared backend for jobs another instance runs
     public DownloadProgress getProgress(String downloadId) {
-        return progressMap.get(downloadId);
+        DownloadProgress progress = store.get(downloadId);
+        return progress == null ? backend.load(downloadId) : progress.copy();
+    }
+
+    // Found downloads in the order asked for; unknown IDs are left out
+    public Map<String, DownloadProgress> getProgress(Collection<String> downloadIds) {
+        Map<String, DownloadProgress> local = store.getAll(downloadIds);
+        Map<String, DownloadProgress> found = new LinkedHashMap<>();
+        for (String downloadId : downloadIds) {
+            DownloadProgress progress = local.get(downloadId);
+            DownloadProgress snapshot = progress == null ? backend.load(downloadId) : progress.copy();
+            if (snapshot != null) {
+                found.put(downloadId, snapshot);
+            }
+        }
+        return found;
     }
 
     public void removeProgress(String downloadId) {
-        progressMap.remove(downloadId);
+        if (store.remove(downloadId)) {
+            dirty.remove(downloadId);
+            backend.delete(downloadId);
+        }
     }
-}
 
+    public int getTrackedCount() {
+        return store.size();
+    }
+
+    public long getEvictionCount() {
+        return store.evictions();
+    }
+
+    // One pass over the live entries; no strings or copies are made
+    public ThroughputStats getThroughput() {
+        int[] tracked = new int[2];
+        double[] total = new double[1];
+        store.forEach(progress -> {
+            tracked[0]++;
+            double rate = progress.activeBytesPerSecond();
+            if (rate > 0) {
+                tracked[1]++;
+                total[0] += rate;
+            }
+        });
+        return new ThroughputStats(tracked[1], tracked[0], total[0]);
+    }
+
+    public ProgressSubscription subscribe(Set<String> downloadIds) {
+        ProgressSubscription subscription = new ProgressSubscription(downloadIds);
+        for (String downloadId : downloadIds) {
+            subscribers.compute(downloadId, (key, watchers) -> {
+                Set<ProgressSubscription> updated = watchers == null ? ConcurrentHashMap.newKeySet() : watchers;
+                updated.add(subscription);
+                return updated;
+            });
+            // Start every stream with the current state
+            DownloadProgress current = getProgress(downloadId);
+            if (current != null) {
+                subscription.offer(current);
+            }
+        }
+        return subscription;
+    }
+
+    public void unsubscribe(ProgressSubscription subscription) {
+        for (String downloadId : subscription.getDownloadIds()) {
+            subscribers.computeIfPresent(downloadId, (key, watchers) -> {
+                watchers.remove(subscription);
+                return watchers.isEmpty() ? null : watchers;
+            });
+        }
+    }
+
+    private DownloadProgress entry(String downloadId) {
+        return store.getOrCreate(downloadId, System.currentTimeMillis());
+    }
+
+    private void publish(DownloadProgress progress) {
+        if (backend != ProgressBackend.NONE) {
+            dirty.add(progress.getDownloadId());
+        }
+        Set<ProgressSubscription> watchers = subscribers.get(progress.getDownloadId());
+        if (watchers != null && !watchers.isEmpty()) {
+            DownloadProgress snapshot = progress.copy();
+            for (ProgressSubscription watcher : watchers) {
+                watcher.offer(snapshot);
+            }
+        }
+    }
+}
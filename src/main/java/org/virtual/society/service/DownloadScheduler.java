@@ -0,0 +1,186 @@
+package org.virtual.society.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.exceptions.QueueFullException;
+import org.virtual.society.model.JobPriority;
+import org.virtual.society.model.SchedulerStats;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+@ApplicationScoped
+public class DownloadScheduler {
+
+    @ConfigProperty(name = "app.scheduler.max-concurrent", defaultValue = "4")
+    int maxConcurrent;
+
+    @ConfigProperty(name = "app.scheduler.queue-capacity", defaultValue = "100")
+    int queueCapacity;
+
+    // How many interactive jobs may be started in a row while batch jobs are waiting
+    @ConfigProperty(name = "app.scheduler.interactive-weight", defaultValue = "3")
+    int interactiveWeight;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Per priority class, one FIFO per client; clients are served round-robin
+    private final Map<JobPriority, LinkedHashMap<String, ArrayDeque<Job<?>>>> queues = new EnumMap<>(JobPriority.class);
+    private final Map<JobPriority, Integer> queuedCount = new EnumMap<>(JobPriority.class);
+    private int queued;
+    private int running;
+    private int interactiveStreak;
+    private long rejected;
+    private long started;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private ExecutorService workers;
+
+    @PostConstruct
+    void init() {
+        for (JobPriority priority : JobPriority.values()) {
+            queues.put(priority, new LinkedHashMap<>());
+            queuedCount.put(priority, 0);
+        }
+        // Jobs spend their time waiting on processes, pipes and sockets, so each runs on its own virtual
+        // thread; max-concurrent is enforced by dispatch(), not by the size of a pool
+        workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dlf-download-", 1).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(String clientId, JobPriority priority, Supplier<T> task) {
+        String client = clientId == null || clientId.isBlank() ? "anonymous" : clientId;
+        JobPriority jobPriority = priority == null ? JobPriority.INTERACTIVE : priority;
+        Job<T> job = new Job<>(task);
+        lock.lock();
+        try {
+            if (queued >= queueCapacity) {
+                rejected++;
+                throw new QueueFullException("Download queue is full (" + queueCapacity + " jobs waiting)");
+            }
+            queues.get(jobPriority).computeIfAbsent(client, key -> new ArrayDeque<>()).addLast(job);
+            queuedCount.merge(jobPriority, 1, Integer::sum);
+            queued++;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+        return job.future;
+    }
+
+    public SchedulerStats getStats() {
+        lock.lock();
+        try {
+            int clients = 0;
+            for (LinkedHashMap<String, ArrayDeque<Job<?>>> perClient : queues.values()) {
+                clients += perClient.size();
+            }
+            double averageWaitMillis = started == 0 ? 0 : totalWaitNanos / 1_000_000.0 / started;
+            return new SchedulerStats(maxConcurrent, running, queueCapacity,
+                    queuedCount.get(JobPriority.INTERACTIVE), queuedCount.get(JobPriority.BATCH),
+                    clients, rejected, started, averageWaitMillis, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called with the lock held
+    private void dispatch() {
+        while (running < maxConcurrent && queued > 0) {
+            Job<?> job = pollNext();
+            if (job == null) {
+                return;
+            }
+            if (job.future.isDone()) {
+                // Cancelled while waiting
+                continue;
+            }
+            long waited = System.nanoTime() - job.enqueuedAt;
+            totalWaitNanos += waited;
+            maxWaitNanos = Math.max(maxWaitNanos, waited);
+            started++;
+            running++;
+            workers.execute(() -> run(job));
+        }
+    }
+
+    private Job<?> pollNext() {
+        boolean batchWaiting = queuedCount.get(JobPriority.BATCH) > 0;
+        boolean interactiveWaiting = queuedCount.get(JobPriority.INTERACTIVE) > 0;
+        JobPriority next;
+        if (interactiveWaiting && (!batchWaiting || interactiveStreak < interactiveWeight)) {
+            next = JobPriority.INTERACTIVE;
+            interactiveStreak++;
+        } else if (batchWaiting) {
+            next = JobPriority.BATCH;
+            interactiveStreak = 0;
+        } else {
+            return null;
+        }
+        LinkedHashMap<String, ArrayDeque<Job<?>>> perClient = queues.get(next);
+        Iterator<Map.Entry<String, ArrayDeque<Job<?>>>> iterator = perClient.entrySet().iterator();
+        Map.Entry<String, ArrayDeque<Job<?>>> head = iterator.next();
+        String client = head.getKey();
+        ArrayDeque<Job<?>> clientQueue = head.getValue();
+        Job<?> job = clientQueue.pollFirst();
+        iterator.remove();
+        if (!clientQueue.isEmpty()) {
+            // Move the client to the back so every waiting client gets a turn
+            perClient.put(client, clientQueue);
+        }
+        queuedCount.merge(next, -1, Integer::sum);
+        queued--;
+        return job;
+    }
+
+    private void run(Job<?> job) {
+        try {
+            job.execute();
+        } finally {
+            lock.lock();
+            try {
+                running--;
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Job<T> {
+        private final Supplier<T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+
+        private Job(Supplier<T> task) {
+            this.task = task;
+        }
+
+        private void execute() {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.virtual.society.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Hashed timing wheel of expiry candidates. Scheduling is O(1) and a tick only visits the slots it passed;
+// a deadline more than one revolution away stays in its slot until the tick it belongs to comes round.
+final class ExpiryWheel {
+
+    private record Timeout(String key, long deadlineTick) {
+    }
+
+    private final long tickMillis;
+    private final ArrayDeque<Timeout>[] slots;
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    ExpiryWheel(int size, long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.currentTick = now / tickMillis;
+    }
+
+    synchronized void schedule(String key, long deadlineMillis) {
+        long tick = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        slots[slot(tick)].add(new Timeout(key, tick));
+    }
+
+    // Keys whose deadline has passed by now, each as often as it was scheduled
+    synchronized List<String> advance(long now) {
+        long target = now / tickMillis;
+        List<String> due = new ArrayList<>();
+        // After a pause longer than a revolution every slot is visited once
+        long from = Math.max(currentTick + 1, target - slots.length + 1);
+        for (long tick = from; tick <= target; tick++) {
+            Iterator<Timeout> iterator = slots[slot(tick)].iterator();
+            while (iterator.hasNext()) {
+                Timeout timeout = iterator.next();
+                if (timeout.deadlineTick() <= target) {
+                    iterator.remove();
+                    due.add(timeout.key());
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, target);
+        return due;
+    }
+
+    synchronized int size() {
+        int size = 0;
+        for (ArrayDeque<Timeout> slot : slots) {
+            size += slot.size();
+        }
+        return size;
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.length);
+    }
+}
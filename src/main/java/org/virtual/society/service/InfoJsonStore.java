@@ -0,0 +1,200 @@
+package org.virtual.society.service;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+// Raw `--dump-json` documents of recent /info lookups, one file per video. A download started soon
+// after hands the file to yt-dlp (--load-info-json) instead of the URL, so yt-dlp only selects formats
+// and skips page fetch, player JS and signature decoding. The stream URLs inside expire, so files are
+// used only while younger than the TTL.
+@ApplicationScoped
+public class InfoJsonStore {
+
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final String SUFFIX = ".info.json";
+
+    @ConfigProperty(name = "app.info-json.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.info-json.dir", defaultValue = "downloads/.info")
+    String dir;
+
+    @ConfigProperty(name = "app.info-json.ttl", defaultValue = "PT30M")
+    Duration ttl;
+
+    // Copies the document while the parser reads it; the copy is kept only once commit() is called
+    public Capture capture(String videoId) {
+        if (!enabled || videoId == null || !SAFE_ID.matcher(videoId).matches()) {
+            return new Capture(null, null, null);
+        }
+        try {
+            Path directory = Files.createDirectories(Path.of(dir));
+            Path temp = Files.createTempFile(directory, ".capture", ".tmp");
+            return new Capture(directory.resolve(videoId + SUFFIX), temp,
+                    Files.newBufferedWriter(temp, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Cannot store extraction of " + videoId + ": " + e.getMessage());
+            return new Capture(null, null, null);
+        }
+    }
+
+    // The stored document if it is still fresh enough to download from, otherwise null
+    public Path fresh(String videoId) {
+        if (!enabled || videoId == null || !SAFE_ID.matcher(videoId).matches()) {
+            return null;
+        }
+        Path file = Path.of(dir).resolve(videoId + SUFFIX);
+        try {
+            if (System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() < ttl.toMillis()) {
+                return file;
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Cannot read stored extraction " + file + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    public void invalidate(String videoId) {
+        if (videoId != null && SAFE_ID.matcher(videoId).matches()) {
+            delete(Path.of(dir).resolve(videoId + SUFFIX));
+        }
+    }
+
+    @Scheduled(every = "${app.info-json.sweep-interval:5m}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sweep() {
+        Path directory = Path.of(dir);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - ttl.toMillis();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                try {
+                    // Leftover temp files of captures cut short by a crash go too
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    // Removed concurrently
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to sweep " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    // A copy that fails never fails the parse it rides along with; the document just isn't kept
+    public static final class Capture implements AutoCloseable {
+        private final Path target;
+        private final Path temp;
+        private final Writer copy;
+        private boolean failed;
+        private boolean done;
+
+        private Capture(Path target, Path temp, Writer copy) {
+            this.target = target;
+            this.temp = temp;
+            this.copy = copy;
+            this.failed = copy == null;
+        }
+
+        public Reader wrap(Reader source) {
+            if (failed) {
+                return source;
+            }
+            return new FilterReader(source) {
+                @Override
+                public int read() throws IOException {
+                    int c = super.read();
+                    if (c >= 0) {
+                        append(c);
+                    }
+                    return c;
+                }
+
+                @Override
+                public int read(char[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        append(buffer, offset, read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        public void commit() {
+            if (failed || done) {
+                return;
+            }
+            done = true;
+            try {
+                copy.close();
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("Failed to store extraction " + target + ": " + e.getMessage());
+                delete(temp);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (done || copy == null) {
+                return;
+            }
+            done = true;
+            try {
+                copy.close();
+            } catch (IOException e) {
+                // Discarded below anyway
+            }
+            delete(temp);
+        }
+
+        private void append(int c) {
+            if (failed) {
+                return;
+            }
+            try {
+                copy.write(c);
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+
+        private void append(char[] buffer, int offset, int length) {
+            if (failed) {
+                return;
+            }
+            try {
+                copy.write(buffer, offset, length);
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+    }
+}
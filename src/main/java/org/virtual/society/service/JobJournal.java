@@ -0,0 +1,267 @@
+package org.virtual.society.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.model.JobRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Append-only on-disk record of job state. Every line is a full JobRecord, so replay keeps the
+// last line per job. A background writer batches lines and fsyncs once per batch, and the log is
+// periodically folded into a snapshot so startup only reads live jobs. The latest record of every job
+// is also kept in memory and serves lookups, so jobs can be looked up even with journaling disabled.
+@ApplicationScoped
+public class JobJournal {
+
+    private static final String LOG_FILE = "journal.log";
+    private static final String SNAPSHOT_FILE = "snapshot.jsonl";
+
+    @ConfigProperty(name = "app.journal.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.journal.dir", defaultValue = "downloads/.journal")
+    String journalDir;
+
+    @ConfigProperty(name = "app.journal.flush-interval-millis", defaultValue = "50")
+    long flushIntervalMillis;
+
+    @ConfigProperty(name = "app.journal.retain-finished-hours", defaultValue = "24")
+    long retainFinishedHours;
+
+    @ConfigProperty(name = "app.journal.compact-min-records", defaultValue = "1000")
+    int compactMinRecords;
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Map<String, JobRecord> latest = new LinkedHashMap<>();
+    private final BlockingQueue<String> pending = new LinkedBlockingQueue<>();
+    private Path directory;
+    private FileChannel log;
+    private int logRecords;
+    // Without a log nothing compacts the records, so expired ones are dropped once they pass this count
+    private int expireAbove;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            directory = Paths.get(journalDir).toAbsolutePath();
+            Files.createDirectories(directory);
+            load(directory.resolve(SNAPSHOT_FILE));
+            load(directory.resolve(LOG_FILE));
+            compact();
+        } catch (IOException e) {
+            throw new DownloadException("Failed to open job journal in " + journalDir, e);
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "dlf-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        // No interrupt: it would close the log channel in the middle of a write
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+            flush(new ArrayList<>(pending));
+            log.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close job journal: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void record(JobRecord record) {
+        append(record.copy());
+    }
+
+    public void update(String downloadId, Consumer<JobRecord> change) {
+        synchronized (latest) {
+            JobRecord current = latest.get(downloadId);
+            if (current == null) {
+                return;
+            }
+            JobRecord updated = current.copy();
+            change.accept(updated);
+            append(updated);
+        }
+    }
+
+    public JobRecord get(String downloadId) {
+        synchronized (latest) {
+            JobRecord record = latest.get(downloadId);
+            return record == null ? null : record.copy();
+        }
+    }
+
+    // Jobs that were queued or running when the previous process stopped
+    public List<JobRecord> unfinishedJobs() {
+        List<JobRecord> unfinished = new ArrayList<>();
+        synchronized (latest) {
+            for (JobRecord record : latest.values()) {
+                if (!record.getState().isTerminal()) {
+                    unfinished.add(record.copy());
+                }
+            }
+        }
+        return unfinished;
+    }
+
+    private void append(JobRecord record) {
+        record.setUpdatedAt(System.currentTimeMillis());
+        if (!enabled) {
+            synchronized (latest) {
+                latest.put(record.getDownloadId(), record);
+                if (latest.size() > expireAbove) {
+                    expireFinished();
+                    expireAbove = Math.max(compactMinRecords, 2 * latest.size());
+                }
+            }
+            return;
+        }
+        try {
+            String line = mapper.writeValueAsString(record) + "\n";
+            synchronized (latest) {
+                latest.put(record.getDownloadId(), record);
+                pending.add(line);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to journal job " + record.getDownloadId() + ": " + e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>();
+        while (running) {
+            try {
+                String first = pending.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Let concurrent updates pile up so one fsync covers all of them
+                Thread.sleep(flushIntervalMillis);
+                batch.add(first);
+                pending.drainTo(batch);
+                flush(batch);
+                batch.clear();
+                if (logRecords > Math.max(compactMinRecords, 4 * liveRecords())) {
+                    compact();
+                }
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) {
+                    pending.addAll(batch);
+                }
+                return;
+            } catch (IOException e) {
+                System.err.println("Failed to write job journal: " + e.getMessage());
+                batch.clear();
+            }
+        }
+    }
+
+    private int liveRecords() {
+        synchronized (latest) {
+            return latest.size();
+        }
+    }
+
+    private void flush(List<String> lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        StringBuilder buffer = new StringBuilder();
+        for (String line : lines) {
+            buffer.append(line);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toString().getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            log.write(bytes);
+        }
+        log.force(false);
+        logRecords += lines.size();
+    }
+
+    private void load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JobRecord record = mapper.readValue(line, JobRecord.class);
+                    latest.put(record.getDownloadId(), record);
+                } catch (IOException e) {
+                    // A torn final line from a crash mid-write; everything before it is intact
+                    System.err.println("Skipping unreadable journal line in " + file.getFileName());
+                }
+            }
+        }
+    }
+
+    // Rewrites the snapshot from the in-memory state and starts an empty log. Replaying a log that
+    // survived a crash between the two steps is harmless because records are whole-state.
+    private void compact() throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        synchronized (latest) {
+            expireFinished();
+            try (FileChannel snapshot = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (JobRecord record : latest.values()) {
+                    snapshot.write(ByteBuffer.wrap((mapper.writeValueAsString(record) + "\n")
+                            .getBytes(StandardCharsets.UTF_8)));
+                }
+                snapshot.force(true);
+            }
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        if (log != null) {
+            log.close();
+        }
+        log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        logRecords = 0;
+    }
+
+    // Callers hold the lock on latest
+    private void expireFinished() {
+        long expiry = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retainFinishedHours);
+        latest.values().removeIf(record -> record.getState().isTerminal() && record.getUpdatedAt() < expiry);
+    }
+}
@@ -0,0 +1,275 @@
+package org.virtual.society.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.engine.SegmentedDownloader;
+import org.virtual.society.engine.Throttle;
+import org.virtual.society.engine.TransferListener;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.JobRecord;
+import org.virtual.society.model.MediaStream;
+import org.virtual.society.model.ResolvedMedia;
+import org.virtual.society.model.SegmentState;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Downloads already-resolved media URLs with the segmented in-JVM engine. The video and audio of a
+// split format are fetched at the same time and remuxed while they arrive.
+@ApplicationScoped
+public class NativeDownloadService {
+
+    private static final String FFMPEG_COMMAND = "ffmpeg";
+    private static final long MERGE_TIMEOUT = 300;
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    // Remux split formats while they download instead of merging the finished parts afterwards
+    @ConfigProperty(name = "app.engine.streaming-merge", defaultValue = "true")
+    boolean streamingMerge;
+
+    @Inject
+    SegmentedDownloader segmentedDownloader;
+
+    @Inject
+    DownloadProgressService progressService;
+
+    @Inject
+    JobJournal journal;
+
+    @Inject
+    DownloadMetrics metrics;
+
+    public File download(ResolvedMedia media, String downloadId, Path downloadDir, Throttle throttle) {
+        List<MediaStream> streams = media.getStreams();
+        String baseName = sanitizeFileName(media.getTitle()) + " [" + media.getVideoId() + "]";
+        EngineProgress progress = new EngineProgress(downloadId, streams);
+        // Everything the engine may have written, removed again if it fails
+        List<Path> written = new ArrayList<>();
+        boolean succeeded = false;
+
+        try {
+            if (streams.size() == 1) {
+                MediaStream stream = streams.get(0);
+                Path target = downloadDir.resolve(baseName + "." + stream.getExt());
+                written.add(target);
+                fetch(downloadId, stream, 0, target, progress, throttle, null);
+                succeeded = true;
+                return target.toFile();
+            }
+
+            List<Path> parts = new ArrayList<>();
+            for (MediaStream stream : streams) {
+                parts.add(downloadDir.resolve(baseName + ".f" + stream.getFormatId() + "." + stream.getExt()));
+            }
+            Path target = downloadDir.resolve(baseName + ".mp4");
+            written.addAll(parts);
+            written.add(target);
+            StreamingRemux remux = streamingMerge
+                    ? StreamingRemux.start(parts, inputs -> startMerge(inputs, target), metrics) : null;
+            boolean remuxed;
+            try {
+                fetchAll(downloadId, streams, parts, progress, throttle, remux);
+                // Usually only the tail of the streams is left for a streaming remux at this point
+                progressService.updatePhase(downloadId, DownloadPhase.MERGING);
+                remuxed = remux != null && remux.await(MERGE_TIMEOUT, TimeUnit.SECONDS);
+            } finally {
+                if (remux != null) {
+                    remux.close();
+                }
+            }
+            if (!remuxed) {
+                if (remux != null) {
+                    System.err.println("Streaming remux of " + downloadId + " failed, merging the finished parts");
+                }
+                merge(parts, target);
+            }
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+            succeeded = true;
+            return target.toFile();
+        } catch (IOException e) {
+            throw new DownloadException("In-JVM download failed: " + e.getMessage(), e);
+        } finally {
+            if (!succeeded) {
+                discard(downloadId, written);
+            }
+        }
+    }
+
+    // The yt-dlp fallback runs in the same directory with --no-overwrites --continue and would take
+    // preallocated or half-remuxed files for finished downloads, so they are deleted along with their
+    // checkpoints
+    private void discard(String downloadId, List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Failed to delete " + file + " of failed download " + downloadId + ": "
+                        + e.getMessage());
+            }
+        }
+        journal.update(downloadId, record -> record.getSegments().clear());
+    }
+
+    // The streams of a split format download side by side; the first failure cancels the others
+    private void fetchAll(String downloadId, List<MediaStream> streams, List<Path> parts, EngineProgress progress,
+                          Throttle throttle, StreamingRemux remux) throws IOException {
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("dlf-stream-", 1).factory())) {
+            List<Future<?>> fetches = new ArrayList<>();
+            for (int i = 0; i < streams.size(); i++) {
+                int index = i;
+                fetches.add(executor.submit(() -> {
+                    fetch(downloadId, streams.get(index), index, parts.get(index), progress, throttle, remux);
+                    return null;
+                }));
+            }
+            try {
+                for (Future<?> fetch : fetches) {
+                    fetch.get();
+                }
+            } catch (ExecutionException e) {
+                fetches.forEach(fetch -> fetch.cancel(true));
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IOException("Stream download failed: " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                fetches.forEach(fetch -> fetch.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while downloading streams", e);
+            }
+        }
+    }
+
+    // With a remux attached, the part is fetched front to back and handed over as its prefix becomes durable
+    private void fetch(String downloadId, MediaStream stream, int index, Path target, EngineProgress progress,
+                       Throttle throttle, StreamingRemux remux) throws IOException {
+        String fileName = target.getFileName().toString();
+        JobRecord job = journal.get(downloadId);
+        List<SegmentState> resumeFrom = job == null ? List.of() : job.getSegments().getOrDefault(fileName, List.of());
+        TransferListener listener = new TransferListener() {
+            @Override
+            public void onProgress(long bytesDone, long bytesTotal) {
+                progress.onProgress(index, bytesDone, bytesTotal);
+            }
+
+            @Override
+            public void onCheckpoint(List<SegmentState> segments) {
+                journal.update(downloadId, record -> record.getSegments().put(fileName, segments));
+                if (remux != null) {
+                    remux.advance(index, StreamingRemux.contiguousBytes(segments), false);
+                }
+            }
+        };
+        long bytes = segmentedDownloader.download(URI.create(stream.getUrl()), stream.getHttpHeaders(), target,
+                listener, resumeFrom, throttle, remux != null);
+        progress.streamFinished(index, bytes);
+        if (remux != null) {
+            remux.advance(index, bytes, true);
+        }
+    }
+
+    private void merge(List<Path> parts, Path target) throws IOException {
+        Process process = startMerge(parts, target);
+        try {
+            if (!Processes.waitFor(process, MERGE_TIMEOUT, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("ffmpeg merge timed out after " + MERGE_TIMEOUT + " seconds");
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging streams", e);
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("ffmpeg merge failed with exit code: " + process.exitValue());
+        }
+    }
+
+    private Process startMerge(List<Path> inputs, Path target) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(FFMPEG_COMMAND);
+        command.add("-y");
+        command.add("-loglevel");
+        command.add("error");
+        for (Path input : inputs) {
+            command.add("-i");
+            command.add(input.toString());
+        }
+        for (int i = 0; i < inputs.size(); i++) {
+            command.add("-map");
+            command.add(String.valueOf(i));
+        }
+        command.add("-c");
+        command.add("copy");
+        command.add(target.toString());
+        return metrics.spawn("ffmpeg", new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD));
+    }
+
+    static String sanitizeFileName(String title) {
+        String name = title == null ? "video" : title.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        return name.isEmpty() ? "video" : name;
+    }
+
+    // Adds up the byte counts of the streams of one download, which may transfer concurrently, and reports
+    // them at a bounded rate; the progress service derives speed and ETA from them
+    private final class EngineProgress {
+        private final String downloadId;
+        private final long[] done;
+        // Estimated sizes until the transfers report the real ones
+        private final long[] totals;
+        private long lastReport;
+
+        private EngineProgress(String downloadId, List<MediaStream> streams) {
+            this.downloadId = downloadId;
+            this.done = new long[streams.size()];
+            this.totals = new long[streams.size()];
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] = Math.max(0, streams.get(i).getFileSize());
+            }
+        }
+
+        private synchronized void streamFinished(int stream, long bytes) {
+            done[stream] = bytes;
+            totals[stream] = bytes;
+        }
+
+        private synchronized void onProgress(int stream, long bytesDone, long bytesTotal) {
+            done[stream] = bytesDone;
+            if (bytesTotal > 0) {
+                totals[stream] = bytesTotal;
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastReport < PROGRESS_INTERVAL_MILLIS) {
+                return;
+            }
+            lastReport = now;
+            long doneSum = 0;
+            long total = 0;
+            for (int i = 0; i < done.length; i++) {
+                doneSum += done[i];
+                total += Math.max(done[i], totals[i]);
+            }
+            double percentage = total > 0 ? Math.min(99.0, doneSum * 100.0 / total) : 0;
+            progressService.updateTransfer(downloadId, percentage, doneSum, total > 0 ? total : -1);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package org.virtual.society.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.engine.PassThroughBuffer;
+import org.virtual.society.engine.SegmentedDownloader;
+import org.virtual.society.engine.TransferListener;
+import org.virtual.society.exceptions.NotStreamableException;
+import org.virtual.society.exceptions.QueueFullException;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.MediaStream;
+import org.virtual.society.model.ResolvedMedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Streams a video to the HTTP client while it is still downloading. Every stream gets a PassThroughBuffer,
+// so a slow client falls behind into the spill file and never slows the upstream transfer down. With
+// persist set, the bytes are also written to a staging file that is committed to the artifact store once
+// the transfer completes, so later requests for the same video are cache hits.
+@ApplicationScoped
+public class PassThroughService {
+
+    // A split format only becomes playable after a merge, so streams default to progressive formats
+    private static final String STREAM_FORMAT = "best[ext=mp4][vcodec!=none][acodec!=none]/best[vcodec!=none][acodec!=none]";
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    @Inject
+    YoutubeDownloadService downloadService;
+
+    @Inject
+    SegmentedDownloader segmentedDownloader;
+
+    @Inject
+    ArtifactStore artifactStore;
+
+    @Inject
+    BandwidthManager bandwidthManager;
+
+    @Inject
+    DownloadProgressService progressService;
+
+    @Inject
+    DownloadMetrics metrics;
+
+    // Off-heap ring per stream; max-streams x buffer-bytes bounds the direct memory in use
+    @ConfigProperty(name = "app.passthrough.buffer-bytes", defaultValue = "4194304")
+    int bufferBytes;
+
+    @ConfigProperty(name = "app.passthrough.max-streams", defaultValue = "64")
+    int maxStreams;
+
+    @ConfigProperty(name = "app.passthrough.spill-dir", defaultValue = "downloads/.spill")
+    String spillDir;
+
+    private Semaphore permits;
+    // Direct memory is only returned by the garbage collector, so rings are reused rather than reallocated
+    private final Queue<ByteBuffer> idleRings = new ConcurrentLinkedQueue<>();
+    private ExecutorService transfers;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxStreams);
+        transfers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dlf-passthrough-", 1).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        transfers.shutdownNow();
+    }
+
+    // Returns once the media is resolved and the transfer has started, or with the stored file on a cache hit
+    public PassThrough open(String url, String formatId, boolean persist, String clientId) {
+        String videoId = downloadService.resolveVideoId(url);
+        String selector = formatId == null || formatId.isBlank() || "best".equals(formatId) ? STREAM_FORMAT : formatId;
+        File stored = artifactStore.lookup(ArtifactStore.key(videoId, selector));
+        if (stored != null) {
+            return new PassThrough(null, stored.getName(), stored, null, null);
+        }
+
+        ResolvedMedia media = downloadService.resolveMedia(url, selector);
+        if (media.getStreams() == null || media.getStreams().size() != 1 || !media.isDirectHttp()) {
+            throw new NotStreamableException("Format " + selector + " cannot be streamed while downloading: "
+                    + "it is merged from several streams or served as a manifest");
+        }
+        if (!permits.tryAcquire()) {
+            throw new QueueFullException("Too many streams in progress");
+        }
+        MediaStream stream = media.getStreams().get(0);
+        String streamId = UUID.randomUUID().toString();
+        String fileName = NativeDownloadService.sanitizeFileName(media.getTitle()) + " [" + videoId + "]."
+                + stream.getExt();
+        ByteBuffer ring = idleRings.poll();
+        if (ring == null || ring.capacity() != bufferBytes) {
+            ring = ByteBuffer.allocateDirect(bufferBytes);
+        }
+        PassThrough passThrough = new PassThrough(streamId, fileName, null,
+                new PassThroughBuffer(ring, Path.of(spillDir)), ring);
+        progressService.updatePhase(streamId, DownloadPhase.STARTING);
+        try {
+            transfers.submit(() -> transfer(passThrough, stream, videoId, selector, persist, clientId));
+        } catch (RuntimeException e) {
+            progressService.removeProgress(streamId);
+            passThrough.close();
+            passThrough.release();
+            throw e;
+        }
+        return passThrough;
+    }
+
+    private void transfer(PassThrough passThrough, MediaStream stream, String videoId, String selector,
+                          boolean persist, String clientId) {
+        String streamId = passThrough.downloadId;
+        PassThroughBuffer buffer = passThrough.buffer;
+        BandwidthManager.JobThrottle throttle = bandwidthManager.open(streamId, clientId);
+        Path staged = null;
+        FileChannel persisted = null;
+        boolean complete = false;
+        try {
+            if (persist) {
+                staged = artifactStore.stagingDir(streamId).resolve(passThrough.fileName);
+                persisted = FileChannel.open(staged, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+            }
+            segmentedDownloader.stream(URI.create(stream.getUrl()), stream.getHttpHeaders(),
+                    tee(buffer, persisted), progress(streamId), throttle);
+            buffer.finish();
+            progressService.updatePhase(streamId, DownloadPhase.COMPLETED);
+            complete = true;
+        } catch (IOException | RuntimeException e) {
+            buffer.fail(e instanceof IOException io ? io : new IOException(e.getMessage(), e));
+            progressService.updatePhase(streamId, DownloadPhase.FAILED, e.getMessage());
+            // A client that hangs up on a stream nobody keeps is not a failure
+            if (persist || buffer.isOpen()) {
+                metrics.recordFailure("passthrough", e);
+            }
+        } finally {
+            throttle.close();
+            passThrough.release();
+            if (persisted != null) {
+                try {
+                    persisted.close();
+                } catch (IOException e) {
+                    complete = false;
+                }
+            }
+        }
+        if (staged == null) {
+            return;
+        }
+        if (!complete) {
+            artifactStore.discardStaging(streamId);
+            return;
+        }
+        try {
+            artifactStore.commit(streamId, videoId, selector, staged);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to store streamed download " + streamId + ": " + e.getMessage());
+            artifactStore.discardStaging(streamId);
+        }
+    }
+
+    // Without persistence there is no point in downloading on once the client is gone
+    private static WritableByteChannel tee(PassThroughBuffer buffer, FileChannel persisted) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                if (persisted != null) {
+                    ByteBuffer copy = source.duplicate();
+                    while (copy.hasRemaining()) {
+                        persisted.write(copy);
+                    }
+                } else if (!buffer.isOpen()) {
+                    throw new IOException("Client disconnected");
+                }
+                return buffer.write(source);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private TransferListener progress(String streamId) {
+        return new TransferListener() {
+            private long lastReport;
+
+            @Override
+            public void onProgress(long bytesDone, long bytesTotal) {
+                long now = System.currentTimeMillis();
+                if (now - lastReport < PROGRESS_INTERVAL_MILLIS) {
+                    return;
+                }
+                lastReport = now;
+                double percentage = bytesTotal > 0 ? Math.min(99.0, bytesDone * 100.0 / bytesTotal) : 0;
+                progressService.updateTransfer(streamId, percentage, bytesDone, bytesTotal);
+            }
+        };
+    }
+
+    // The client's end of one stream. Either a stored file to send as is, or bytes to read until -1.
+    // The ring and the stream slot are given back once both the transfer and the reader are done.
+    public final class PassThrough implements AutoCloseable {
+        private final String downloadId;
+        private final String fileName;
+        private final File storedFile;
+        private final PassThroughBuffer buffer;
+        private final ByteBuffer ring;
+        private final AtomicInteger holders = new AtomicInteger(2);
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private PassThrough(String downloadId, String fileName, File storedFile, PassThroughBuffer buffer,
+                            ByteBuffer ring) {
+            this.downloadId = downloadId;
+            this.fileName = fileName;
+            this.storedFile = storedFile;
+            this.buffer = buffer;
+            this.ring = ring;
+        }
+
+        // Progress of the transfer is reported under this ID; null for a stored file
+        public String getDownloadId() {
+            return downloadId;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public File getStoredFile() {
+            return storedFile;
+        }
+
+        public int read(byte[] target, int offset, int length) throws IOException {
+            return buffer.read(target, offset, length);
+        }
+
+        @Override
+        public void close() {
+            if (buffer == null || !closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                buffer.close();
+            } catch (IOException e) {
+                System.err.println("Failed to discard spill file of stream " + downloadId + ": " + e.getMessage());
+            }
+            release();
+        }
+
+        private void release() {
+            if (holders.decrementAndGet() == 0) {
+                ring.clear();
+                idleRings.offer(ring);
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.virtual.society.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.virtual.society.model.JobPriority;
+
+// State gauges of the download pipeline. They read the stats the services already keep, and only when
+// the registry is scraped, so the download and progress paths pay nothing for them.
+@ApplicationScoped
+public class PipelineGauges {
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    DownloadScheduler scheduler;
+
+    @Inject
+    DownloadJobService jobService;
+
+    @Inject
+    DownloadProgressService progressService;
+
+    @Inject
+    VideoInfoCache videoInfoCache;
+
+    @Inject
+    ArtifactStore artifactStore;
+
+    void onStart(@Observes StartupEvent event) {
+        for (JobPriority priority : JobPriority.values()) {
+            Gauge.builder("dlf.scheduler.queued", scheduler, s -> priority == JobPriority.INTERACTIVE
+                            ? s.getStats().getQueuedInteractive() : s.getStats().getQueuedBatch())
+                    .description("Jobs waiting for a download slot")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(registry);
+        }
+        Gauge.builder("dlf.scheduler.running", scheduler, s -> s.getStats().getRunning())
+                .description("Jobs holding a download slot")
+                .register(registry);
+        FunctionCounter.builder("dlf.scheduler.rejected", scheduler, s -> s.getStats().getRejected())
+                .description("Jobs rejected because the queue was full")
+                .register(registry);
+        Gauge.builder("dlf.jobs.active", jobService, DownloadJobService::activeCount)
+                .description("Video jobs queued or running")
+                .register(registry);
+
+        Gauge.builder("dlf.throughput", progressService, p -> p.getThroughput().getBytesPerSecond())
+                .description("Smoothed transfer rate summed over all downloads")
+                .baseUnit("bytes_per_second")
+                .register(registry);
+        Gauge.builder("dlf.progress.entries", progressService, DownloadProgressService::getTrackedCount)
+                .description("Jobs held in the progress store")
+                .register(registry);
+        FunctionCounter.builder("dlf.progress.evictions", progressService, DownloadProgressService::getEvictionCount)
+                .description("Progress entries dropped because the store was full")
+                .register(registry);
+        Gauge.builder("dlf.downloads.transferring", progressService, p -> p.getThroughput().getActiveDownloads())
+                .description("Downloads currently transferring data")
+                .register(registry);
+
+        FunctionCounter.builder("dlf.cache.requests", videoInfoCache, c -> c.getStats().getHitCount())
+                .description("Cache lookups by result")
+                .tags("cache", "video_info", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("dlf.cache.requests", videoInfoCache, c -> c.getStats().getMissCount())
+                .description("Cache lookups by result")
+                .tags("cache", "video_info", "result", "miss")
+                .register(registry);
+        Gauge.builder("dlf.cache.hit.ratio", videoInfoCache, c -> c.getStats().getHitRate())
+                .tag("cache", "video_info")
+                .register(registry);
+
+        FunctionCounter.builder("dlf.cache.requests", artifactStore, s -> s.getStats().getHitCount())
+                .description("Cache lookups by result")
+                .tags("cache", "artifact_store", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("dlf.cache.requests", artifactStore, s -> s.getStats().getMissCount())
+                .description("Cache lookups by result")
+                .tags("cache", "artifact_store", "result", "miss")
+                .register(registry);
+        Gauge.builder("dlf.cache.hit.ratio", artifactStore, s -> s.getStats().getHitRate())
+                .tag("cache", "artifact_store")
+                .register(registry);
+    }
+}
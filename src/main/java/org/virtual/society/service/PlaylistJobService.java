@@ -0,0 +1,340 @@
+package org.virtual.society.service;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.exceptions.ProcessFailedException;
+import org.virtual.society.exceptions.QueueFullException;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.JobPriority;
+import org.virtual.society.model.JobRecord;
+import org.virtual.society.model.JobState;
+import org.virtual.society.model.JobType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Downloads a playlist or channel as a stream of ordinary video jobs. Entries are read from a flat,
+// lazy yt-dlp enumeration one line at a time and only as fast as downloads finish: at most
+// max-in-flight entries of a playlist are queued or running, and the enumerator blocks on its pipe
+// meanwhile. Nothing per entry is kept once it is done, so memory does not grow with the playlist.
+@ApplicationScoped
+public class PlaylistJobService {
+
+    // How far past the oldest unfinished entry a playlist may issue, in multiples of max-in-flight. Entries
+    // finished beyond it are held until the resume index catches up, so this bounds what a run keeps.
+    private static final int AHEAD_PER_SLOT = 16;
+
+    @Inject
+    YoutubeDownloadService downloadService;
+
+    @Inject
+    DownloadJobService jobService;
+
+    @Inject
+    DownloadProgressService progressService;
+
+    @Inject
+    JobJournal journal;
+
+    @Inject
+    DownloadMetrics metrics;
+
+    @ConfigProperty(name = "app.playlist.max-in-flight", defaultValue = "4")
+    int maxInFlight;
+
+    // Wait before offering an entry again when the download queue is full
+    @ConfigProperty(name = "app.playlist.queue-retry-delay", defaultValue = "PT5S")
+    Duration queueRetryDelay;
+
+    private final Map<String, PlaylistRun> running = new ConcurrentHashMap<>();
+    private ExecutorService runners;
+
+    @PostConstruct
+    void init() {
+        // A run mostly waits on its enumerator pipe and on permits, so each gets a virtual thread
+        runners = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dlf-playlist-", 1).factory());
+    }
+
+    // Running playlists stay RUNNING in the journal and continue from their resume index on the next start
+    @PreDestroy
+    void shutdown() {
+        for (PlaylistRun run : running.values()) {
+            run.stop();
+        }
+        runners.shutdownNow();
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        int resumed = 0;
+        for (JobRecord record : journal.unfinishedJobs()) {
+            if (record.getType() == JobType.PLAYLIST) {
+                launch(record);
+                resumed++;
+            }
+        }
+        if (resumed > 0) {
+            System.out.println("Resumed " + resumed + " unfinished playlists from the journal");
+        }
+    }
+
+    public String submit(String url, String formatId, String clientId, JobPriority priority) {
+        downloadService.validatePlaylistUrl(url);
+        // Bulk work by default, so it queues behind interactive requests
+        JobRecord record = new JobRecord(UUID.randomUUID().toString(), url, formatId, clientId,
+                priority == null ? JobPriority.BATCH : priority);
+        record.setType(JobType.PLAYLIST);
+        journal.record(record);
+        progressService.updatePhase(record.getDownloadId(), DownloadPhase.QUEUED);
+        launch(record);
+        return record.getDownloadId();
+    }
+
+    private void launch(JobRecord record) {
+        PlaylistRun run = new PlaylistRun(record);
+        running.put(record.getDownloadId(), run);
+        runners.execute(run::run);
+    }
+
+    private final class PlaylistRun {
+        private final JobRecord job;
+        private final Semaphore permits = new Semaphore(maxInFlight);
+        // Entry indices that were handed out and have not finished yet
+        private final TreeSet<Integer> pending = new TreeSet<>();
+        // Outcomes of finished entries past the resume index, folded into the counts as it advances
+        private final TreeMap<Integer, Boolean> finishedAhead = new TreeMap<>();
+        private int resumeIndex;
+        private int lastIssued;
+        private int completed;
+        private int failed;
+        private int aheadCompleted;
+        private int aheadFailed;
+        private int total = -1;
+        private volatile Process process;
+        private volatile boolean stopped;
+
+        private PlaylistRun(JobRecord job) {
+            this.job = job;
+            this.resumeIndex = Math.max(1, job.getResumeIndex());
+            this.lastIssued = resumeIndex - 1;
+            this.completed = job.getEntriesCompleted();
+            this.failed = job.getEntriesFailed();
+        }
+
+        private void run() {
+            String downloadId = job.getDownloadId();
+            journal.update(downloadId, record -> record.setState(JobState.RUNNING));
+            progressService.updateEntries(downloadId, completed, failed, total);
+            try {
+                int exitCode = enumerate();
+                // Wait for the entries still in flight
+                permits.acquire(maxInFlight);
+                if (stopped) {
+                    return;
+                }
+                if (exitCode != 0) {
+                    throw new ProcessFailedException("Playlist enumeration failed with exit code: " + exitCode,
+                            exitCode, false);
+                }
+                finish();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                if (!stopped) {
+                    System.err.println("Playlist " + downloadId + " failed: " + e.getMessage());
+                    metrics.recordFailure("playlist", e);
+                    journal.update(downloadId, record -> {
+                        record.setState(JobState.FAILED);
+                        record.setError(e.getMessage());
+                    });
+                    progressService.updatePhase(downloadId, DownloadPhase.FAILED, e.getMessage());
+                }
+            } finally {
+                Process enumerator = process;
+                if (enumerator != null) {
+                    enumerator.destroyForcibly();
+                }
+                running.remove(downloadId, this);
+            }
+        }
+
+        // Returns the exit code of the enumerator
+        private int enumerate() throws IOException, InterruptedException {
+            process = downloadService.startPlaylistEnumeration(job.getUrl(), resumeIndex);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (!stopped && (line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", 3);
+                    if (fields.length < 3 || fields[2].isBlank() || "NA".equals(fields[2])) {
+                        continue;
+                    }
+                    permits.acquire();
+                    int index = awaitWindow(parseIndex(fields[0], lastIssued + 1));
+                    if (stopped) {
+                        permits.release();
+                        break;
+                    }
+                    issue(index, parseIndex(fields[1], -1), fields[2].trim());
+                }
+            }
+            return Processes.waitFor(process);
+        }
+
+        // Blocks while the entry would land too far past the oldest unfinished one; returns its index
+        private synchronized int awaitWindow(int index) throws InterruptedException {
+            // Indices only grow; a repeated or missing one would stall the resume index
+            index = Math.max(index, lastIssued + 1);
+            while (!stopped && !pending.isEmpty() && index - pending.first() >= maxInFlight * AHEAD_PER_SLOT) {
+                wait();
+            }
+            return index;
+        }
+
+        private void issue(int index, int count, String entryUrl) throws InterruptedException {
+            synchronized (this) {
+                pending.add(index);
+                lastIssued = index;
+                if (count > 0) {
+                    total = count;
+                }
+            }
+            int entry = index;
+            CompletableFuture<File> completion;
+            try {
+                completion = jobService.completion(submitEntry(entryUrl));
+            } catch (DownloadException e) {
+                // Not a video (e.g. a channel tab when the channel root was given)
+                System.err.println("Skipping playlist entry " + entry + " of " + job.getDownloadId() + ": " + e.getMessage());
+                completion = CompletableFuture.failedFuture(e);
+            }
+            completion.whenComplete((file, throwable) -> entryFinished(entry, throwable == null));
+        }
+
+        private String submitEntry(String entryUrl) throws InterruptedException {
+            while (true) {
+                try {
+                    return jobService.submit(entryUrl, job.getFormatId(), job.getClientId(), job.getPriority())
+                            .getDownloadId();
+                } catch (QueueFullException e) {
+                    if (stopped) {
+                        throw new InterruptedException("Playlist stopped");
+                    }
+                    TimeUnit.MILLISECONDS.sleep(queueRetryDelay.toMillis());
+                }
+            }
+        }
+
+        private void entryFinished(int index, boolean success) {
+            int done;
+            int errors;
+            int expected;
+            synchronized (this) {
+                pending.remove(index);
+                finishedAhead.put(index, success);
+                if (success) {
+                    aheadCompleted++;
+                } else {
+                    aheadFailed++;
+                }
+                advance();
+                done = completed + aheadCompleted;
+                errors = failed + aheadFailed;
+                expected = total;
+                notifyAll();
+            }
+            progressService.updateEntries(job.getDownloadId(), done, errors, expected);
+            permits.release();
+        }
+
+        // Moves the resume index up to the oldest unfinished entry and journals the entries it passed
+        private void advance() {
+            int watermark = pending.isEmpty() ? lastIssued + 1 : pending.first();
+            if (watermark <= resumeIndex) {
+                return;
+            }
+            SortedMap<Integer, Boolean> passed = finishedAhead.headMap(watermark);
+            for (Boolean success : passed.values()) {
+                if (success) {
+                    completed++;
+                    aheadCompleted--;
+                } else {
+                    failed++;
+                    aheadFailed--;
+                }
+            }
+            passed.clear();
+            resumeIndex = watermark;
+            int index = resumeIndex;
+            int done = completed;
+            int errors = failed;
+            int expected = total;
+            journal.update(job.getDownloadId(), record -> {
+                record.setResumeIndex(index);
+                record.setEntriesCompleted(done);
+                record.setEntriesFailed(errors);
+                record.setEntriesTotal(expected);
+            });
+        }
+
+        private void finish() {
+            int done;
+            int errors;
+            synchronized (this) {
+                advance();
+                done = completed;
+                errors = failed;
+                total = done + errors;
+            }
+            int entries = done + errors;
+            progressService.updateEntries(job.getDownloadId(), done, errors, entries);
+            progressService.updatePhase(job.getDownloadId(), DownloadPhase.COMPLETED);
+            journal.update(job.getDownloadId(), record -> {
+                record.setState(JobState.DONE);
+                record.setEntriesTotal(entries);
+                if (errors > 0) {
+                    record.setError(errors + " of " + entries + " entries failed");
+                }
+            });
+        }
+
+        private void stop() {
+            stopped = true;
+            synchronized (this) {
+                notifyAll();
+            }
+            Process enumerator = process;
+            if (enumerator != null) {
+                enumerator.destroy();
+            }
+        }
+
+        private int parseIndex(String value, int fallback) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+    }
+}
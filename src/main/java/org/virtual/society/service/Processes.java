@@ -0,0 +1,33 @@
+package org.virtual.society.service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Process.waitFor blocks in Object.wait, which pins a virtual thread to its carrier on Java 21.
+// onExit() is completed by the JDK's process reaper, so waiting on it parks the virtual thread instead.
+final class Processes {
+
+    private Processes() {
+    }
+
+    static boolean waitFor(Process process, long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            process.onExit().get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            // onExit() never completes exceptionally; fall back to the plain wait just in case
+            return process.waitFor(timeout, unit);
+        }
+    }
+
+    static int waitFor(Process process) throws InterruptedException {
+        try {
+            return process.onExit().get().exitValue();
+        } catch (ExecutionException e) {
+            return process.waitFor();
+        }
+    }
+}
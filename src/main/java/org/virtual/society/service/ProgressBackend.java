@@ -0,0 +1,29 @@
+package org.virtual.society.service;
+
+import org.virtual.society.model.DownloadProgress;
+
+// Where progress snapshots are shared with other instances. The local store stays authoritative for the
+// jobs this instance runs; the backend is written from the store's maintenance tick, never per update,
+// and only read for IDs the local store does not know.
+public interface ProgressBackend {
+    ProgressBackend NONE = new ProgressBackend() {
+        @Override
+        public void save(DownloadProgress progress) {
+        }
+
+        @Override
+        public DownloadProgress load(String downloadId) {
+            return null;
+        }
+
+        @Override
+        public void delete(String downloadId) {
+        }
+    };
+
+    void save(DownloadProgress progress);
+
+    DownloadProgress load(String downloadId);
+
+    void delete(String downloadId);
+}
@@ -0,0 +1,264 @@
+package org.virtual.society.service;
+
+// Hand-written scanner for yt-dlp `[download]` lines. It walks the line once and leaves the result
+// in primitive fields instead of allocating, so one instance is reused for every line of a process.
+// Not thread-safe; each output reader owns its own parser.
+//
+//   [download]  45.3% of ~  10.52MiB at    1.23MiB/s ETA 00:05 (frag 3/20)
+//   [download] 100% of   10.52MiB in 00:00:08 at 1.23MiB/s
+//   [download] Destination: Title [id].mp4
+//   [Merger] Merging formats into "Title [id].mp4"
+public final class ProgressLineParser {
+
+    public enum LineType {
+        // Not a line we report
+        NONE,
+        // A transfer started (destination chosen or a playlist item begun)
+        STARTED,
+        // Percentage with size, speed and ETA
+        PROGRESS,
+        // The summary line yt-dlp prints when a file is complete
+        FINISHED,
+        // yt-dlp started muxing the downloaded formats of a split selection
+        MERGING
+    }
+
+    private static final String PREFIX = "[download]";
+    private static final String MERGER_PREFIX = "[Merger]";
+
+    private double percent;
+    private long totalBytes;
+    private boolean totalEstimated;
+    private double bytesPerSecond;
+    private long etaSeconds;
+    private int position;
+
+    public LineType parse(CharSequence line) {
+        percent = 0;
+        totalBytes = -1;
+        totalEstimated = false;
+        bytesPerSecond = -1;
+        etaSeconds = -1;
+        if (!startsWith(line, 0, PREFIX)) {
+            return startsWith(line, 0, MERGER_PREFIX) ? LineType.MERGING : LineType.NONE;
+        }
+        position = PREFIX.length();
+        skipSpaces(line);
+        if (startsWith(line, position, "Destination:") || startsWith(line, position, "Downloading item")) {
+            return LineType.STARTED;
+        }
+
+        double value = readNumber(line);
+        if (Double.isNaN(value) || !consume(line, '%')) {
+            return LineType.NONE;
+        }
+        percent = value;
+        skipSpaces(line);
+        if (!consume(line, "of")) {
+            return LineType.NONE;
+        }
+        skipSpaces(line);
+        if (consume(line, '~')) {
+            totalEstimated = true;
+            skipSpaces(line);
+        }
+        totalBytes = readSize(line);
+        skipSpaces(line);
+
+        if (consume(line, "in")) {
+            // Summary line: "in HH:MM:SS at <speed>"
+            skipSpaces(line);
+            readDuration(line);
+            skipSpaces(line);
+            if (consume(line, "at")) {
+                skipSpaces(line);
+                bytesPerSecond = readSpeed(line);
+            }
+            etaSeconds = 0;
+            return LineType.FINISHED;
+        }
+        if (!consume(line, "at")) {
+            return LineType.NONE;
+        }
+        skipSpaces(line);
+        bytesPerSecond = readSpeed(line);
+        skipSpaces(line);
+        if (consume(line, "ETA")) {
+            skipSpaces(line);
+            etaSeconds = readDuration(line);
+        }
+        return LineType.PROGRESS;
+    }
+
+    public double percent() {
+        return percent;
+    }
+
+    // -1 when yt-dlp did not know the size
+    public long totalBytes() {
+        return totalBytes;
+    }
+
+    // yt-dlp prefixes the size with "~" while it extrapolates from fragments
+    public boolean totalEstimated() {
+        return totalEstimated;
+    }
+
+    public long downloadedBytes() {
+        return totalBytes < 0 ? -1 : (long) (totalBytes * percent / 100.0);
+    }
+
+    // -1 when yt-dlp reported "Unknown"
+    public double bytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    // -1 when yt-dlp reported "Unknown"
+    public long etaSeconds() {
+        return etaSeconds;
+    }
+
+    private double readNumber(CharSequence line) {
+        int start = position;
+        long whole = 0;
+        long fraction = 0;
+        long scale = 1;
+        boolean inFraction = false;
+        while (position < line.length()) {
+            char c = line.charAt(position);
+            if (c >= '0' && c <= '9') {
+                if (inFraction) {
+                    fraction = fraction * 10 + (c - '0');
+                    scale *= 10;
+                } else {
+                    whole = whole * 10 + (c - '0');
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else if (c != ',') {
+                break;
+            }
+            position++;
+        }
+        return position == start ? Double.NaN : whole + (double) fraction / scale;
+    }
+
+    // "10.52MiB", "512KiB", "1.2GB", "800B"; -1 if absent or "Unknown"
+    private long readSize(CharSequence line) {
+        double value = readNumber(line);
+        if (Double.isNaN(value)) {
+            skipWord(line);
+            return -1;
+        }
+        long multiplier = readUnit(line);
+        return multiplier < 0 ? -1 : (long) (value * multiplier);
+    }
+
+    // "1.23MiB/s" or "Unknown B/s"
+    private double readSpeed(CharSequence line) {
+        double value = readNumber(line);
+        if (Double.isNaN(value)) {
+            skipWord(line);
+            skipSpaces(line);
+            skipWord(line);
+            return -1;
+        }
+        long multiplier = readUnit(line);
+        consume(line, "/s");
+        return multiplier < 0 ? -1 : value * multiplier;
+    }
+
+    private long readUnit(CharSequence line) {
+        if (position >= line.length()) {
+            return -1;
+        }
+        long base;
+        switch (line.charAt(position)) {
+            case 'B' -> {
+                position++;
+                return 1;
+            }
+            case 'K', 'k' -> base = 1;
+            case 'M' -> base = 2;
+            case 'G' -> base = 3;
+            case 'T' -> base = 4;
+            default -> {
+                return -1;
+            }
+        }
+        position++;
+        boolean binary = consume(line, 'i');
+        consume(line, 'B');
+        long unit = binary ? 1024 : 1000;
+        long multiplier = 1;
+        for (int i = 0; i < base; i++) {
+            multiplier *= unit;
+        }
+        return multiplier;
+    }
+
+    // "05", "01:05" or "1:02:05" in seconds; -1 for "Unknown"
+    private long readDuration(CharSequence line) {
+        long seconds = 0;
+        long field = 0;
+        boolean any = false;
+        while (position < line.length()) {
+            char c = line.charAt(position);
+            if (c >= '0' && c <= '9') {
+                field = field * 10 + (c - '0');
+                any = true;
+            } else if (c == ':') {
+                seconds = (seconds + field) * 60;
+                field = 0;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (!any) {
+            skipWord(line);
+            return -1;
+        }
+        return seconds + field;
+    }
+
+    private void skipSpaces(CharSequence line) {
+        while (position < line.length() && line.charAt(position) == ' ') {
+            position++;
+        }
+    }
+
+    private void skipWord(CharSequence line) {
+        while (position < line.length() && line.charAt(position) != ' ') {
+            position++;
+        }
+    }
+
+    private boolean consume(CharSequence line, char expected) {
+        if (position < line.length() && line.charAt(position) == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consume(CharSequence line, String expected) {
+        if (startsWith(line, position, expected)) {
+            position += expected.length();
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean startsWith(CharSequence line, int offset, String expected) {
+        if (line.length() - offset < expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (line.charAt(offset + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
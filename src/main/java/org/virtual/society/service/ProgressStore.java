@@ -0,0 +1,197 @@
+package org.virtual.society.service;
+
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.DownloadProgress;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Progress entries split over independently locked shards, each holding at most its share of the cap.
+// Expiry is lazy: the wheel holds the earliest moment an entry could expire and updates never touch it;
+// when that moment comes the entry is checked again and either dropped or rescheduled at its real expiry.
+final class ProgressStore {
+
+    static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 1024;
+    // How far from the eldest end eviction looks for a finished job before giving up a running one
+    private static final int EVICTION_SCAN = 64;
+
+    private final Shard[] shards;
+    private final int perShardCap;
+    private final long terminalTtlMillis;
+    private final long idleTtlMillis;
+    private final ExpiryWheel wheel;
+    private final ConcurrentLinkedQueue<String> evicted = new ConcurrentLinkedQueue<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class Shard {
+        // Insertion order, so the eldest jobs are evicted first
+        private final LinkedHashMap<String, DownloadProgress> entries = new LinkedHashMap<>();
+    }
+
+    ProgressStore(int shardCount, int maxEntries, long terminalTtlMillis, long idleTtlMillis, long now) {
+        int count = Integer.highestOneBit(Math.max(1, shardCount));
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+        this.perShardCap = Math.max(1, maxEntries / count);
+        this.terminalTtlMillis = terminalTtlMillis;
+        this.idleTtlMillis = idleTtlMillis;
+        this.wheel = new ExpiryWheel(WHEEL_SLOTS, TICK_MILLIS, now);
+    }
+
+    DownloadProgress get(String downloadId) {
+        Shard shard = shard(downloadId);
+        synchronized (shard) {
+            return shard.entries.get(downloadId);
+        }
+    }
+
+    DownloadProgress getOrCreate(String downloadId, long now) {
+        Shard shard = shard(downloadId);
+        DownloadProgress created;
+        synchronized (shard) {
+            DownloadProgress existing = shard.entries.get(downloadId);
+            if (existing != null) {
+                return existing;
+            }
+            if (shard.entries.size() >= perShardCap) {
+                evictOne(shard);
+            }
+            created = new DownloadProgress(downloadId, DownloadPhase.QUEUED, now);
+            shard.entries.put(downloadId, created);
+        }
+        wheel.schedule(downloadId, now + Math.min(terminalTtlMillis, idleTtlMillis));
+        return created;
+    }
+
+    // Found entries in the order asked for; each shard is locked once
+    Map<String, DownloadProgress> getAll(Collection<String> downloadIds) {
+        List<List<String>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (String downloadId : downloadIds) {
+            byShard.get(index(downloadId)).add(downloadId);
+        }
+        Map<String, DownloadProgress> found = new LinkedHashMap<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<String> ids = byShard.get(i);
+            if (ids.isEmpty()) {
+                continue;
+            }
+            synchronized (shards[i]) {
+                for (String downloadId : ids) {
+                    DownloadProgress progress = shards[i].entries.get(downloadId);
+                    if (progress != null) {
+                        found.put(downloadId, progress);
+                    }
+                }
+            }
+        }
+        Map<String, DownloadProgress> ordered = new LinkedHashMap<>();
+        for (String downloadId : downloadIds) {
+            DownloadProgress progress = found.get(downloadId);
+            if (progress != null) {
+                ordered.put(downloadId, progress);
+            }
+        }
+        return ordered;
+    }
+
+    boolean remove(String downloadId) {
+        Shard shard = shard(downloadId);
+        synchronized (shard) {
+            return shard.entries.remove(downloadId) != null;
+        }
+    }
+
+    void forEach(Consumer<DownloadProgress> action) {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.entries.values().forEach(action);
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.entries.size();
+            }
+        }
+        return size;
+    }
+
+    long evictions() {
+        return evictions.get();
+    }
+
+    // Drops the entries that are due, returns their IDs and the IDs evicted by the cap since the last call
+    List<String> expire(long now) {
+        List<String> removed = new ArrayList<>();
+        for (String downloadId : wheel.advance(now)) {
+            Shard shard = shard(downloadId);
+            long expiresAt;
+            synchronized (shard) {
+                DownloadProgress progress = shard.entries.get(downloadId);
+                if (progress == null) {
+                    continue;
+                }
+                expiresAt = progress.expiresAt(terminalTtlMillis, idleTtlMillis);
+                if (expiresAt <= now) {
+                    shard.entries.remove(downloadId);
+                    removed.add(downloadId);
+                    continue;
+                }
+            }
+            wheel.schedule(downloadId, expiresAt);
+        }
+        String downloadId;
+        while ((downloadId = evicted.poll()) != null) {
+            removed.add(downloadId);
+        }
+        return removed;
+    }
+
+    // Must be called with the shard locked. Removed IDs still sit in the wheel and are skipped when due.
+    private void evictOne(Shard shard) {
+        Iterator<Map.Entry<String, DownloadProgress>> iterator = shard.entries.entrySet().iterator();
+        String eldest = null;
+        for (int scanned = 0; iterator.hasNext() && scanned < EVICTION_SCAN; scanned++) {
+            Map.Entry<String, DownloadProgress> entry = iterator.next();
+            if (eldest == null) {
+                eldest = entry.getKey();
+            }
+            if (entry.getValue().getPhase().isTerminal()) {
+                iterator.remove();
+                evicted.add(entry.getKey());
+                evictions.incrementAndGet();
+                return;
+            }
+        }
+        if (eldest != null) {
+            shard.entries.remove(eldest);
+            evicted.add(eldest);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private Shard shard(String downloadId) {
+        return shards[index(downloadId)];
+    }
+
+    private int index(String downloadId) {
+        int hash = downloadId.hashCode();
+        return (hash ^ (hash >>> 16)) & (shards.length - 1);
+    }
+}
@@ -0,0 +1,52 @@
+package org.virtual.society.service;
+
+import org.virtual.society.model.DownloadProgress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One push subscriber watching a set of downloads. Only the newest update per download is kept,
+// so a subscriber that falls behind skips intermediate states instead of buffering them.
+public class ProgressSubscription {
+    private final Set<String> downloadIds;
+    private final Map<String, DownloadProgress> pending = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> finished = new ConcurrentHashMap<>();
+
+    ProgressSubscription(Set<String> downloadIds) {
+        this.downloadIds = downloadIds;
+    }
+
+    Set<String> getDownloadIds() {
+        return downloadIds;
+    }
+
+    void offer(DownloadProgress progress) {
+        pending.put(progress.getDownloadId(), progress);
+        if (isTerminal(progress)) {
+            finished.put(progress.getDownloadId(), Boolean.TRUE);
+        }
+    }
+
+    public List<DownloadProgress> drain() {
+        List<DownloadProgress> updates = new ArrayList<>(pending.size());
+        for (String downloadId : pending.keySet()) {
+            DownloadProgress progress = pending.remove(downloadId);
+            if (progress != null) {
+                updates.add(progress);
+            }
+        }
+        return updates;
+    }
+
+    // True once every watched download reached a final state and that state was delivered
+    public boolean isFinished() {
+        return pending.isEmpty() && finished.size() == downloadIds.size();
+    }
+
+    private boolean isTerminal(DownloadProgress progress) {
+        return progress.getPhase() != null && progress.getPhase().isTerminal();
+    }
+}
@@ -0,0 +1,194 @@
+package org.virtual.society.service;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.DownloadProgress;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Watches running yt-dlp processes from one periodic sweep instead of a timer per job. A process is
+// killed when no bytes arrive for stall-timeout, or when it outlives its deadline. The deadline starts
+// at initial-deadline and is pushed out while the job keeps transferring at min-bytes-per-second or
+// more, up to max-duration, so a slow but healthy 4K download is never cut off mid-transfer. No bytes
+// move while yt-dlp merges the formats, so a merge is only bounded by merge-timeout instead.
+@ApplicationScoped
+public class StallWatchdog {
+
+    public enum Verdict {
+        STALLED,
+        TIMED_OUT
+    }
+
+    @Inject
+    DownloadProgressService progressService;
+
+    // No output at all yet: yt-dlp is still extracting or connecting
+    @ConfigProperty(name = "app.watchdog.start-timeout", defaultValue = "PT120S")
+    Duration startTimeout;
+
+    @ConfigProperty(name = "app.watchdog.stall-timeout", defaultValue = "PT60S")
+    Duration stallTimeout;
+
+    @ConfigProperty(name = "app.watchdog.initial-deadline", defaultValue = "PT300S")
+    Duration initialDeadline;
+
+    @ConfigProperty(name = "app.watchdog.max-duration", defaultValue = "PT12H")
+    Duration maxDuration;
+
+    @ConfigProperty(name = "app.watchdog.min-bytes-per-second", defaultValue = "16384")
+    long minBytesPerSecond;
+
+    @ConfigProperty(name = "app.watchdog.merge-timeout", defaultValue = "PT30M")
+    Duration mergeTimeout;
+
+    @ConfigProperty(name = "app.watchdog.max-retries", defaultValue = "3")
+    int maxRetries;
+
+    // Doubles with every retry
+    @ConfigProperty(name = "app.watchdog.retry-backoff", defaultValue = "PT5S")
+    Duration retryBackoff;
+
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+
+    public Watch watch(String downloadId, Process process) {
+        Watch watch = new Watch(downloadId, process, System.currentTimeMillis());
+        watches.put(downloadId, watch);
+        return watch;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    // Backoff before the given retry (1 = first retry)
+    public Duration backoff(int retry) {
+        return retryBackoff.multipliedBy(1L << Math.min(retry - 1, 6));
+    }
+
+    @Scheduled(every = "${app.watchdog.interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sweep() {
+        check(System.currentTimeMillis());
+    }
+
+    void check(long now) {
+        for (Watch watch : watches.values()) {
+            watch.check(now);
+        }
+    }
+
+    // Only the sweep touches the sampling state; the verdict is read by the job's thread
+    public final class Watch implements AutoCloseable {
+        private final String downloadId;
+        private final Process process;
+        private final long startedAt;
+        private long deadline;
+        private long lastProgressAt;
+        private long lastCheckAt;
+        private long lastBytes;
+        private double lastPercentage;
+        private boolean transferring;
+        private double bytesPerSecond = -1;
+        // When the current merge started, 0 while not merging
+        private long mergingSince;
+        private volatile Verdict verdict;
+
+        private Watch(String downloadId, Process process, long now) {
+            this.downloadId = downloadId;
+            this.process = process;
+            this.startedAt = now;
+            this.lastProgressAt = now;
+            this.lastCheckAt = now;
+            this.deadline = now + initialDeadline.toMillis();
+            // A retried job starts from what its earlier attempts reported
+            DownloadProgress progress = progressService.getProgress(downloadId);
+            if (progress != null) {
+                lastBytes = progress.getBytesTransferred();
+                lastPercentage = progress.getPercentage();
+            }
+        }
+
+        private void check(long now) {
+            if (verdict != null) {
+                return;
+            }
+            DownloadProgress progress = progressService.getProgress(downloadId);
+            if (progress != null && progress.getPhase() == DownloadPhase.MERGING) {
+                if (mergingSince == 0) {
+                    mergingSince = now;
+                }
+                if (now - mergingSince > mergeTimeout.toMillis() || now - startedAt > maxDuration.toMillis()) {
+                    kill(Verdict.TIMED_OUT);
+                }
+                return;
+            }
+            if (mergingSince != 0) {
+                // Post-processing is over; the time it took does not count as a stall
+                mergingSince = 0;
+                lastProgressAt = now;
+                deadline = Math.max(deadline, now + stallTimeout.toMillis());
+            }
+            if (progress != null) {
+                sample(progress, now);
+            }
+            long quiet = now - lastProgressAt;
+            if (quiet > (transferring ? stallTimeout : startTimeout).toMillis()) {
+                kill(Verdict.STALLED);
+                return;
+            }
+            // Unknown sizes give no byte rate; steady percentage progress counts as healthy then
+            boolean healthy = progress != null && transferring && quiet <= stallTimeout.toMillis()
+                    && (lastBytes == 0 || bytesPerSecond >= minBytesPerSecond);
+            if (healthy) {
+                long etaMillis = progress.getEtaSeconds() > 0 ? progress.getEtaSeconds() * 2000 : 0;
+                long extended = now + Math.max(initialDeadline.toMillis(), etaMillis);
+                deadline = Math.min(Math.max(deadline, extended), startedAt + maxDuration.toMillis());
+            }
+            if (now > deadline) {
+                kill(Verdict.TIMED_OUT);
+            }
+        }
+
+        private void sample(DownloadProgress progress, long now) {
+            // Cumulative across the files of a merged format, so it only ever grows while data flows
+            long bytes = progress.getBytesTransferred();
+            double percentage = progress.getPercentage();
+            long elapsed = now - lastCheckAt;
+            // The first interval includes extraction time, so the rate is sampled from the second one on
+            if (transferring && bytes > 0 && elapsed > 0) {
+                double instant = Math.max(0, bytes - lastBytes) * 1000.0 / elapsed;
+                double alpha = 1 - Math.exp(-(double) elapsed / stallTimeout.toMillis());
+                bytesPerSecond = bytesPerSecond < 0 ? instant : bytesPerSecond + alpha * (instant - bytesPerSecond);
+            }
+            // The percentage restarts for every file of a merged format, so any change counts
+            if (bytes > lastBytes || percentage != lastPercentage) {
+                transferring = true;
+                lastProgressAt = now;
+            }
+            lastBytes = Math.max(lastBytes, bytes);
+            lastPercentage = percentage;
+            lastCheckAt = now;
+        }
+
+        private void kill(Verdict reason) {
+            verdict = reason;
+            System.err.println("Watchdog killing download " + downloadId + ": "
+                    + (reason == Verdict.STALLED ? "no progress" : "deadline passed"));
+            process.destroyForcibly();
+        }
+
+        // Null unless the watchdog killed the process
+        public Verdict getVerdict() {
+            return verdict;
+        }
+
+        @Override
+        public void close() {
+            watches.remove(downloadId, this);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.virtual.society.service;
+
+import org.virtual.society.model.SegmentState;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Remuxes the parts of a split format with one ffmpeg process while they are still downloading. Every
+// part reaches ffmpeg through a named pipe, fed from the prefix of the part that is already on disk, so
+// the merged file is written alongside the transfer instead of in a second pass once it is over. The
+// parts stay on disk, so a remux that fails can still be redone from the finished files.
+final class StreamingRemux implements AutoCloseable {
+
+    private static final long MKFIFO_TIMEOUT_SECONDS = 10;
+    private static final long EXIT_TIMEOUT_SECONDS = 10;
+    private static final int RELEASE_ATTEMPTS = 50;
+
+    @FunctionalInterface
+    interface Launcher {
+        Process start(List<Path> inputs) throws IOException;
+    }
+
+    private final List<Feed> feeds;
+    private final Process process;
+    private volatile boolean closed;
+
+    private StreamingRemux(List<Feed> feeds, Process process) {
+        this.feeds = feeds;
+        this.process = process;
+    }
+
+    // Null when named pipes or the muxer cannot be set up; the caller merges after the download then
+    static StreamingRemux start(List<Path> parts, Launcher launcher, DownloadMetrics metrics) {
+        List<Path> fifos = new ArrayList<>();
+        for (Path part : parts) {
+            fifos.add(part.resolveSibling(part.getFileName() + ".fifo"));
+        }
+        try {
+            List<String> command = new ArrayList<>();
+            command.add("mkfifo");
+            for (Path fifo : fifos) {
+                Files.deleteIfExists(fifo);
+                command.add(fifo.toString());
+            }
+            Process mkfifo = metrics.spawn("mkfifo", new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD));
+            if (!Processes.waitFor(mkfifo, MKFIFO_TIMEOUT_SECONDS, TimeUnit.SECONDS) || mkfifo.exitValue() != 0) {
+                mkfifo.destroyForcibly();
+                throw new IOException("mkfifo failed");
+            }
+            List<Feed> feeds = new ArrayList<>();
+            for (int i = 0; i < parts.size(); i++) {
+                feeds.add(new Feed(parts.get(i), fifos.get(i)));
+            }
+            StreamingRemux remux = new StreamingRemux(feeds, launcher.start(fifos));
+            for (Feed feed : feeds) {
+                feed.thread = Thread.ofVirtual().name("dlf-remux-feed").start(() -> feed.run(remux));
+            }
+            return remux;
+        } catch (IOException e) {
+            System.err.println("Streaming remux unavailable, merging after the download: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Path fifo : fifos) {
+            deleteQuietly(fifo);
+        }
+        return null;
+    }
+
+    // The first bytes of the file that are on disk without gaps, from a segment checkpoint
+    static long contiguousBytes(List<SegmentState> segments) {
+        List<SegmentState> sorted = new ArrayList<>(segments);
+        sorted.sort(Comparator.comparingLong(SegmentState::getStart));
+        long contiguous = 0;
+        for (SegmentState segment : sorted) {
+            if (segment.getStart() != contiguous) {
+                break;
+            }
+            contiguous = segment.getPosition();
+            if (segment.getPosition() < segment.getEnd()) {
+                break;
+            }
+        }
+        return contiguous;
+    }
+
+    // Lets the feed of the given part go up to bytes; last marks the part as complete at that size
+    void advance(int part, long bytes, boolean last) {
+        feeds.get(part).advance(bytes, last);
+    }
+
+    // True once ffmpeg has written the merged file
+    boolean await(long timeout, TimeUnit unit) throws IOException {
+        try {
+            return Processes.waitFor(process, timeout, unit) && process.exitValue() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging streams", e);
+        }
+    }
+
+    // Stops ffmpeg if it is still running and releases feeds blocked on their pipe
+    @Override
+    public void close() {
+        closed = true;
+        for (Feed feed : feeds) {
+            feed.advance(0, false);
+        }
+        process.destroyForcibly();
+        try {
+            Processes.waitFor(process, EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            for (Feed feed : feeds) {
+                feed.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Feed feed : feeds) {
+            deleteQuietly(feed.fifo);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Copies one part into its pipe, never past the bytes the download has made durable
+    private static final class Feed {
+        private final Path part;
+        private final Path fifo;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition advanced = lock.newCondition();
+        private long available;
+        private boolean finished;
+        private volatile boolean opened;
+        private Thread thread;
+
+        private Feed(Path part, Path fifo) {
+            this.part = part;
+            this.fifo = fifo;
+        }
+
+        private void advance(long bytes, boolean last) {
+            lock.lock();
+            try {
+                available = Math.max(available, bytes);
+                finished |= last;
+                advanced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void run(StreamingRemux remux) {
+            // Opening the write end blocks until ffmpeg opens the pipe for reading
+            try (FileChannel out = FileChannel.open(fifo, StandardOpenOption.WRITE)) {
+                opened = true;
+                FileChannel in = null;
+                try {
+                    long offset = 0;
+                    while (!remux.closed) {
+                        long limit;
+                        boolean last;
+                        lock.lock();
+                        try {
+                            while (!remux.closed && available <= offset && !finished) {
+                                advanced.await();
+                            }
+                            limit = available;
+                            last = finished;
+                        } finally {
+                            lock.unlock();
+                        }
+                        if (offset >= limit) {
+                            if (last) {
+                                return;
+                            }
+                            continue;
+                        }
+                        if (in == null) {
+                            in = FileChannel.open(part, StandardOpenOption.READ);
+                        }
+                        offset += in.transferTo(offset, limit - offset, out);
+                    }
+                } finally {
+                    if (in != null) {
+                        in.close();
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // Closed before the feed got to open its pipe
+            } catch (IOException e) {
+                // ffmpeg went away; its exit status reports the failure
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // A feed still waiting to open its pipe is let through by briefly opening the read end; with
+        // ffmpeg gone, its first write then fails
+        private void release() throws InterruptedException {
+            for (int i = 0; i < RELEASE_ATTEMPTS && thread != null && thread.isAlive(); i++) {
+                if (!opened && Files.exists(fifo)) {
+                    try {
+                        // Opening read-write never blocks on a pipe
+                        new RandomAccessFile(fifo.toFile(), "rw").close();
+                    } catch (IOException e) {
+                        // Already gone
+                    }
+                }
+                thread.join(Duration.ofMillis(100));
+            }
+        }
+    }
+}
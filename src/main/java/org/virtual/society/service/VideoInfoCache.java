@@ -0,0 +1,95 @@
+package org.virtual.society.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.model.CacheStats;
+import org.virtual.society.model.VideoFormat;
+import org.virtual.society.model.VideoInfo;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+// Size- and TTL-bounded (W-TinyLFU) metadata cache keyed by video ID. Concurrent lookups of the
+// same ID share one in-flight load instead of each starting its own yt-dlp process.
+@ApplicationScoped
+public class VideoInfoCache {
+
+    @ConfigProperty(name = "app.cache.video-info.max-bytes", defaultValue = "67108864")
+    long maxBytes;
+
+    @ConfigProperty(name = "app.cache.video-info.ttl", defaultValue = "PT30M")
+    Duration ttl;
+
+    private AsyncCache<String, VideoInfo> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String videoId, VideoInfo info) -> estimateBytes(info))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+    }
+
+    public VideoInfo get(String videoId, Function<String, VideoInfo> loader) {
+        CompletableFuture<VideoInfo> created = new CompletableFuture<>();
+        CompletableFuture<VideoInfo> future = cache.get(videoId, (key, executor) -> created);
+        if (future == created) {
+            // This caller won the race and loads on its own thread. Everyone else waits on the same future,
+            // so it is completed whatever the loader throws, and a failed load is dropped from the cache.
+            try {
+                created.complete(loader.apply(videoId));
+            } catch (Throwable e) {
+                created.completeExceptionally(e);
+                cache.asMap().remove(videoId, created);
+                if (e instanceof Error error) {
+                    throw error;
+                }
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof DownloadException downloadException) {
+                throw downloadException;
+            }
+            throw new DownloadException("Failed to fetch video information: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    public VideoInfo getIfPresent(String videoId) {
+        CompletableFuture<VideoInfo> future = cache.getIfPresent(videoId);
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    public CacheStats getStats() {
+        com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.synchronous().stats();
+        return new CacheStats(stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+                stats.loadFailureCount(), stats.averageLoadPenalty() / 1_000_000.0,
+                cache.synchronous().estimatedSize(),
+                cache.synchronous().policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+    }
+
+    // Rough retained size; descriptions and format lists dominate
+    private int estimateBytes(VideoInfo info) {
+        long bytes = 512;
+        bytes += 2L * length(info.getTitle()) + 2L * length(info.getDescription()) + 2L * length(info.getThumbnail());
+        if (info.getFormats() != null) {
+            for (VideoFormat format : info.getFormats()) {
+                bytes += 160 + 2L * (length(format.getId()) + length(format.getCodec()) + length(format.getBitrate()));
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -1,72 +1,117 @@
 package org.virtual.society.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.virtual.society.exceptions.DownloadException;
-import org.virtual.society.model.DownloadProgress;
-import org.virtual.society.model.VideoFormat;
+import org.virtual.society.exceptions.ProcessFailedException;
+import org.virtual.society.exceptions.QueueFullException;
+import org.virtual.society.exceptions.WorkerUnavailableException;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.JobPriority;
+import org.virtual.society.model.JobState;
+import org.virtual.society.model.ResolvedMedia;
 import org.virtual.society.model.VideoInfo;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class YoutubeDownloadService {
 
-private static final String DOWNLOAD_DIR =
-        Paths.get(System.getProperty("user.dir"), "downloads").toString() + File.separator;
-    private static final Path DOWNLOAD_PATH =
-            Paths.get(System.getProperty("user.dir"), "downloads");
-    private static final String YT_DLP_COMMAND = "yt-dlp";
-    private static final long PROCESS_TIMEOUT = 300;
-    private static final int MAX_CACHE_SIZE = 100;
-    private final Map<String, VideoInfo> videoInfoCache = new ConcurrentHashMap<>();
-    private final ExecutorService downloadExecutor = Executors.newCachedThreadPool();
+    private static final Pattern VIDEO_ID_PATTERN = Pattern.compile(
+            "(?<=watch\\?v=|/videos/|embed\\/|youtu.be\\/|\\/v\\/|\\/e\\/|watch\\?v%3D|watch\\?feature=player_embedded&v=|%2Fvideos%2F|embed%2F|youtu.be%2F|%2Fv%2F)[^#\\&\\?\\n]*");
+    private static final String OUTPUT_PATH_MARKER = "[dlf-output] ";
+    private static final String DEFAULT_FORMAT = "bestvideo[ext=mp4]+bestaudio[ext=m4a]/best[ext=mp4]/best";
 
     @Inject
     DownloadProgressService progressService;
 
+    @Inject
+    DownloadScheduler scheduler;
+
+    @Inject
+    NativeDownloadService nativeDownloadService;
+
+    @Inject
+    JobJournal journal;
+
+    @Inject
+    VideoInfoCache videoInfoCache;
+
+    @Inject
+    YtDlpWorkerPool workerPool;
+
+    @Inject
+    ArtifactStore artifactStore;
+
+    @Inject
+    BandwidthManager bandwidthManager;
+
+    @Inject
+    DownloadMetrics metrics;
+
+    @Inject
+    StallWatchdog watchdog;
+
+    @Inject
+    InfoJsonStore infoJsonStore;
+
+    // Executable (or path) run for downloads, dump-json fallbacks and playlist enumeration
+    @ConfigProperty(name = "app.ytdlp.command", defaultValue = "yt-dlp")
+    String ytDlpCommand;
+
+    // Fetch direct http(s) streams in-process with parallel range requests instead of through yt-dlp
+    @ConfigProperty(name = "app.engine.enabled", defaultValue = "true")
+    boolean engineEnabled;
+
+    // Covers the whole --dump-json fallback, parsing of its output included
+    @ConfigProperty(name = "app.ytdlp.dump-json-timeout", defaultValue = "PT300S")
+    Duration dumpJsonTimeout;
+
+    // One virtual thread per running yt-dlp process reads its output, so no pooled thread waits on a pipe
+    private final ExecutorService outputReaders =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dlf-ytdlp-output-", 1).factory());
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dlf-ytdlp-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public VideoInfo getVideoInfo(String videoUrl){
+        String videoId = resolveVideoId(videoUrl);
+        // Keyed by video ID so different URL forms of the same video share one entry
+        return videoInfoCache.get(videoId, id -> getVideoInfoDirect(videoUrl, id));
+    }
+
+    public String resolveVideoId(String videoUrl) {
         if (!isValidYouTubeUrl(videoUrl)) {
             throw new DownloadException("Invalid YouTube URL: " + videoUrl);
         }
-        // Use cache with size limit
-        if (videoInfoCache.size() >= MAX_CACHE_SIZE) {
-            videoInfoCache.clear(); // Simple eviction strategy
+        String videoId = extractVideoId(videoUrl);
+        if (videoId == null) {
+            throw new DownloadException("Invalid YouTube Url - could not extract video ID");
         }
-        // Manual cache implementation (avoids recursion)
-        VideoInfo cached = videoInfoCache.get(videoUrl);
-        if (cached != null) {
-            return cached;
-        }
-
-        // Fetch fresh data
-        VideoInfo freshInfo = getVideoInfoDirect(videoUrl);
-        videoInfoCache.put(videoUrl, freshInfo);
-        return freshInfo;
+        return videoId;
     }
 
-    private VideoInfo getVideoInfoDirect(String videoUrl) {
+    private VideoInfo getVideoInfoDirect(String videoUrl, String videoId) {
         try {
-            String videoId = extractVideoId(videoUrl);
-            if (videoId == null) {
-                throw new DownloadException("Invalid YouTube Url - could not extract video ID");
-            }
-            VideoInfo result = getVideoInfoWithYtDlp(videoUrl);
-            return result;
+            return getVideoInfoWithYtDlp(videoUrl, videoId);
         } catch (Exception e) {
             throw new DownloadException("Failed to fetch video information: " + e.getMessage(), e);
         }
@@ -79,59 +124,159 @@ private static final String DOWNLOAD_DIR =
         return url.matches("^(https?://)?(www\\.)?(youtube\\.com|youtu\\.?be)/.+$");
     }
 
-    public CompletableFuture<File> downloadVideo(String videoUrl, String formatId, String downloadId) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String videoId = extractVideoId(videoUrl);
-                if (videoId == null) {
-                    throw new DownloadException("Invalid YouTube URL");
-                }
-                Path downloadPath = Paths.get(DOWNLOAD_DIR);
-                if (!Files.exists(downloadPath)) {
-                    Files.createDirectories(downloadPath);
-                }
-                List<String> command = buildYtDlpCommand(videoUrl, formatId);
-
-                ProcessBuilder processBuilder = new ProcessBuilder(command);
-                processBuilder.directory(DOWNLOAD_PATH.toFile());
-                processBuilder.redirectErrorStream(true);
-                Process process = processBuilder.start();
-                readProcessOutput(process, downloadId);
-                boolean finished = process.waitFor(PROCESS_TIMEOUT, TimeUnit.SECONDS);
-                if (!finished) {
-                    process.destroyForcibly();
-                    throw new DownloadException("Download timed out after " + PROCESS_TIMEOUT + " seconds");
+    public CompletableFuture<File> downloadVideo(String videoUrl, String formatId, String downloadId,
+                                                 String clientId, JobPriority priority) {
+        progressService.updatePhase(downloadId, DownloadPhase.QUEUED);
+        try {
+            return scheduler.submit(clientId, priority, () -> runDownload(videoUrl, formatId, downloadId, clientId));
+        } catch (QueueFullException e) {
+            progressService.removeProgress(downloadId);
+            throw e;
+        }
+    }
+
+    private File runDownload(String videoUrl, String formatId, String downloadId, String clientId) {
+        journal.update(downloadId, job -> job.setState(JobState.RUNNING));
+        BandwidthManager.JobThrottle throttle = bandwidthManager.open(downloadId, clientId);
+        try {
+            String videoId = extractVideoId(videoUrl);
+            if (videoId == null) {
+                throw new DownloadException("Invalid YouTube URL");
+            }
+            String formatSelector = resolveFormatSelector(formatId);
+            Path stagingDir = artifactStore.stagingDir(downloadId);
+            // Set when an /info lookup extracted this video recently; the download then skips extraction
+            Path infoJson = infoJsonStore.fresh(videoId);
+            if (engineEnabled) {
+                try {
+                    ResolvedMedia media = resolveMedia(videoUrl, formatSelector, infoJson);
+                    if (media.isDirectHttp()) {
+                        File file = nativeDownloadService.download(media, downloadId, stagingDir, throttle);
+                        return finished(downloadId, artifactStore.commit(downloadId, videoId, formatSelector, file.toPath()));
+                    }
+                } catch (DownloadException e) {
+                    System.err.println("In-JVM download failed for " + downloadId + ", falling back to yt-dlp: " + e.getMessage());
                 }
-                int exitCode = process.exitValue();
-                if (exitCode != 0) {
-                    throw new DownloadException("Download failed with exit code: " + exitCode);
+            }
+            Path stagedFile;
+            try {
+                stagedFile = runYtDlp(buildYtDlpCommand(videoUrl, infoJson, formatSelector, stagingDir,
+                        throttle.commandRate()), stagingDir, downloadId);
+            } catch (ProcessFailedException e) {
+                if (infoJson == null || e.isTimedOut()) {
+                    throw e;
                 }
-                return findDownloadedFile(downloadPath);
+                // Most likely the stream URLs in the stored document expired early; extract afresh
+                System.err.println("Download of " + downloadId + " from the stored extraction failed, extracting again: "
+                        + e.getMessage());
+                infoJsonStore.invalidate(videoId);
+                stagedFile = runYtDlp(buildYtDlpCommand(videoUrl, null, formatSelector, stagingDir,
+                        throttle.commandRate()), stagingDir, downloadId);
+            }
+            return finished(downloadId, artifactStore.commit(downloadId, videoId, formatSelector, stagedFile));
+
+        } catch (IOException | InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progressService.updatePhase(downloadId, DownloadPhase.FAILED, e.getMessage());
+            artifactStore.discardStaging(downloadId);
+            metrics.recordFailure("download", e);
+            throw new DownloadException("Failed to download video", e);
+        } catch (RuntimeException e) {
+            // Progress streams only end once every watched job reports a final phase
+            progressService.updatePhase(downloadId, DownloadPhase.FAILED, e.getMessage());
+            artifactStore.discardStaging(downloadId);
+            metrics.recordFailure("download", e);
+            throw e;
+        } finally {
+            throttle.close();
+        }
+    }
 
-            } catch (IOException | InterruptedException e) {
-                Thread.currentThread().interrupt();
-                progressService.updateProgress(downloadId, 0, "ERROR: " + e.getMessage(), "0 KiB/s", "Unknown");
-                throw new DownloadException("Failed to download video", e);
+    // Runs the download under the stall watchdog. A stalled or overdue attempt is retried with backoff;
+    // the staging directory is kept, so --continue picks up the .part files where the last attempt stopped.
+    private Path runYtDlp(List<String> command, Path stagingDir, String downloadId)
+            throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.directory(stagingDir.toFile());
+            processBuilder.redirectErrorStream(true);
+            Process process = metrics.spawn("download", processBuilder);
+            CompletableFuture<String> outputPath = readProcessOutput(process, downloadId);
+            StallWatchdog.Verdict verdict;
+            try (StallWatchdog.Watch watch = watchdog.watch(downloadId, process)) {
+                int exitCode = Processes.waitFor(process);
+                verdict = watch.getVerdict();
+                if (verdict == null) {
+                    if (exitCode != 0) {
+                        throw new ProcessFailedException("Download failed with exit code: " + exitCode, exitCode, false);
+                    }
+                    return resolveOutputFile(outputPath, stagingDir);
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                throw e;
+            }
+            String reason = verdict == StallWatchdog.Verdict.STALLED ? "stalled" : "ran past its deadline";
+            ProcessFailedException failure = new ProcessFailedException("Download " + reason + " after "
+                    + attempt + (attempt == 1 ? " attempt" : " attempts"), -1, true);
+            if (attempt > watchdog.getMaxRetries()) {
+                throw failure;
             }
-        }, downloadExecutor);
+            metrics.recordFailure("download_attempt", failure);
+            Duration backoff = watchdog.backoff(attempt);
+            progressService.updatePhase(downloadId, DownloadPhase.STARTING, "Download " + reason + ", retrying in "
+                    + backoff.toSeconds() + "s (retry " + attempt + " of " + watchdog.getMaxRetries() + ")");
+            TimeUnit.MILLISECONDS.sleep(backoff.toMillis());
+        }
     }
 
-    private List<String> buildYtDlpCommand(String videoUrl, String formatId) {
+    private File finished(String downloadId, File file) {
+        progressService.updatePhase(downloadId, DownloadPhase.COMPLETED);
+        metrics.recordJobFinished(progressService.getProgress(downloadId));
+        return file;
+    }
+
+    public void validatePlaylistUrl(String playlistUrl) {
+        if (!isValidYouTubeUrl(playlistUrl)) {
+            throw new DownloadException("Invalid YouTube URL: " + playlistUrl);
+        }
+    }
+
+    // Lists a playlist or channel one entry per line ("<index>\t<count>\t<url>", count may be "NA")
+    // without resolving the entries. --lazy-playlist makes yt-dlp print entries as it pages through
+    // them, so a caller that stops reading also stops the enumeration.
+    public Process startPlaylistEnumeration(String playlistUrl, int startIndex) throws IOException {
         List<String> command = new ArrayList<>();
-        command.add(YT_DLP_COMMAND);
+        command.add(ytDlpCommand);
+        command.add("--flat-playlist");
+        command.add("--lazy-playlist");
+        command.add("--yes-playlist");
+        command.add("-I");
+        command.add(startIndex + ":");
+        command.add("--print");
+        command.add("%(playlist_index)s\t%(playlist_count)s\t%(url)s");
+        command.add(playlistUrl);
+        return metrics.spawn("playlist", new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD));
+    }
+
+    // With infoJson set, yt-dlp downloads from that stored --dump-json document instead of extracting the URL
+    private List<String> buildYtDlpCommand(String videoUrl, Path infoJson, String formatSelector, Path stagingDir,
+                                           long limitRate) {
+        List<String> command = new ArrayList<>();
+        command.add(ytDlpCommand);
         command.add("-v");
         // Add format specification
-        if (formatId != null && !formatId.isEmpty() && !"best".equals(formatId)) {
-            command.add("-f");
-            command.add(formatId);
-        } else {
-            command.add("-f");
-            command.add("bestvideo[ext=mp4]+bestaudio[ext=m4a]/best[ext=mp4]/best");
-        }
+        command.add("-f");
+        command.add(formatSelector);
 
         // Add output template with safe filename
         command.add("-o");
-        command.add(DOWNLOAD_DIR + "%(title)s [%(id)s].%(ext)s");
+        command.add(stagingDir.resolve("%(title)s [%(id)s].%(ext)s").toString());
+
+        // Report the final path after merging/moving; --print implies --quiet, so ask for progress explicitly
+        command.add("--print");
+        command.add("after_move:" + OUTPUT_PATH_MARKER + "%(filepath)s");
+        command.add("--progress");
 
         // Add other options
         command.add("--no-playlist");
@@ -141,339 +286,227 @@ private static final String DOWNLOAD_DIR =
         command.add("--no-overwrites");
         command.add("--continue");
         command.add("--newline");
+        if (limitRate > 0) {
+            // Bytes per second
+            command.add("--limit-rate");
+            command.add(String.valueOf(limitRate));
+        }
 
         // Add the video URL
-        command.add(videoUrl);
+        if (infoJson != null) {
+            command.add("--load-info-json");
+            command.add(infoJson.toString());
+        } else {
+            command.add(videoUrl);
+        }
 
         return command;
     }
-    private void readProcessOutput(Process process, String downloadId) {
-        CompletableFuture.runAsync(() -> {
+
+    // The staging directory only ever holds this job's files, so the fallback for a yt-dlp that did
+    // not print the path is still exact
+    private Path resolveOutputFile(CompletableFuture<String> outputPath, Path stagingDir) throws IOException {
+        String printed;
+        try {
+            printed = outputPath.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException("Interrupted while reading yt-dlp output", e);
+        } catch (ExecutionException | TimeoutException e) {
+            printed = null;
+        }
+        if (printed != null) {
+            Path file = Paths.get(printed);
+            if (Files.isRegularFile(file) && Files.size(file) > 0) {
+                return file;
+            }
+        }
+        try (Stream<Path> files = Files.list(stagingDir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".part")
+                            && !file.getFileName().toString().endsWith(".ytdl"))
+                    .findFirst()
+                    .orElseThrow(() -> new DownloadException("Could not find downloaded file"));
+        }
+    }
+
+    public String resolveFormatSelector(String formatId) {
+        if (formatId != null && !formatId.isEmpty() && !"best".equals(formatId)) {
+            return formatId;
+        }
+        return DEFAULT_FORMAT;
+    }
+
+    // Resolves the format selection to the direct media URLs yt-dlp would download
+    public ResolvedMedia resolveMedia(String videoUrl, String formatId) {
+        return resolveMedia(videoUrl, resolveFormatSelector(formatId), null);
+    }
+
+    // A stored extraction only needs format selection; if it cannot be used the URL is extracted as usual
+    private ResolvedMedia resolveMedia(String videoUrl, String formatSelector, Path infoJson) {
+        if (infoJson != null) {
+            try {
+                return extract(videoUrl, infoJson, formatSelector, YtDlpInfoParser::parseResolvedMedia);
+            } catch (DownloadException e) {
+                System.err.println("Stored extraction " + infoJson + " unusable, extracting again: " + e.getMessage());
+            }
+        }
+        return extract(videoUrl, null, formatSelector, YtDlpInfoParser::parseResolvedMedia);
+    }
+
+    private CompletableFuture<String> readProcessOutput(Process process, String downloadId) {
+        return CompletableFuture.supplyAsync(() -> {
+            String outputPath = null;
+            ProgressLineParser parser = new ProgressLineParser();
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(OUTPUT_PATH_MARKER)) {
+                        outputPath = line.substring(OUTPUT_PATH_MARKER.length());
+                        continue;
+                    }
                     // Parse progress from yt-dlp output
-                    DownloadProgress progress = parseProgressLine(line);
-                    if (progress != null) {
-                        progressService.updateProgress(
-                                downloadId,
-                                progress.getPercentage(),
-                                progress.getStatus(),
-                                progress.getSpeed(),
-                                progress.getEta()
-                        );
+                    switch (parser.parse(line)) {
+                        case PROGRESS -> progressService.updateTransfer(downloadId, parser.percent(),
+                                parser.downloadedBytes(), parser.totalBytes());
+                        case STARTED -> progressService.updatePhase(downloadId, DownloadPhase.STARTING);
+                        // One file of possibly several is done; the job completes once its file is stored
+                        case FINISHED -> progressService.updateTransfer(downloadId, parser.percent(),
+                                parser.downloadedBytes(), parser.totalBytes());
+                        case MERGING -> progressService.updatePhase(downloadId, DownloadPhase.MERGING);
+                        case NONE -> {
+                        }
                     }
                 }
             } catch (IOException e) {
                 System.err.println("Error reading process output for " + downloadId + ": " + e.getMessage());
             }
-        });
-    }
-    private File findDownloadedFile(Path downloadPath) {
-        File latestFile = findLatestFile(downloadPath.toFile());
-        if (latestFile != null && latestFile.exists() && latestFile.length() > 0) {
-            return latestFile;
-        } else {
-            throw new DownloadException("Could not find downloaded file");
-        }
-    }
-    private File findLatestFile(File directory) {
-        File[] files = directory.listFiles();
-        if (files == null || files.length == 0) {
-            throw new DownloadException("No files found in download directory");
-        }
-
-        File latestFile = files[0];
-        for (File file : files) {
-            if (file.lastModified() > latestFile.lastModified()) {
-                latestFile = file;
-            }
-        }
-        return latestFile;
+            return outputPath;
+        }, outputReaders);
     }
     private String extractVideoId(String url) {
-        String pattern = "(?<=watch\\?v=|/videos/|embed\\/|youtu.be\\/|\\/v\\/|\\/e\\/|watch\\?v%3D|watch\\?feature=player_embedded&v=|%2Fvideos%2F|embed%2F|youtu.be%2F|%2Fv%2F)[^#\\&\\?\\n]*";
-        Pattern compiledPattern = Pattern.compile(pattern);
-        Matcher matcher = compiledPattern.matcher(url);
+        Matcher matcher = VIDEO_ID_PATTERN.matcher(url);
         if (matcher.find()) {
             return matcher.group();
         }
         return null;
     }
-    private VideoInfo getVideoInfoWithYtDlp(String videoUrl){
-        Process process = null;
-        try {
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    YT_DLP_COMMAND,
-                    "--dump-json",
-                    "--no-warnings",
-                    videoUrl
-            );
-
-            processBuilder.redirectErrorStream(true);
-            process = processBuilder.start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            StringBuilder jsonOutput = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                jsonOutput.append(line);
-            }
-            boolean finished = process.waitFor(PROCESS_TIMEOUT, TimeUnit.SECONDS);
-            if (!finished) {
-                process.destroy();
-                throw new DownloadException("yt-dlp command timed out after " + PROCESS_TIMEOUT + " seconds");
-            }
-
-            int exitCode = process.exitValue();
-            if (exitCode != 0) {
-                throw new DownloadException("yt-dlp failed with exit code: " + exitCode+ ". Output: " + jsonOutput.toString());
-            }
-
-            if (jsonOutput.length() == 0) {
-                throw new DownloadException("yt-dlp returned empty output");
-            }
-            return parseYtDlpJsonOutput(jsonOutput.toString());
-
-        } catch (Exception e) {
-            if (process != null) {
-                process.destroyForcibly();
-            }
-            throw new DownloadException("Failed to execute yt-dlp command: " + e.getMessage(), e);
-        }finally {
-            if (process != null) {
-                process.destroy();
-            }
-        }
-    }
-    private VideoInfo parseYtDlpJsonOutput(String jsonOutput){
-        try{
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(jsonOutput);
-            String id = root.path("id").asText("Unknown");
-            String title = root.path("title").asText("Unknown");
-            String description = root.path("description").asText("Unknown");
-            String thumbnail = root.path("thumbnail").asText("Unknown");
-            String duration = root.path("duration").asText();
-            String viewCount = root.path("view_count").asText();
-            String uploadDate = root.path("upload_date").asText("Unknown");
-            List<VideoFormat> formats = parseFormatsFromJson(root);
-
-            return new VideoInfo(id, title, description, thumbnail,
-                    formatDuration(duration),
-                    formatViews(viewCount),
-                    formatUploadDate(uploadDate),
-                    formats);
-        } catch (Exception e) {
-            throw new DownloadException("Failed to parse yt-dlp output", e);
-        }
-    }
-    private List<VideoFormat> parseFormatsFromJson(JsonNode root) {
-        List<VideoFormat> formats = new ArrayList<>();
-        JsonNode formatsNode = root.path("formats");
-        if (formatsNode.isArray()) {
-            for (JsonNode format : formatsNode) {
-                try {
-                    String formatId = format.path("format_id").asText();
-                    String extension = format.path("ext").asText();
-                    int height = format.path("height").asInt(0);
-                    int fps = format.path("fps").asInt(0);
-                    String videoCodec = format.path("vcodec").asText("none");
-                    String audioCodec = format.path("acodec").asText("none");
-                    long fileSize = format.path("filesize").asLong(0);
-
-                    if (!"none".equals(videoCodec)) {
-                        // Video format (with or without audio)
-                        String quality = height > 0 ? height + "p" : "Unknown";
-                        String formatType = "Video";
-                        String size = formatFileSize(String.valueOf(fileSize));
-
-                        formats.add(new VideoFormat(formatId, quality, formatType,
-                                size, fps, videoCodec, audioCodec));
-                    } else if (!"none".equals(audioCodec)) {
-                        // Audio-only format
-                        String quality = "Audio Only";
-                        String formatType = extension.toUpperCase();
-                        String size = formatFileSize(String.valueOf(fileSize));
-                        int sampleRate = format.path("asr").asInt(0);
-                        String bitrate = sampleRate > 0 ? (sampleRate / 1000) + " kHz" : "Unknown";
-
-                        formats.add(new VideoFormat(formatId, quality, formatType,
-                                size, 0, null, bitrate));
-                    }
-                } catch (Exception e) {
-                    // Log and skip invalid formats
-                    System.err.println("Skipping invalid format: " + e.getMessage());
-                }
+    // The raw document is kept next to the parsed one, so a download of the video can reuse the extraction
+    private VideoInfo getVideoInfoWithYtDlp(String videoUrl, String videoId){
+        return extract(videoUrl, null, null, payload -> {
+            try (InfoJsonStore.Capture capture = infoJsonStore.capture(videoId)) {
+                VideoInfo info = YtDlpInfoParser.parseVideoInfo(capture.wrap(payload));
+                capture.commit();
+                return info;
             }
-        }
-        return formats;
+        });
     }
-    private String formatFileSize(String bytes){
-        if (bytes == null || "Unknown".equals(bytes)) return "Unknown size";
+    // Prefers a warm pooled worker and only spawns a yt-dlp process when no worker can run. With infoJson
+    // set, the stored document is only run through format selection instead of extracting the URL.
+    private <T> T extract(String videoUrl, Path infoJson, String formatSelector,
+                          YtDlpWorkerPool.PayloadReader<T> payloadReader) {
+        String source = infoJson == null ? "" : "_info_json";
+        long start = System.nanoTime();
         try {
-            long size = Long.parseLong(bytes);
-            if (size < 1024){
-                return size + " B";
-            }else if (size < 1024 * 1024){
-                return String.format("%.1f KB", size / 1024.0);
-            }else if (size < 1024 * 1024 * 1024) {
-                return String.format("%.1f MB", size / (1024.0 * 1024.0));
-            } else {
-                return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
+            T result = workerPool.extract(videoUrl, infoJson, formatSelector, payloadReader);
+            metrics.recordMetadataFetch("worker" + source, true, start);
+            return result;
+        } catch (WorkerUnavailableException e) {
+            start = System.nanoTime();
+            try {
+                T result = runYtDlpDumpJson(videoUrl, infoJson, formatSelector, payloadReader);
+                metrics.recordMetadataFetch("process" + source, true, start);
+                return result;
+            } catch (RuntimeException failure) {
+                metrics.recordMetadataFetch("process" + source, false, start);
+                metrics.recordFailure("metadata", failure);
+                throw failure;
             }
-        }catch (NumberFormatException e) {
-            return "Unknown size";
+        } catch (RuntimeException e) {
+            metrics.recordMetadataFetch("worker" + source, false, start);
+            metrics.recordFailure("metadata", e);
+            throw e;
         }
     }
-    private String formatDuration(String seconds) {
-        if (seconds == null || "Unknown".equals(seconds)) return "Unknown duration";
+    // The document is parsed straight off the process stream; stderr goes to a file so it cannot
+    // interleave with the JSON and is only read when yt-dlp fails. Parsing reads to EOF, so the deadline
+    // kills the process rather than waiting on it: that is what ends a read from a yt-dlp that hangs.
+    private <T> T runYtDlpDumpJson(String videoUrl, Path infoJson, String formatSelector,
+                                   YtDlpWorkerPool.PayloadReader<T> payloadReader){
+        Process process = null;
+        Path errorLog = null;
+        ScheduledFuture<?> deadline = null;
+        AtomicBoolean timedOut = new AtomicBoolean();
         try {
-            int totalSeconds = Integer.parseInt(seconds);
-            int hours = totalSeconds / 3600;
-            int minutes = (totalSeconds % 3600) / 60;
-            int secs = totalSeconds % 60;
-
-            if (hours > 0) {
-                return String.format("%d:%02d:%02d", hours, minutes, secs);
-            } else {
-                return String.format("%d:%02d", minutes, secs);
+            List<String> command = new ArrayList<>();
+            command.add(ytDlpCommand);
+            command.add("--dump-json");
+            command.add("--no-warnings");
+            if (formatSelector != null) {
+                command.add("-f");
+                command.add(formatSelector);
             }
-        } catch (NumberFormatException e) {
-            return "Unknown duration";
-        }
-    }
-    private String formatViews(String viewCount) {
-        if (viewCount == null || "Unknown".equals(viewCount)) return "Unknown views";
-        try {
-            long views = Long.parseLong(viewCount);
-            if (views >= 1_000_000_000) {
-                return String.format("%.1fB views", views / 1_000_000_000.0);
-            } else if (views >= 1_000_000) {
-                return String.format("%.1fM views", views / 1_000_000.0);
-            } else if (views >= 1_000) {
-                return String.format("%.1fK views", views / 1_000.0);
+            if (infoJson != null) {
+                command.add("--load-info-json");
+                command.add(infoJson.toString());
             } else {
-                return views + " views";
-            }
-        } catch (NumberFormatException e) {
-            return viewCount + " views";
-        }
-    }
-    private String formatUploadDate(String uploadDate) {
-        if (uploadDate == null || "Unknown".equals(uploadDate)) return "Unknown date";
-        try {
-            // Format: YYYYMMDD
-            if (uploadDate.length() == 8) {
-                String year = uploadDate.substring(0, 4);
-                String month = uploadDate.substring(4, 6);
-                String day = uploadDate.substring(6, 8);
-                return String.format("%s-%s-%s", year, month, day);
+                command.add(videoUrl);
             }
-            return uploadDate;
-        } catch (Exception e) {
-            return uploadDate;
-        }
-    }
-    // Health check method to verify yt-dlp is installed and working
-    public boolean checkYtDlpAvailability(){
-        try {
-            ProcessBuilder processBuilder = new ProcessBuilder(YT_DLP_COMMAND,"--version");
-            Process process = processBuilder.start();
-            boolean finished = process.waitFor(5, TimeUnit.SECONDS);
-            return finished && process.exitValue() == 0;
-        }catch (IOException | InterruptedException e) {
-            return false;
-        }
-    }
-    // Helper method to parse size strings like "10.5MiB", "2.3GB", "512KiB"
-    private double parseSize(String value, String unit) {
-        try {
-            double size = Double.parseDouble(value);
-            switch (unit.toUpperCase()) {
-                case "B": return size;
-                case "KB": case "KIB": return size * 1024;
-                case "MB": case "MIB": return size * 1024 * 1024;
-                case "GB": case "GIB": return size * 1024 * 1024 * 1024;
-                default: return size;
+            errorLog = Files.createTempFile("dlf-yt-dlp", ".log");
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+
+            processBuilder.redirectError(errorLog.toFile());
+            process = metrics.spawn("dump_json", processBuilder);
+            Process running = process;
+            deadline = deadlines.schedule(() -> {
+                timedOut.set(true);
+                running.destroyForcibly();
+            }, dumpJsonTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            T result = null;
+            IOException parseError = null;
+            try (InputStreamReader reader = new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)) {
+                result = payloadReader.read(reader);
+            } catch (IOException e) {
+                parseError = e;
             }
-        } catch (NumberFormatException e) {
-            return 0;
-        }
-    }
-    public boolean testYtDlpWithSimpleVideo() {
-        Process process = null;
-        try {
-            String testUrl = "https://youtu.be/1sRaLqtHXQU?si=dONkHZ3gfDhDsFdY"; // First YouTube video
-
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    YT_DLP_COMMAND,
-                    "--dump-json",
-                    "--no-warnings",
-                    testUrl
-            );
-
-            process = processBuilder.start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line);
+            boolean finished = Processes.waitFor(process, parseError == null ? dumpJsonTimeout.toSeconds() : 5,
+                    TimeUnit.SECONDS);
+            if (timedOut.get() || (!finished && parseError == null)) {
+                throw new ProcessFailedException("yt-dlp command timed out after " + dumpJsonTimeout.toSeconds()
+                        + " seconds", -1, true);
             }
 
-            boolean finished = process.waitFor(30, TimeUnit.SECONDS);
-            int exitCode = process.exitValue();
-            boolean success = finished && exitCode == 0 && output.length() > 0;
-
-            if (!success) {
-                System.err.println("yt-dlp test failed:");
-                System.err.println("Exit code: " + exitCode);
+            if (finished && process.exitValue() != 0) {
+                throw new ProcessFailedException("yt-dlp failed with exit code: " + process.exitValue() + ". Output: "
+                        + readErrorLog(errorLog), process.exitValue(), false);
             }
+            if (parseError != null) {
+                throw new DownloadException("Failed to parse yt-dlp output", parseError);
+            }
+            return result;
 
-            return success;
-
-        } catch (IOException e) {
-            System.err.println("IOException - yt-dlp likely not installed: " + e.getMessage());
-            return false;
+        } catch (DownloadException e) {
+            throw e;
         } catch (Exception e) {
-            System.err.println("Unexpected error: " + e.getMessage());
-            return false;
-        } finally {
+            throw new DownloadException("Failed to execute yt-dlp command: " + e.getMessage(), e);
+        }finally {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
             if (process != null) {
-                process.destroy();
+                process.destroyForcibly();
             }
-        }
-    }
-    private DownloadProgress parseProgressLine(String line) {
-        try {
-            if (line.contains("[download]") && line.contains("%")) {
-                Pattern pattern = Pattern.compile(
-                        "\\[download\\]\\s+(\\d+\\.?\\d*)%\\s+of\\s+~?\\s*[\\d\\.,]+[KMG]?i?B?\\s+at\\s+([\\d\\.,]+[KMG]?i?B/s)\\s+ETA\\s+([\\d:]+|Unknown)"
-                );
-
-                Matcher matcher = pattern.matcher(line);
-                if (matcher.find()) {
-                    double percentage = Double.parseDouble(matcher.group(1));
-                    String speed = matcher.group(2);
-                    String eta = matcher.group(3);
-
-                    return new DownloadProgress(null, percentage, "Downloading", speed, eta, System.currentTimeMillis());
+            if (errorLog != null) {
+                try {
+                    Files.deleteIfExists(errorLog);
+                } catch (IOException e) {
+                    System.err.println("Failed to delete " + errorLog + ": " + e.getMessage());
                 }
             }
-
-            // Handle different progress formats
-            if (line.contains("[download] Downloading item") || line.contains("[download] Destination:")) {
-                return new DownloadProgress(null, 0, "Starting download...", "0 KiB/s", "Unknown", System.currentTimeMillis());
-            }
-
-            if (line.contains("[download] 100%")) {
-                return new DownloadProgress(null, 100, "Download completed", "0 KiB/s", "00:00", System.currentTimeMillis());
-            }
-
-        } catch (Exception e) {
-            System.err.println("Error parsing progress line: " + line);
         }
-
-        return null;
+    }
+    private String readErrorLog(Path errorLog) throws IOException {
+        String output = Files.readString(errorLog, StandardCharsets.UTF_8).trim();
+        return output.length() > 2000 ? output.substring(output.length() - 2000) : output;
     }
 }
@@ -0,0 +1,113 @@
+package org.virtual.society.service;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.model.YtDlpStatus;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Checks yt-dlp and ffmpeg in the background and caches the result, so health endpoints and
+// request handlers never spawn a probe process themselves.
+@ApplicationScoped
+public class YtDlpHealthProber {
+
+    private static final String FFMPEG_COMMAND = "ffmpeg";
+
+    @ConfigProperty(name = "app.ytdlp.command", defaultValue = "yt-dlp")
+    String ytDlpCommand;
+
+    @ConfigProperty(name = "app.health.extraction-test-url", defaultValue = "https://youtu.be/1sRaLqtHXQU")
+    String extractionTestUrl;
+
+    private volatile YtDlpStatus status = new YtDlpStatus(false, null, false, null, null, "Not probed yet", 0, 0);
+
+    public YtDlpStatus getStatus() {
+        return status;
+    }
+
+    @Scheduled(every = "${app.health.probe-interval:60s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void probeVersions() {
+        ProbeOutput ytDlp = run(5, ytDlpCommand, "--version");
+        ProbeOutput ffmpeg = run(5, FFMPEG_COMMAND, "-version");
+        YtDlpStatus previous = status;
+        status = new YtDlpStatus(ytDlp.success, ytDlp.firstLine, ffmpeg.success, ffmpeg.firstLine,
+                previous.getExtractionWorking(), ytDlp.success ? null : ytDlp.error,
+                System.currentTimeMillis(), previous.getExtractionCheckedAt());
+    }
+
+    // A real metadata fetch catches extractor breakage that --version cannot, so it runs rarely
+    @Scheduled(every = "${app.health.extraction-probe-interval:15m}", delayed = "30s",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void probeExtraction() {
+        ProbeOutput extraction = run(30, ytDlpCommand, "--dump-json", "--no-warnings",
+                "--skip-download", extractionTestUrl);
+        if (!extraction.success) {
+            System.err.println("yt-dlp extraction probe failed: " + extraction.error);
+        }
+        YtDlpStatus previous = status;
+        status = new YtDlpStatus(previous.isAvailable(), previous.getVersion(), previous.isFfmpegAvailable(),
+                previous.getFfmpegVersion(), extraction.success, extraction.success ? previous.getError() : extraction.error,
+                previous.getCheckedAt(), System.currentTimeMillis());
+    }
+
+    // Output is drained on its own thread so the deadline holds while a hung process keeps stdout open
+    private ProbeOutput run(long timeoutSeconds, String... command) {
+        Process process = null;
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            CompletableFuture<String> firstLine = readFirstLine(process);
+            if (!Processes.waitFor(process, timeoutSeconds, TimeUnit.SECONDS)) {
+                return new ProbeOutput(false, null, command[0] + " timed out after " + timeoutSeconds + " seconds");
+            }
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                return new ProbeOutput(false, null, command[0] + " exited with code " + exitCode);
+            }
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            return new ProbeOutput(true, firstLine.get(remaining, TimeUnit.NANOSECONDS), null);
+        } catch (IOException e) {
+            return new ProbeOutput(false, null, command[0] + " is not installed: " + e.getMessage());
+        } catch (TimeoutException e) {
+            return new ProbeOutput(false, null, command[0] + " kept its output open after exiting");
+        } catch (ExecutionException e) {
+            return new ProbeOutput(false, null, "Failed to read " + command[0] + " output: "
+                    + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ProbeOutput(false, null, "Probe interrupted");
+        } finally {
+            if (process != null) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static CompletableFuture<String> readFirstLine(Process process) {
+        CompletableFuture<String> firstLine = new CompletableFuture<>();
+        Thread.ofVirtual().name("dlf-probe-output").start(() -> {
+            String first = null;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (first == null) {
+                        first = line.length() > 200 ? line.substring(0, 200) : line;
+                    }
+                }
+                firstLine.complete(first);
+            } catch (IOException e) {
+                firstLine.completeExceptionally(e);
+            }
+        });
+        return firstLine;
+    }
+
+    private record ProbeOutput(boolean success, String firstLine, String error) {}
+}
@@ -0,0 +1,299 @@
+package org.virtual.society.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import org.virtual.society.model.MediaStream;
+import org.virtual.society.model.ResolvedMedia;
+import org.virtual.society.model.VideoFormat;
+import org.virtual.society.model.VideoInfo;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Single-pass reader for `yt-dlp --dump-json` documents. Only the handful of fields we expose are
+// materialized; everything else (automatic_captions, thumbnails, fragments, ...) is skipped token
+// by token, so memory per lookup no longer grows with the size of the document.
+final class YtDlpInfoParser {
+
+    // The source belongs to the caller; pooled workers keep reading from it after the document ends
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .build();
+
+    private YtDlpInfoParser() {
+    }
+
+    static VideoInfo parseVideoInfo(Reader source) throws IOException {
+        Document document = read(source, false);
+        List<VideoFormat> formats = new ArrayList<>();
+        for (FormatFields format : document.formats) {
+            if (!"none".equals(format.vcodec)) {
+                // Video format (with or without audio)
+                String quality = format.height > 0 ? format.height + "p" : "Unknown";
+                formats.add(new VideoFormat(format.formatId, quality, "Video",
+                        formatFileSize(String.valueOf(format.filesize)), format.fps, format.vcodec, format.acodec));
+            } else if (!"none".equals(format.acodec)) {
+                // Audio-only format
+                String formatType = format.ext == null ? "" : format.ext.toUpperCase();
+                String bitrate = format.asr > 0 ? (format.asr / 1000) + " kHz" : "Unknown";
+                formats.add(new VideoFormat(format.formatId, "Audio Only", formatType,
+                        formatFileSize(String.valueOf(format.filesize)), 0, null, bitrate));
+            }
+        }
+        return new VideoInfo(
+                orDefault(document.self.id, "Unknown"),
+                orDefault(document.title, "Unknown"),
+                orDefault(document.description, "Unknown"),
+                orDefault(document.thumbnail, "Unknown"),
+                formatDuration(document.duration),
+                formatViews(document.viewCount),
+                formatUploadDate(orDefault(document.uploadDate, "Unknown")),
+                formats);
+    }
+
+    // Direct media URLs for the selected format(s): requested_formats for merged selections,
+    // otherwise the top-level URL of a single-file format
+    static ResolvedMedia parseResolvedMedia(Reader source) throws IOException {
+        Document document = read(source, true);
+        List<MediaStream> streams = new ArrayList<>();
+        if (!document.requestedFormats.isEmpty()) {
+            for (FormatFields format : document.requestedFormats) {
+                streams.add(toMediaStream(format, document.self.httpHeaders));
+            }
+        } else if (document.self.url != null) {
+            streams.add(toMediaStream(document.self, document.self.httpHeaders));
+        }
+        return new ResolvedMedia(orDefault(document.self.id, ""), orDefault(document.title, "video"),
+                orDefault(document.self.ext, "mp4"), streams);
+    }
+
+    private static MediaStream toMediaStream(FormatFields format, Map<String, String> fallbackHeaders) {
+        Map<String, String> headers = format.httpHeaders != null ? format.httpHeaders
+                : fallbackHeaders != null ? fallbackHeaders : new LinkedHashMap<>();
+        long size = format.filesize > 0 ? format.filesize : format.filesizeApprox;
+        return new MediaStream(orDefault(format.formatId, ""), format.url, orDefault(format.ext, ""),
+                orDefault(format.protocol, ""), size, !"none".equals(format.vcodec), !"none".equals(format.acodec),
+                headers);
+    }
+
+    private static Document read(Reader source, boolean forDownload) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(source)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object from yt-dlp");
+            }
+            Document document = new Document();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "title" -> document.title = text(parser);
+                    case "description" -> document.description = forDownload ? skip(parser) : text(parser);
+                    case "thumbnail" -> document.thumbnail = text(parser);
+                    case "duration" -> document.duration = text(parser);
+                    case "view_count" -> document.viewCount = text(parser);
+                    case "upload_date" -> document.uploadDate = text(parser);
+                    case "formats" -> {
+                        if (forDownload) {
+                            parser.skipChildren();
+                        } else {
+                            readFormats(parser, document.formats, false);
+                        }
+                    }
+                    case "requested_formats" -> {
+                        if (forDownload) {
+                            readFormats(parser, document.requestedFormats, true);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    default -> readFormatField(parser, field, document.self, forDownload);
+                }
+            }
+            return document;
+        }
+    }
+
+    private static void readFormats(JsonParser parser, List<FormatFields> target, boolean withUrls) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            FormatFields format = new FormatFields();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                readFormatField(parser, field, format, withUrls);
+            }
+            target.add(format);
+        }
+    }
+
+    // Reads one field of a format object (the top-level document doubles as one); unknown fields are skipped
+    private static void readFormatField(JsonParser parser, String field, FormatFields format, boolean withUrls)
+            throws IOException {
+        switch (field) {
+            case "id" -> format.id = text(parser);
+            case "format_id" -> format.formatId = text(parser);
+            case "ext" -> format.ext = text(parser);
+            case "height" -> format.height = parser.getValueAsInt(0);
+            case "fps" -> format.fps = parser.getValueAsInt(0);
+            case "vcodec" -> format.vcodec = orDefault(text(parser), "none");
+            case "acodec" -> format.acodec = orDefault(text(parser), "none");
+            case "asr" -> format.asr = parser.getValueAsInt(0);
+            case "filesize" -> format.filesize = parser.getValueAsLong(0);
+            case "filesize_approx" -> format.filesizeApprox = parser.getValueAsLong(0);
+            case "url" -> format.url = withUrls ? text(parser) : skip(parser);
+            case "protocol" -> format.protocol = text(parser);
+            case "http_headers" -> {
+                if (withUrls) {
+                    format.httpHeaders = readHeaders(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            default -> parser.skipChildren();
+        }
+    }
+
+    private static Map<String, String> readHeaders(JsonParser parser) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return headers;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            String value = text(parser);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        return headers;
+    }
+
+    // Scalar value as text; null for JSON null and for nested structures, which are skipped
+    private static String text(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsString();
+    }
+
+    private static String skip(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        return null;
+    }
+
+    private static String orDefault(String value, String defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    static String formatFileSize(String bytes){
+        if (bytes == null || "Unknown".equals(bytes)) return "Unknown size";
+        try {
+            long size = Long.parseLong(bytes);
+            if (size < 1024){
+                return size + " B";
+            }else if (size < 1024 * 1024){
+                return String.format("%.1f KB", size / 1024.0);
+            }else if (size < 1024 * 1024 * 1024) {
+                return String.format("%.1f MB", size / (1024.0 * 1024.0));
+            } else {
+                return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
+            }
+        }catch (NumberFormatException e) {
+            return "Unknown size";
+        }
+    }
+
+    static String formatDuration(String seconds) {
+        if (seconds == null || "Unknown".equals(seconds)) return "Unknown duration";
+        try {
+            int totalSeconds = (int) Double.parseDouble(seconds);
+            int hours = totalSeconds / 3600;
+            int minutes = (totalSeconds % 3600) / 60;
+            int secs = totalSeconds % 60;
+
+            if (hours > 0) {
+                return String.format("%d:%02d:%02d", hours, minutes, secs);
+            } else {
+                return String.format("%d:%02d", minutes, secs);
+            }
+        } catch (NumberFormatException e) {
+            return "Unknown duration";
+        }
+    }
+
+    static String formatViews(String viewCount) {
+        if (viewCount == null || "Unknown".equals(viewCount)) return "Unknown views";
+        try {
+            long views = Long.parseLong(viewCount);
+            if (views >= 1_000_000_000) {
+                return String.format("%.1fB views", views / 1_000_000_000.0);
+            } else if (views >= 1_000_000) {
+                return String.format("%.1fM views", views / 1_000_000.0);
+            } else if (views >= 1_000) {
+                return String.format("%.1fK views", views / 1_000.0);
+            } else {
+                return views + " views";
+            }
+        } catch (NumberFormatException e) {
+            return viewCount + " views";
+        }
+    }
+
+    static String formatUploadDate(String uploadDate) {
+        if (uploadDate == null || "Unknown".equals(uploadDate)) return "Unknown date";
+        // Format: YYYYMMDD
+        if (uploadDate.length() == 8) {
+            String year = uploadDate.substring(0, 4);
+            String month = uploadDate.substring(4, 6);
+            String day = uploadDate.substring(6, 8);
+            return String.format("%s-%s-%s", year, month, day);
+        }
+        return uploadDate;
+    }
+
+    private static class FormatFields {
+        String id;
+        String formatId;
+        String ext;
+        String url;
+        String protocol;
+        String vcodec = "none";
+        String acodec = "none";
+        int height;
+        int fps;
+        int asr;
+        long filesize;
+        long filesizeApprox;
+        Map<String, String> httpHeaders;
+    }
+
+    // The top-level fields we keep; format-like fields of the document itself live in `self`
+    private static class Document {
+        final FormatFields self = new FormatFields();
+        final List<FormatFields> formats = new ArrayList<>();
+        final List<FormatFields> requestedFormats = new ArrayList<>();
+        String title;
+        String description;
+        String thumbnail;
+        String duration;
+        String viewCount;
+        String uploadDate;
+    }
+}
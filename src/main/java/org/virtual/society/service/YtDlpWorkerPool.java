@@ -0,0 +1,405 @@
+package org.virtual.society.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.exceptions.WorkerUnavailableException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Pool of long-lived Python processes with yt_dlp already imported. Requests and responses are
+// line-delimited JSON over stdin/stdout (see ytdlp/extract_worker.py), so a metadata lookup no
+// longer pays interpreter startup and extractor import.
+@ApplicationScoped
+public class YtDlpWorkerPool {
+
+    private static final String WORKER_RESOURCE = "ytdlp/extract_worker.py";
+    private static final Duration PING_TIMEOUT = Duration.ofSeconds(5);
+    private static final long RETRY_UNAVAILABLE_MILLIS = 60_000;
+
+    @Inject
+    DownloadMetrics metrics;
+
+    @ConfigProperty(name = "app.ytdlp.worker.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.ytdlp.worker.command", defaultValue = "python3")
+    String command;
+
+    // Defaults to the worker script bundled with the application
+    @ConfigProperty(name = "app.ytdlp.worker.script")
+    Optional<String> script;
+
+    @ConfigProperty(name = "app.ytdlp.worker.size", defaultValue = "4")
+    int size;
+
+    // Workers are replaced after this many calls to bound memory growth inside yt-dlp
+    @ConfigProperty(name = "app.ytdlp.worker.max-requests", defaultValue = "200")
+    int maxRequests;
+
+    @ConfigProperty(name = "app.ytdlp.worker.call-timeout", defaultValue = "PT60S")
+    Duration callTimeout;
+
+    // Interpreter start plus the yt_dlp import, until the first ping is answered
+    @ConfigProperty(name = "app.ytdlp.worker.startup-timeout", defaultValue = "PT15S")
+    Duration startupTimeout;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    // One permit per worker that may exist; a worker outside the idle queue always holds one
+    private Semaphore permits;
+    // Only fires call deadlines; anything that waits on a worker would keep those deadlines from firing
+    private ScheduledExecutorService timer;
+    private List<String> workerCommand;
+    private volatile long unavailableUntil;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(size);
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dlf-worker-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (enabled) {
+            Thread.ofVirtual().name("dlf-worker-prewarm").start(this::prewarm);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Worker worker;
+        while ((worker = idle.poll()) != null) {
+            worker.destroy();
+        }
+        timer.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns the same JSON document `yt-dlp --dump-json` prints for the URL
+    public String dumpJson(String videoUrl, String formatSelector) {
+        return extract(videoUrl, formatSelector, payload -> new BufferedReader(payload).readLine());
+    }
+
+    // Hands the payload line to the reader as a stream so callers can parse it without buffering it first
+    public <T> T extract(String videoUrl, String formatSelector, PayloadReader<T> payloadReader) {
+        return extract(videoUrl, null, formatSelector, payloadReader);
+    }
+
+    // With infoJson set, the worker loads that stored --dump-json document and only selects formats
+    public <T> T extract(String videoUrl, Path infoJson, String formatSelector, PayloadReader<T> payloadReader) {
+        if (!enabled) {
+            throw new WorkerUnavailableException("yt-dlp worker pool is disabled");
+        }
+        if (System.currentTimeMillis() < unavailableUntil) {
+            throw new WorkerUnavailableException("yt-dlp workers failed to start recently");
+        }
+        ObjectNode request = mapper.createObjectNode();
+        request.put("id", UUID.randomUUID().toString());
+        request.put("op", "extract");
+        request.put("url", videoUrl);
+        if (infoJson != null) {
+            request.put("info_file", infoJson.toAbsolutePath().toString());
+        }
+        if (formatSelector != null) {
+            request.put("format", formatSelector);
+        }
+
+        Worker worker = borrow();
+        boolean healthy = false;
+        try {
+            WorkerResponse<T> response = worker.call(request, payloadReader, callTimeout);
+            healthy = true;
+            if (!response.header.path("ok").asBoolean()) {
+                throw new DownloadException("yt-dlp failed: " + response.header.path("error").asText("unknown error"));
+            }
+            return response.payload;
+        } catch (IOException e) {
+            throw new DownloadException("yt-dlp worker failed: " + e.getMessage(), e);
+        } finally {
+            release(worker, healthy);
+        }
+    }
+
+    // Pings idle workers and replaces the ones that stopped answering
+    @Scheduled(every = "${app.ytdlp.worker.health-interval:30s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void checkIdleWorkers() {
+        List<Worker> checked = new ArrayList<>();
+        while (permits.tryAcquire()) {
+            Worker worker = idle.poll();
+            if (worker == null) {
+                permits.release();
+                break;
+            }
+            checked.add(worker);
+        }
+        for (Worker candidate : checked) {
+            boolean healthy = false;
+            try {
+                healthy = candidate.ping(PING_TIMEOUT);
+            } catch (IOException e) {
+                System.err.println("yt-dlp worker failed its health check: " + e.getMessage());
+            }
+            release(candidate, healthy);
+        }
+    }
+
+    private void prewarm() {
+        List<Worker> started = new ArrayList<>();
+        try {
+            while (started.size() < size && permits.tryAcquire()) {
+                started.add(spawn());
+            }
+        } catch (WorkerUnavailableException e) {
+            permits.release();
+            System.err.println("yt-dlp worker pool unavailable, using one process per call: " + e.getMessage());
+        }
+        for (Worker worker : started) {
+            release(worker, true);
+        }
+    }
+
+    private Worker borrow() {
+        try {
+            if (!permits.tryAcquire(callTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new DownloadException("Timed out waiting for a free yt-dlp worker");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException("Interrupted while waiting for a yt-dlp worker", e);
+        }
+        Worker worker = idle.poll();
+        if (worker != null) {
+            return worker;
+        }
+        try {
+            return spawn();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(Worker worker, boolean healthy) {
+        if (healthy && worker.isAlive() && worker.requests < maxRequests) {
+            idle.offer(worker);
+        } else {
+            worker.destroy();
+        }
+        permits.release();
+    }
+
+    private Worker spawn() {
+        Worker worker = null;
+        try {
+            worker = new Worker(metrics.spawn("worker", new ProcessBuilder(resolveCommand())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)));
+            if (!worker.ping(startupTimeout)) {
+                throw new IOException("worker did not answer its first ping");
+            }
+            return worker;
+        } catch (IOException e) {
+            if (worker != null) {
+                worker.destroy();
+            }
+            unavailableUntil = System.currentTimeMillis() + RETRY_UNAVAILABLE_MILLIS;
+            throw new WorkerUnavailableException("Could not start yt-dlp worker: " + e.getMessage(), e);
+        }
+    }
+
+    private synchronized List<String> resolveCommand() throws IOException {
+        if (workerCommand == null) {
+            String scriptPath;
+            if (script.isPresent() && !script.get().isBlank()) {
+                scriptPath = script.get();
+            } else {
+                Path extracted = Files.createTempFile("dlf-extract-worker", ".py");
+                extracted.toFile().deleteOnExit();
+                try (InputStream resource = Thread.currentThread().getContextClassLoader()
+                        .getResourceAsStream(WORKER_RESOURCE)) {
+                    if (resource == null) {
+                        throw new IOException("Missing bundled worker script " + WORKER_RESOURCE);
+                    }
+                    Files.copy(resource, extracted, StandardCopyOption.REPLACE_EXISTING);
+                }
+                scriptPath = extracted.toString();
+            }
+            workerCommand = List.of(command, scriptPath);
+        }
+        return workerCommand;
+    }
+
+    // A call killed by its deadline carries a TimeoutException, so failures are counted by their real cause
+    private static IOException failure(boolean timedOut, Duration timeout, String message, Throwable cause) {
+        if (timedOut) {
+            return new IOException("timed out after " + timeout.toSeconds() + "s", new TimeoutException());
+        }
+        return cause == null ? new IOException(message) : new IOException(message, cause);
+    }
+
+    @FunctionalInterface
+    public interface PayloadReader<T> {
+        T read(Reader payload) throws IOException;
+    }
+
+    // Exposes exactly one line of the worker output, ending at (and consuming) its newline
+    private static final class PayloadLine extends Reader {
+        private final BufferedReader source;
+        private boolean ended;
+
+        private PayloadLine(BufferedReader source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (ended || length == 0) {
+                return ended ? -1 : 0;
+            }
+            source.mark(length + 1);
+            int read = source.read(buffer, offset, length);
+            if (read < 0) {
+                ended = true;
+                return -1;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer[offset + i] == '\n') {
+                    // Give back what follows the newline, then step over the newline itself
+                    source.reset();
+                    source.skip(i + 1L);
+                    ended = true;
+                    return i == 0 ? -1 : i;
+                }
+            }
+            return read;
+        }
+
+        private void skipRest() throws IOException {
+            char[] buffer = new char[8192];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // draining
+            }
+        }
+
+        @Override
+        public void close() {
+            // The worker stream outlives a single payload
+        }
+    }
+
+    private record WorkerResponse<T>(JsonNode header, T payload) {}
+
+    private final class Worker {
+        private final Process process;
+        private final BufferedWriter stdin;
+        private final BufferedReader stdout;
+        private int requests;
+
+        private Worker(Process process) {
+            this.process = process;
+            this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            this.stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        private boolean isAlive() {
+            return process.isAlive();
+        }
+
+        private boolean ping(Duration timeout) throws IOException {
+            ObjectNode request = mapper.createObjectNode();
+            request.put("id", UUID.randomUUID().toString());
+            request.put("op", "ping");
+            return call(request, null, timeout).header.path("ok").asBoolean();
+        }
+
+        // A call that outlives its timeout kills the process, which unblocks the pending read
+        private <T> WorkerResponse<T> call(ObjectNode request, PayloadReader<T> payloadReader, Duration timeout)
+                throws IOException {
+            String requestId = request.path("id").asText();
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> deadline = timer.schedule(() -> {
+                timedOut.set(true);
+                process.destroyForcibly();
+            }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                stdin.write(mapper.writeValueAsString(request));
+                stdin.newLine();
+                stdin.flush();
+                String headerLine = stdout.readLine();
+                if (headerLine == null) {
+                    throw failure(timedOut.get(), timeout, "worker exited", null);
+                }
+                JsonNode header = mapper.readTree(headerLine);
+                if (!requestId.equals(header.path("id").asText())) {
+                    throw new IOException("worker answered out of order");
+                }
+                T payload = null;
+                if (payloadReader != null && header.path("ok").asBoolean()) {
+                    try {
+                        PayloadLine line = new PayloadLine(stdout);
+                        payload = payloadReader.read(line);
+                        // Whatever the reader left of the line must not leak into the next response
+                        line.skipRest();
+                    } catch (IOException e) {
+                        throw failure(timedOut.get(), timeout, e.getMessage(), e);
+                    }
+                    if (payload == null) {
+                        throw failure(timedOut.get(), timeout, "worker exited", null);
+                    }
+                }
+                if (payloadReader != null) {
+                    requests++;
+                }
+                return new WorkerResponse<>(header, payload);
+            } catch (IOException e) {
+                destroy();
+                throw e;
+            } finally {
+                deadline.cancel(false);
+            }
+        }
+
+        private void destroy() {
+            process.destroyForcibly();
+        }
+    }
+}
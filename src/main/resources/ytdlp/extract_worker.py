@@ -0,0 +1,61 @@
+#!/usr/bin/env python3
+# Long-lived yt-dlp metadata worker, driven by YtDlpWorkerPool.
+#
+# Protocol (one request per line on stdin):
+#   {"id": "...", "op": "extract", "url": "...", "format": "optional selector", "info_file": "optional path"}
+#   {"id": "...", "op": "ping"}
+# Every response is a header line {"id": "...", "ok": true|false, "error": "..."}; a successful
+# extract is followed by one more line holding the same JSON document as `yt-dlp --dump-json`.
+# With info_file the stored --dump-json document is only run through format selection, like
+# `yt-dlp --load-info-json`, instead of extracting the URL again.
+import json
+import sys
+
+import yt_dlp
+
+BASE_OPTIONS = {
+    'quiet': True,
+    'no_warnings': True,
+    'skip_download': True,
+    'noplaylist': True,
+}
+
+
+def main():
+    protocol = sys.stdout
+    # Anything yt-dlp prints must not end up in the protocol stream
+    sys.stdout = sys.stderr
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        request_id = None
+        try:
+            request = json.loads(line)
+            request_id = request.get('id')
+            if request.get('op') == 'ping':
+                respond(protocol, {'id': request_id, 'ok': True, 'version': yt_dlp.version.__version__})
+                continue
+            options = dict(BASE_OPTIONS)
+            if request.get('format'):
+                options['format'] = request['format']
+            with yt_dlp.YoutubeDL(options) as ydl:
+                if request.get('info_file'):
+                    with open(request['info_file'], encoding='utf-8') as stored:
+                        info = ydl.sanitize_info(ydl.process_ie_result(json.load(stored), download=False))
+                else:
+                    info = ydl.sanitize_info(ydl.extract_info(request['url'], download=False))
+            respond(protocol, {'id': request_id, 'ok': True}, json.dumps(info))
+        except Exception as e:  # noqa: BLE001 - every failure is reported to the caller
+            respond(protocol, {'id': request_id, 'ok': False, 'error': str(e)})
+
+
+def respond(protocol, header, payload=None):
+    protocol.write(json.dumps(header) + '\n')
+    if payload is not None:
+        protocol.write(payload + '\n')
+    protocol.flush()
+
+
+if __name__ == '__main__':
+    main()
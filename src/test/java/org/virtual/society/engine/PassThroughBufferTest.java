@@ -0,0 +1,131 @@
+package org.virtual.society.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PassThroughBufferTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void aReaderThatKeepsUpNeverTouchesTheDisk() throws Exception {
+        byte[] content = randomBytes(200_000);
+        PassThroughBuffer buffer = new PassThroughBuffer(ByteBuffer.allocateDirect(64 * 1024), tempDir);
+
+        // Many times the ring size goes through, wrapping around the end of the ring
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] chunk = new byte[7000];
+        for (int offset = 0; offset < content.length; offset += 10_000) {
+            buffer.write(ByteBuffer.wrap(content, offset, 10_000));
+            while (received.size() < offset + 10_000) {
+                int wanted = Math.min(chunk.length, offset + 10_000 - received.size());
+                received.write(chunk, 0, buffer.read(chunk, 0, wanted));
+            }
+        }
+        buffer.finish();
+
+        assertEquals(-1, buffer.read(chunk, 0, chunk.length));
+        assertArrayEquals(content, received.toByteArray());
+        assertEquals(0, buffer.spilledBytes());
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    void aStalledReaderSpillsToDiskWithoutBlockingTheWriter() throws Exception {
+        byte[] content = randomBytes(100_000);
+        PassThroughBuffer buffer = new PassThroughBuffer(ByteBuffer.allocateDirect(4096), tempDir);
+
+        // Nobody reads while the whole transfer is written
+        for (int offset = 0; offset < content.length; offset += 3000) {
+            buffer.write(ByteBuffer.wrap(content, offset, Math.min(3000, content.length - offset)));
+        }
+        assertEquals(content.length - 4096, buffer.spilledBytes());
+
+        // Half of it is read; what the writer adds now has to queue behind the rest of the spill file
+        byte[] first = new byte[50_000];
+        int read = 0;
+        while (read < first.length) {
+            read += buffer.read(first, read, first.length - read);
+        }
+        byte[] more = randomBytes(10_000);
+        buffer.write(ByteBuffer.wrap(more));
+        buffer.finish();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(content);
+        expected.write(more);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        actual.write(first);
+        actual.write(readAll(buffer));
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        buffer.close();
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    void aFailedTransferIsNotMistakenForTheEndOfTheStream() throws Exception {
+        PassThroughBuffer buffer = new PassThroughBuffer(ByteBuffer.allocateDirect(4096), tempDir);
+        buffer.write(ByteBuffer.wrap(randomBytes(100)));
+        buffer.fail(new IOException("connection reset"));
+
+        IOException failure = assertThrows(IOException.class, () -> buffer.read(new byte[100], 0, 100));
+        assertTrue(failure.getMessage().contains("connection reset"));
+    }
+
+    @Test
+    void writesAfterTheReaderClosedAreDropped() throws Exception {
+        PassThroughBuffer buffer = new PassThroughBuffer(ByteBuffer.allocateDirect(4096), tempDir);
+        buffer.write(ByteBuffer.wrap(randomBytes(10_000)));
+        buffer.close();
+
+        ByteBuffer late = ByteBuffer.wrap(randomBytes(10_000));
+        assertEquals(10_000, buffer.write(late));
+        assertFalse(late.hasRemaining());
+        assertFalse(buffer.isOpen());
+        assertEquals(0, spillFiles());
+        assertThrows(ClosedChannelException.class, () -> buffer.read(new byte[10], 0, 10));
+    }
+
+    private long spillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".spill")).count();
+        }
+    }
+
+    private static byte[] readAll(PassThroughBuffer buffer) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[7000];
+        try {
+            int read;
+            while ((read = buffer.read(chunk, 0, chunk.length)) != -1) {
+                out.write(chunk, 0, read);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
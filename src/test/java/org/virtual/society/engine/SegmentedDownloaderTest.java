@@ -0,0 +1,213 @@
+package org.virtual.society.engine;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedDownloaderTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private final byte[] content = new byte[FILE_SIZE];
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private final AtomicInteger failuresToInject = new AtomicInteger();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private volatile boolean ignoreRanges;
+    private volatile long bytesPerSecondPerConnection = 2 * 1024 * 1024;
+    private volatile long slowOffsetBelow = -1;
+    private HttpServer server;
+    private SegmentedDownloader downloader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new Random(42).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/media", this::serve);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        if (downloader != null) {
+            downloader.shutdown();
+        }
+    }
+
+    @Test
+    void segmentedDownloadBeatsSingleConnection() throws Exception {
+        long single = timedDownload(1, tempDir.resolve("single.bin"));
+        long segmented = timedDownload(8, tempDir.resolve("segmented.bin"));
+
+        assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("single.bin")));
+        assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("segmented.bin")));
+        assertTrue(segmented * 3 < single, "segmented " + segmented + "ms vs single " + single + "ms");
+    }
+
+    @Test
+    void retriesSegmentsThatStallMidStream() throws Exception {
+        bytesPerSecondPerConnection = Long.MAX_VALUE;
+        failuresToInject.set(3);
+        Path target = tempDir.resolve("retried.bin");
+
+        newDownloader(4).download(uri(), Map.of(), target, (done, total) -> { });
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    void splitsSlowSegmentsAcrossIdleConnections() throws Exception {
+        // The first quarter of the file is served very slowly, the rest at full speed
+        slowOffsetBelow = FILE_SIZE / 4;
+        Path target = tempDir.resolve("split.bin");
+
+        long started = System.currentTimeMillis();
+        newDownloader(4).download(uri(), Map.of(), target, (done, total) -> { });
+        long elapsed = System.currentTimeMillis() - started;
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        // probe + 4 initial segments; anything above that came from splitting
+        assertTrue(rangeRequests.get() > 5, "expected slow segment to be split, saw " + rangeRequests.get() + " requests");
+        assertTrue(elapsed < 4000, "slow segment alone would take ~4s, took " + elapsed + "ms");
+    }
+
+    @Test
+    void aServerThatIgnoresRangesIsOnlyDownloadedOnce() throws Exception {
+        ignoreRanges = true;
+        Path target = tempDir.resolve("unranged.bin");
+
+        newDownloader(4).download(uri(), Map.of(), target, (done, total) -> { });
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        // The probe's full-length answer is abandoned after whatever the socket buffers took
+        assertTrue(bytesServed.get() < FILE_SIZE * 3L / 2, "served " + bytesServed.get() + " bytes");
+    }
+
+    @Test
+    void aStalledSingleConnectionTransferFails() {
+        ignoreRanges = true;
+        bytesPerSecondPerConnection = Long.MAX_VALUE;
+        // The probe's response takes the first injected failure, the download the second
+        failuresToInject.set(2);
+
+        IOException failure = assertThrows(IOException.class, () -> newDownloader(4)
+                .download(uri(), Map.of(), tempDir.resolve("stalled.bin"), (done, total) -> { }));
+        assertTrue(failure.getMessage().contains("No data received"), failure.getMessage());
+    }
+
+    @Test
+    void streamsInOrderToASinkThatIsNotBeingRead() throws Exception {
+        bytesPerSecondPerConnection = Long.MAX_VALUE;
+        PassThroughBuffer buffer = new PassThroughBuffer(ByteBuffer.allocateDirect(256 * 1024), tempDir);
+
+        long streamed = newDownloader(4).stream(uri(), Map.of(), buffer, (done, total) -> { }, Throttle.NONE);
+        buffer.finish();
+
+        assertEquals(FILE_SIZE, streamed);
+        assertEquals(FILE_SIZE - 256 * 1024, buffer.spilledBytes());
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] chunk = new byte[64 * 1024];
+        int read;
+        while ((read = buffer.read(chunk, 0, chunk.length)) != -1) {
+            received.write(chunk, 0, read);
+        }
+        buffer.close();
+        assertArrayEquals(content, received.toByteArray());
+    }
+
+    private long timedDownload(int connections, Path target) throws IOException {
+        long started = System.currentTimeMillis();
+        newDownloader(connections).download(uri(), Map.of(), target, (done, total) -> { });
+        return System.currentTimeMillis() - started;
+    }
+
+    private SegmentedDownloader newDownloader(int connections) {
+        if (downloader != null) {
+            downloader.shutdown();
+        }
+        downloader = new SegmentedDownloader();
+        downloader.connections = connections;
+        downloader.minSegmentBytes = 256 * 1024;
+        downloader.segmentRetries = 3;
+        downloader.requestTimeoutSeconds = 10;
+        downloader.readTimeoutSeconds = 1;
+        downloader.init();
+        return downloader;
+    }
+
+    private URI uri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/media");
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int start = 0;
+        int end = FILE_SIZE - 1;
+        int status = 200;
+        if (range != null && !ignoreRanges) {
+            Matcher matcher = RANGE.matcher(range);
+            if (matcher.matches()) {
+                start = Integer.parseInt(matcher.group(1));
+                if (!matcher.group(2).isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(matcher.group(2)));
+                }
+                status = 206;
+                rangeRequests.incrementAndGet();
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + FILE_SIZE);
+            }
+        }
+        int length = end - start + 1;
+        boolean failMidStream = (status == 206 || ignoreRanges) && length > 1 && failuresToInject.getAndDecrement() > 0;
+        long rate = slowOffsetBelow > start ? 256 * 1024 : bytesPerSecondPerConnection;
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            int chunk = 16 * 1024;
+            int limit = failMidStream ? length / 2 : length;
+            for (int offset = 0; offset < limit; offset += chunk) {
+                body.write(content, start + offset, Math.min(chunk, limit - offset));
+                body.flush();
+                bytesServed.addAndGet(Math.min(chunk, limit - offset));
+                if (rate != Long.MAX_VALUE) {
+                    Thread.sleep(chunk * 1000L / rate);
+                }
+            }
+            if (failMidStream) {
+                // Keep the connection open without sending the rest, like a stalled CDN edge
+                Thread.sleep(3000);
+            }
+        } catch (InterruptedException | IOException e) {
+            // Client dropped the rest of the range after a split
+        } finally {
+            exchange.close();
+        }
+    }
+}
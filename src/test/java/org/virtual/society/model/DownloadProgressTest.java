@@ -0,0 +1,60 @@
+package org.virtual.society.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadProgressTest {
+
+    private static final long WINDOW = 5_000;
+    private static final long MIB = 1024 * 1024;
+
+    @Test
+    void ratesAreMeasuredFromByteCountsAndSmoothed() {
+        DownloadProgress progress = new DownloadProgress("job", DownloadPhase.QUEUED, 0);
+        progress.recordTransfer(0, 0, 100 * MIB, 1_000, WINDOW);
+        assertEquals(-1, progress.getBytesPerSecond());
+        assertEquals(-1, progress.getEtaSeconds());
+
+        // 1 MiB/s for ten seconds
+        for (int i = 1; i <= 10; i++) {
+            progress.recordTransfer(i, i * MIB, 100 * MIB, 1_000 + i * 1_000L, WINDOW);
+        }
+        assertEquals(MIB, progress.getBytesPerSecond(), 1);
+        assertEquals(MIB, progress.getSmoothedBytesPerSecond(), 1);
+        assertEquals(90, progress.getEtaSeconds());
+
+        // A one-second burst moves the instantaneous rate fully, the smoothed one only partly
+        progress.recordTransfer(20, 20 * MIB, 100 * MIB, 12_000, WINDOW);
+        assertEquals(10 * MIB, progress.getBytesPerSecond(), 1);
+        double smoothed = progress.getSmoothedBytesPerSecond();
+        assertTrue(smoothed > MIB && smoothed < 3 * MIB, "smoothed rate was " + smoothed);
+        assertEquals((long) Math.ceil(80 * MIB / smoothed), progress.getEtaSeconds());
+        assertEquals(smoothed, progress.activeBytesPerSecond());
+    }
+
+    @Test
+    void nextFileRestartsTheSampleInsteadOfProducingANegativeRate() {
+        DownloadProgress progress = new DownloadProgress("job", DownloadPhase.QUEUED, 0);
+        progress.recordTransfer(0, 0, 10 * MIB, 1_000, WINDOW);
+        progress.recordTransfer(100, 10 * MIB, 10 * MIB, 3_000, WINDOW);
+        progress.recordTransfer(0, 0, 2 * MIB, 3_500, WINDOW);
+        assertEquals(5 * MIB, progress.getSmoothedBytesPerSecond(), 1);
+        assertEquals(1, progress.getEtaSeconds());
+    }
+
+    @Test
+    void terminalPhasesStopCountingTowardsThroughput() {
+        DownloadProgress progress = new DownloadProgress("job", DownloadPhase.QUEUED, 0);
+        progress.recordTransfer(0, 0, 4 * MIB, 1_000, WINDOW);
+        progress.recordTransfer(50, 2 * MIB, 4 * MIB, 2_000, WINDOW);
+        progress.transition(DownloadPhase.COMPLETED, null, 3_000);
+
+        DownloadProgress copy = progress.copy();
+        assertEquals(100, copy.getPercentage());
+        assertEquals(4 * MIB, copy.getBytesDone());
+        assertEquals(0, copy.getEtaSeconds());
+        assertEquals(0, copy.activeBytesPerSecond());
+    }
+}
@@ -0,0 +1,39 @@
+package org.virtual.society.resource;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ByteRangeTest {
+
+    @Test
+    void parsesSingleRanges() {
+        assertEquals(new ByteRange(10, 19), ByteRange.parse("bytes=10-19", 100));
+        assertEquals(new ByteRange(90, 99), ByteRange.parse("bytes=90-", 100));
+        assertEquals(new ByteRange(95, 99), ByteRange.parse("bytes=-5", 100));
+        // Ends past the file are clamped, suffixes longer than the file cover all of it
+        assertEquals(new ByteRange(50, 99), ByteRange.parse("bytes=50-500", 100));
+        assertEquals(new ByteRange(0, 99), ByteRange.parse("bytes=-500", 100));
+        assertEquals("bytes 10-19/100", ByteRange.parse("bytes=10-19", 100).contentRange(100));
+    }
+
+    @Test
+    void fallsBackToTheWholeFile() {
+        assertNull(ByteRange.parse(null, 100));
+        assertNull(ByteRange.parse("items=0-1", 100));
+        assertNull(ByteRange.parse("bytes=0-1,5-6", 100));
+        assertNull(ByteRange.parse("bytes=a-b", 100));
+        // A last position before the first is malformed, not unsatisfiable, and is ignored like one
+        assertNull(ByteRange.parse("bytes=20-10", 100));
+        assertNull(ByteRange.parse("bytes=500-100", 100));
+    }
+
+    @Test
+    void rejectsUnsatisfiableRanges() {
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.parse("bytes=100-", 100));
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.parse("bytes=150-200", 100));
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.parse("bytes=-0", 100));
+    }
+}
@@ -0,0 +1,45 @@
+package org.virtual.society.resource;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.config.HttpClientConfig;
+import io.restassured.config.RestAssuredConfig;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.service.DownloadProgressService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
+
+@QuarkusTest
+class ProgressStreamTest {
+
+    @Inject
+    DownloadProgressService progressService;
+
+    // A stream that never ends would trip the socket timeout instead of returning a body
+    private static final RestAssuredConfig TIMEOUT = RestAssuredConfig.config().httpClient(HttpClientConfig.httpClientConfig()
+            .setParam("http.socket.timeout", 10_000)
+            .setParam("http.connection.timeout", 10_000));
+
+    @Test
+    void theStreamEndsOnceEveryWatchedDownloadIsFinished() {
+        progressService.updateTransfer("stream-done", 100, 1000, 1000);
+        progressService.updatePhase("stream-done", DownloadPhase.COMPLETED);
+        progressService.updateTransfer("stream-failing", 10, 100, 1000);
+        CompletableFuture.runAsync(() -> progressService.updatePhase("stream-failing", DownloadPhase.FAILED,
+                "ERROR: Video unavailable"), CompletableFuture.delayedExecutor(500, TimeUnit.MILLISECONDS));
+
+        given().config(TIMEOUT)
+          .when().get("/api/download/progress/stream?ids=stream-done,stream-failing")
+          .then()
+             .statusCode(200)
+             .body(containsString("\"downloadId\":\"stream-done\""))
+             .body(containsString("\"phase\":\"COMPLETED\""))
+             .body(containsString("\"phase\":\"FAILED\""));
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArtifactStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ArtifactStore open() {
+        ArtifactStore store = new ArtifactStore();
+        store.storeDir = tempDir.resolve("store").toString();
+        store.stagingDir = tempDir.resolve("staging").toString();
+        store.maxBytes = Long.MAX_VALUE;
+        return store;
+    }
+
+    @Test
+    void commitMovesTheStagedFileToItsKeyedLocation() throws Exception {
+        ArtifactStore store = open();
+        Path staging = store.stagingDir("job-1");
+        Path staged = Files.writeString(staging.resolve("Title [abc].mp4"), "video");
+        Files.writeString(staging.resolve("Title [abc].f137.mp4.part"), "leftover");
+
+        File stored = store.commit("job-1", "abc", "18", staged);
+
+        String key = ArtifactStore.key("abc", "18");
+        assertEquals(tempDir.resolve("store").resolve(key.substring(0, 2)).resolve(key).resolve("Title [abc].mp4"),
+                stored.toPath());
+        assertEquals("video", Files.readString(stored.toPath()));
+        assertFalse(Files.exists(staging));
+    }
+
+    @Test
+    void concurrentJobsStageSeparately() throws Exception {
+        ArtifactStore store = open();
+        Path first = Files.writeString(store.stagingDir("job-1").resolve("same.mp4"), "one");
+        Path second = Files.writeString(store.stagingDir("job-2").resolve("same.mp4"), "two");
+
+        File a = store.commit("job-1", "abc", "18", first);
+        File b = store.commit("job-2", "xyz", "18", second);
+
+        assertNotEquals(a, b);
+        assertEquals("one", Files.readString(a.toPath()));
+        assertEquals("two", Files.readString(b.toPath()));
+        assertTrue(ArtifactStore.key("abc", "18").matches("[0-9a-f]{64}"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedArtifactsOverQuota() throws Exception {
+        ArtifactStore store = open();
+        store.maxBytes = 10;
+        File a = store.commit("a", "a", "18", Files.writeString(store.stagingDir("a").resolve("a.mp4"), "aaaa"));
+        File b = store.commit("b", "b", "18", Files.writeString(store.stagingDir("b").resolve("b.mp4"), "bbbb"));
+        // Using a makes b the eviction candidate
+        assertEquals(a, store.lookup(ArtifactStore.key("a", "18")));
+        store.commit("c", "c", "18", Files.writeString(store.stagingDir("c").resolve("c.mp4"), "cccc"));
+
+        assertTrue(a.exists());
+        assertFalse(b.exists());
+        assertNull(store.lookup(ArtifactStore.key("b", "18")));
+        assertEquals(1, store.getStats().getEvictionCount());
+        assertEquals(8, store.getStats().getBytes());
+
+        // A restart rebuilds the index from disk
+        ArtifactStore reopened = open();
+        reopened.init();
+        assertEquals(2, reopened.getStats().getEntries());
+        assertEquals(a, reopened.lookup(ArtifactStore.key("a", "18")));
+    }
+}
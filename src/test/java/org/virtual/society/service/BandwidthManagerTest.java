@@ -0,0 +1,158 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.Test;
+import org.virtual.society.model.BandwidthLimits;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BandwidthManagerTest {
+
+    private static final long MIB = 1024 * 1024;
+    private static final int CHUNK = 16 * 1024;
+    private static final long RUN_MILLIS = 2_000;
+
+    private BandwidthManager newManager(long global, long perClient, long perJob) {
+        BandwidthManager manager = new BandwidthManager();
+        manager.globalBytesPerSecond = global;
+        manager.perClientBytesPerSecond = perClient;
+        manager.perJobBytesPerSecond = perJob;
+        manager.burstBytes = 64 * 1024;
+        manager.init();
+        return manager;
+    }
+
+    @Test
+    void aggregateThroughputStaysWithinFivePercentOfTheGlobalCap() throws Exception {
+        long cap = 8 * MIB;
+        BandwidthManager manager = newManager(cap, 0, 0);
+        List<BandwidthManager.JobThrottle> throttles = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            throttles.add(manager.open("job-" + i, "client-" + (i % 3)));
+        }
+
+        double rate = measure(throttles).total / (RUN_MILLIS / 1000.0);
+        assertTrue(Math.abs(rate - cap) <= cap * 0.05, "aggregate rate was " + rate + " B/s for a cap of " + cap);
+    }
+
+    @Test
+    void clientAndJobCapsApplyBelowTheGlobalCap() throws Exception {
+        long clientCap = 4 * MIB;
+        long jobCap = 3 * MIB;
+        BandwidthManager manager = newManager(16 * MIB, clientCap, jobCap);
+        // client-a runs two jobs against its client cap, client-b one job against the job cap
+        List<BandwidthManager.JobThrottle> throttles = List.of(
+                manager.open("a1", "client-a"), manager.open("a2", "client-a"), manager.open("b1", "client-b"));
+
+        Measurement measurement = measure(throttles);
+        double seconds = RUN_MILLIS / 1000.0;
+        double clientA = (measurement.perJob[0] + measurement.perJob[1]) / seconds;
+        double jobB = measurement.perJob[2] / seconds;
+        assertTrue(Math.abs(clientA - clientCap) <= clientCap * 0.05, "client-a rate was " + clientA);
+        assertTrue(Math.abs(jobB - jobCap) <= jobCap * 0.05, "b1 rate was " + jobB);
+    }
+
+    @Test
+    void ytDlpJobsGetTheirFairShareAsAFixedRate() {
+        BandwidthManager manager = newManager(12 * MIB, 4 * MIB, 0);
+        BandwidthManager.JobThrottle first = manager.open("a1", "client-a");
+        assertEquals(4 * MIB, first.commandRate());
+
+        BandwidthManager.JobThrottle second = manager.open("a2", "client-a");
+        assertEquals(2 * MIB, second.commandRate());
+        manager.open("b1", "client-b");
+        manager.open("c1", "client-c");
+        BandwidthManager.JobThrottle fifth = manager.open("d1", "client-d");
+        // 12 MiB/s over five jobs is tighter than client-d's own cap
+        assertEquals(12 * MIB / 5, fifth.commandRate());
+
+        manager.setLimits(new BandwidthLimits(0, 0, MIB));
+        assertEquals(MIB, manager.open("e1", "client-e").commandRate());
+        manager.setLimits(new BandwidthLimits(0, 0, 0));
+        assertEquals(0, first.commandRate());
+
+        first.close();
+        second.close();
+        assertEquals(0, manager.getLimits().getGlobalBytesPerSecond());
+        assertThrows(IllegalArgumentException.class, () -> manager.setLimits(new BandwidthLimits(-1, 0, 0)));
+    }
+
+    @Test
+    void ytDlpRatesAreTakenOutOfTheCapsInJvmTransfersShare() throws Exception {
+        long cap = 8 * MIB;
+        BandwidthManager manager = newManager(cap, 0, 0);
+        BandwidthManager.JobThrottle native1 = manager.open("n1", "client-a");
+        BandwidthManager.JobThrottle ytDlp = manager.open("y1", "client-b");
+        long fixed = ytDlp.commandRate();
+        assertEquals(4 * MIB, fixed);
+
+        // yt-dlp runs at its fixed rate outside the buckets, so the in-JVM job only gets the rest
+        double seconds = RUN_MILLIS / 1000.0;
+        double rate = measure(List.of(native1)).total / seconds;
+        assertTrue(Math.abs(rate + fixed - cap) <= cap * 0.05, "in-JVM rate was " + rate + " B/s next to " + fixed);
+
+        ytDlp.close();
+        rate = measure(List.of(native1)).total / seconds;
+        assertTrue(Math.abs(rate - cap) <= cap * 0.05, "in-JVM rate was " + rate + " B/s once yt-dlp ended");
+    }
+
+    @Test
+    void ytDlpRatesAreTakenOutOfTheirClientsCap() throws Exception {
+        long clientCap = 4 * MIB;
+        BandwidthManager manager = newManager(0, clientCap, 0);
+        BandwidthManager.JobThrottle native1 = manager.open("n1", "client-a");
+        BandwidthManager.JobThrottle ytDlp = manager.open("y1", "client-a");
+        BandwidthManager.JobThrottle other = manager.open("y2", "client-b");
+        long fixed = ytDlp.commandRate();
+        assertEquals(2 * MIB, fixed);
+        // Another client's yt-dlp job leaves client-a's cap alone
+        assertEquals(clientCap, other.commandRate());
+
+        double rate = measure(List.of(native1)).total / (RUN_MILLIS / 1000.0);
+        assertTrue(Math.abs(rate + fixed - clientCap) <= clientCap * 0.05,
+                "client-a in-JVM rate was " + rate + " B/s next to " + fixed);
+    }
+
+    private record Measurement(long total, long[] perJob) {}
+
+    // Runs every throttle on its own thread for RUN_MILLIS and counts the bytes each one was granted
+    private Measurement measure(List<BandwidthManager.JobThrottle> throttles) throws InterruptedException {
+        AtomicLong[] granted = new AtomicLong[throttles.size()];
+        List<Thread> threads = new ArrayList<>();
+        long deadline = System.nanoTime() + RUN_MILLIS * 1_000_000;
+        for (int i = 0; i < throttles.size(); i++) {
+            AtomicLong counter = granted[i] = new AtomicLong();
+            BandwidthManager.JobThrottle throttle = throttles.get(i);
+            Thread thread = new Thread(() -> {
+                try {
+                    while (true) {
+                        throttle.acquire(CHUNK);
+                        if (System.nanoTime() > deadline) {
+                            return;
+                        }
+                        counter.addAndGet(CHUNK);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long[] perJob = new long[granted.length];
+        long total = 0;
+        for (int i = 0; i < granted.length; i++) {
+            perJob[i] = granted[i].get();
+            total += perJob[i];
+        }
+        return new Measurement(total, perJob);
+    }
+}
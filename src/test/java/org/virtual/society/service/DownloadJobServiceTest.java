@@ -0,0 +1,114 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.virtual.society.model.JobPriority;
+import org.virtual.society.model.JobState;
+import org.virtual.society.model.JobSubmission;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DownloadJobServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Records downloads instead of running them; each one finishes when the test completes its future
+    private static class RecordingDownloadService extends YoutubeDownloadService {
+        final List<CompletableFuture<File>> started = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<File> downloadVideo(String videoUrl, String formatId, String downloadId,
+                                                     String clientId, JobPriority priority) {
+            CompletableFuture<File> future = new CompletableFuture<>();
+            started.add(future);
+            return future;
+        }
+    }
+
+    private DownloadJobService newJobs(RecordingDownloadService downloads, ArtifactStore store) {
+        store.storeDir = tempDir.resolve("store").toString();
+        store.stagingDir = tempDir.resolve("staging").toString();
+        store.maxBytes = Long.MAX_VALUE;
+        JobJournal journal = new JobJournal();
+        journal.enabled = false;
+
+        DownloadJobService jobs = new DownloadJobService();
+        jobs.downloadService = downloads;
+        jobs.progressService = new DownloadProgressService();
+        jobs.progressService.rateWindow = Duration.ofSeconds(5);
+        jobs.progressService.shards = 4;
+        jobs.progressService.maxEntries = 1000;
+        jobs.progressService.finishedTtl = Duration.ofMinutes(10);
+        jobs.progressService.idleTtl = Duration.ofHours(6);
+        jobs.progressService.backendType = "memory";
+        jobs.progressService.init();
+        jobs.journal = journal;
+        jobs.artifactStore = store;
+        return jobs;
+    }
+
+    @Test
+    void identicalRequestsShareOneDownloadAndLaterOnesHitTheStore() throws Exception {
+        RecordingDownloadService downloads = new RecordingDownloadService();
+        ArtifactStore store = new ArtifactStore();
+        DownloadJobService jobs = newJobs(downloads, store);
+
+        JobSubmission first = jobs.submit("https://youtu.be/abc", "best", "a", JobPriority.INTERACTIVE);
+        JobSubmission second = jobs.submit("https://www.youtube.com/watch?v=abc", null, "b", JobPriority.BATCH);
+        JobSubmission otherFormat = jobs.submit("https://youtu.be/abc", "18", "c", JobPriority.INTERACTIVE);
+
+        assertEquals("started", first.getStatus());
+        assertEquals("attached", second.getStatus());
+        assertEquals(first.getDownloadId(), second.getDownloadId());
+        assertEquals("started", otherFormat.getStatus());
+        assertEquals(2, downloads.started.size());
+
+        Path staged = Files.writeString(store.stagingDir(first.getDownloadId()).resolve("Video [abc].mp4"), "data");
+        downloads.started.get(0).complete(store.commit(first.getDownloadId(), "abc",
+                downloads.resolveFormatSelector("best"), staged));
+
+        // Journaling is off, so the job is only known to the in-memory registry
+        assertEquals(JobState.DONE, jobs.getJob(first.getDownloadId()).getState());
+        assertEquals(JobState.DONE, jobs.getJob(second.getDownloadId()).getState());
+        assertEquals(staged.getFileName().toString(),
+                jobs.completion(first.getDownloadId()).get().getName());
+
+        JobSubmission third = jobs.submit("https://youtu.be/abc", "best", "d", JobPriority.INTERACTIVE);
+        assertEquals("cached", third.getStatus());
+        assertEquals(100, jobs.progressService.getProgress(third.getDownloadId()).getPercentage());
+        assertEquals(2, downloads.started.size());
+        assertEquals(1, jobs.getStoreStats().getCoalescedCount());
+        assertEquals(1, jobs.getStoreStats().getHitCount());
+    }
+
+    @Test
+    void aFileStoredRightAfterTheLookupIsServedInsteadOfDownloadedAgain() throws Exception {
+        RecordingDownloadService downloads = new RecordingDownloadService();
+        ArtifactStore store = new ArtifactStore() {
+            @Override
+            public File lookup(String key) {
+                // Misses as if the job downloading this key stored its file just after the lookup
+                return null;
+            }
+        };
+        DownloadJobService jobs = newJobs(downloads, store);
+        Path staged = Files.writeString(store.stagingDir("earlier").resolve("Video [abc].mp4"), "data");
+        store.commit("earlier", "abc", downloads.resolveFormatSelector("best"), staged);
+
+        JobSubmission submission = jobs.submit("https://youtu.be/abc", "best", "a", JobPriority.INTERACTIVE);
+
+        assertEquals("cached", submission.getStatus());
+        assertEquals(JobState.DONE, jobs.getJob(submission.getDownloadId()).getState());
+        assertEquals(0, downloads.started.size());
+        assertEquals(1, jobs.getStoreStats().getHitCount());
+    }
+}
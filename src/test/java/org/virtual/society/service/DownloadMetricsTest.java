@@ -0,0 +1,68 @@
+package org.virtual.society.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.exceptions.ProcessFailedException;
+import org.virtual.society.exceptions.QueueFullException;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.DownloadProgress;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DownloadMetricsTest {
+
+    @Test
+    void failuresAreClassifiedByTheirInnermostKnownCause() {
+        assertEquals("timeout", DownloadMetrics.causeOf(new ProcessFailedException("slow", -1, true)));
+        assertEquals("exit_code", DownloadMetrics.causeOf(
+                new DownloadException("Failed to download video", new ProcessFailedException("exit 1", 1, false))));
+        assertEquals("timeout", DownloadMetrics.causeOf(
+                new DownloadException("worker call failed", new IOException("timed out", new TimeoutException()))));
+        assertEquals("parse_error", DownloadMetrics.causeOf(
+                new DownloadException("bad json", new JsonParseException(null, "unexpected token"))));
+        assertEquals("queue_full", DownloadMetrics.causeOf(new QueueFullException("full")));
+        assertEquals("io", DownloadMetrics.causeOf(new DownloadException("wrapped", new IOException("reset"))));
+        assertEquals("other", DownloadMetrics.causeOf(new IllegalStateException("boom")));
+    }
+
+    @Test
+    void metersAreTaggedByKindAndCauseOnly() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DownloadMetrics metrics = new DownloadMetrics();
+        metrics.registry = registry;
+
+        metrics.spawn("download", new ProcessBuilder("true")).waitFor();
+        metrics.spawn("download", new ProcessBuilder("true")).waitFor();
+        metrics.recordFailure("download", new ProcessFailedException("slow", -1, true));
+        metrics.recordMetadataFetch("worker", true, System.nanoTime() - 1_000_000);
+
+        assertEquals(2, registry.get("dlf.subprocess.spawn").tag("kind", "download").timer().count());
+        assertEquals(1.0, registry.get("dlf.failures").tags("operation", "download", "cause", "timeout")
+                .counter().count());
+        assertEquals(1, registry.get("dlf.metadata.fetch").tags("source", "worker", "outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    void jobThroughputIsTheAverageRateOverTheTransfer() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DownloadMetrics metrics = new DownloadMetrics();
+        metrics.registry = registry;
+
+        DownloadProgress progress = new DownloadProgress("job", DownloadPhase.STARTING, 0);
+        progress.recordTransfer(0, 0, 4_000_000, 1_000, 5_000);
+        progress.recordTransfer(100, 4_000_000, 4_000_000, 3_000, 5_000);
+        metrics.recordJobFinished(progress);
+
+        assertEquals(2_000_000.0, registry.get("dlf.job.throughput").summary().mean(), 1.0);
+        metrics.recordJobFinished(new DownloadProgress("idle", DownloadPhase.QUEUED, 0));
+        assertEquals(1, registry.get("dlf.job.throughput").summary().count());
+        assertNull(registry.find("dlf.failures").counter());
+    }
+}
@@ -0,0 +1,89 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.virtual.society.exceptions.QueueFullException;
+import org.virtual.society.model.JobPriority;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DownloadSchedulerTest {
+
+    private DownloadScheduler scheduler;
+
+    private DownloadScheduler newScheduler(int maxConcurrent, int queueCapacity) {
+        scheduler = new DownloadScheduler();
+        scheduler.maxConcurrent = maxConcurrent;
+        scheduler.queueCapacity = queueCapacity;
+        scheduler.interactiveWeight = 3;
+        scheduler.init();
+        return scheduler;
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        newScheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocker = scheduler.submit("a", JobPriority.INTERACTIVE, () -> await(release));
+        waitForRunning(1);
+        scheduler.submit("a", JobPriority.INTERACTIVE, () -> true);
+
+        assertThrows(QueueFullException.class, () -> scheduler.submit("b", JobPriority.BATCH, () -> true));
+        assertEquals(1, scheduler.getStats().getRejected());
+
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void servesClientsRoundRobinAndInteractiveFirst() throws Exception {
+        newScheduler(1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        scheduler.submit("blocker", JobPriority.INTERACTIVE, () -> await(release));
+        waitForRunning(1);
+
+        scheduler.submit("batch", JobPriority.BATCH, () -> order.add("batch-1"));
+        scheduler.submit("greedy", JobPriority.INTERACTIVE, () -> order.add("greedy-1"));
+        scheduler.submit("greedy", JobPriority.INTERACTIVE, () -> order.add("greedy-2"));
+        scheduler.submit("greedy", JobPriority.INTERACTIVE, () -> order.add("greedy-3"));
+        CompletableFuture<Boolean> last = scheduler.submit("polite", JobPriority.INTERACTIVE, () -> order.add("polite-1"));
+        assertEquals(5, scheduler.getStats().getQueueDepth());
+
+        release.countDown();
+        last.get(5, TimeUnit.SECONDS);
+        waitForRunning(0);
+
+        // The blocker counts towards the interactive streak, so batch gets its turn after two more
+        assertEquals(List.of("greedy-1", "polite-1", "batch-1", "greedy-2", "greedy-3"), order);
+    }
+
+    private boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void waitForRunning(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getStats().getRunning() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, scheduler.getStats().getRunning());
+    }
+}
@@ -0,0 +1,86 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InfoJsonStoreTest {
+
+    private static final String DOCUMENT = "{\"id\": \"dQw4w9WgXcQ\", \"formats\": [{\"format_id\": \"18\"}]}";
+
+    @TempDir
+    Path tempDir;
+
+    private InfoJsonStore open() {
+        InfoJsonStore store = new InfoJsonStore();
+        store.enabled = true;
+        store.dir = tempDir.resolve("info").toString();
+        store.ttl = Duration.ofMinutes(30);
+        return store;
+    }
+
+    @Test
+    void keepsWhatTheParserReadOnceCommitted() throws Exception {
+        InfoJsonStore store = open();
+        try (InfoJsonStore.Capture capture = store.capture("dQw4w9WgXcQ")) {
+            Reader reader = capture.wrap(new StringReader(DOCUMENT));
+            char[] buffer = new char[7];
+            StringBuilder read = new StringBuilder();
+            for (int n; (n = reader.read(buffer, 0, buffer.length)) > 0; ) {
+                read.append(buffer, 0, n);
+            }
+            assertEquals(DOCUMENT, read.toString());
+            capture.commit();
+        }
+        Path stored = store.fresh("dQw4w9WgXcQ");
+        assertEquals(DOCUMENT, Files.readString(stored));
+        // Only the stored document is left behind
+        try (Stream<Path> files = Files.list(tempDir.resolve("info"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void failedParsesLeaveNothingBehind() throws Exception {
+        InfoJsonStore store = open();
+        try (InfoJsonStore.Capture capture = store.capture("dQw4w9WgXcQ")) {
+            capture.wrap(new StringReader(DOCUMENT)).read(new char[10]);
+        }
+        assertNull(store.fresh("dQw4w9WgXcQ"));
+        try (Stream<Path> files = Files.list(tempDir.resolve("info"))) {
+            assertEquals(0, files.count());
+        }
+        // IDs that are not plain file names are never stored
+        try (InfoJsonStore.Capture capture = store.capture("../escape")) {
+            capture.commit();
+        }
+        assertFalse(Files.exists(tempDir.resolve("escape.info.json")));
+    }
+
+    @Test
+    void staleDocumentsAreNotUsedAndGetSwept() throws Exception {
+        InfoJsonStore store = open();
+        try (InfoJsonStore.Capture capture = store.capture("dQw4w9WgXcQ")) {
+            capture.wrap(new StringReader(DOCUMENT)).read(new char[DOCUMENT.length()]);
+            capture.commit();
+        }
+        Path stored = store.fresh("dQw4w9WgXcQ");
+        Files.setLastModifiedTime(stored, FileTime.from(Instant.now().minus(Duration.ofMinutes(31))));
+
+        assertNull(store.fresh("dQw4w9WgXcQ"));
+        store.sweep();
+        assertFalse(Files.exists(stored));
+    }
+}
@@ -0,0 +1,76 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.virtual.society.model.JobPriority;
+import org.virtual.society.model.JobRecord;
+import org.virtual.society.model.JobState;
+import org.virtual.society.model.SegmentState;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JobJournal open() {
+        JobJournal journal = new JobJournal();
+        journal.enabled = true;
+        journal.journalDir = tempDir.toString();
+        journal.flushIntervalMillis = 1;
+        journal.retainFinishedHours = 24;
+        journal.compactMinRecords = 10;
+        journal.init();
+        return journal;
+    }
+
+    @Test
+    void replaysUnfinishedJobsWithSegmentProgress() {
+        JobJournal journal = open();
+        journal.record(new JobRecord("running", "https://youtu.be/a", "18", "client", JobPriority.BATCH));
+        journal.update("running", job -> {
+            job.setState(JobState.RUNNING);
+            job.getSegments().put("a.mp4", List.of(new SegmentState(0, 512, 1024)));
+        });
+        journal.record(new JobRecord("done", "https://youtu.be/b", null, "client", JobPriority.INTERACTIVE));
+        journal.update("done", job -> job.setState(JobState.DONE));
+        journal.shutdown();
+
+        JobJournal reopened = open();
+        List<JobRecord> unfinished = reopened.unfinishedJobs();
+        assertEquals(1, unfinished.size());
+        JobRecord job = unfinished.get(0);
+        assertEquals("running", job.getDownloadId());
+        assertEquals(JobPriority.BATCH, job.getPriority());
+        assertEquals(512, job.getSegments().get("a.mp4").get(0).getPosition());
+        assertEquals(JobState.DONE, reopened.get("done").getState());
+        reopened.shutdown();
+    }
+
+    @Test
+    void compactionFoldsTheLogIntoASnapshot() throws Exception {
+        JobJournal journal = open();
+        journal.record(new JobRecord("job", "https://youtu.be/a", null, "client", JobPriority.INTERACTIVE));
+        for (int i = 0; i < 100; i++) {
+            long position = i;
+            journal.update("job", job -> job.getSegments().put("a.mp4", List.of(new SegmentState(0, position, 100))));
+        }
+        journal.shutdown();
+
+        JobJournal reopened = open();
+        // Startup compaction leaves one line per job and an empty log
+        assertEquals(1, Files.readAllLines(tempDir.resolve("snapshot.jsonl")).size());
+        assertEquals(0, Files.size(tempDir.resolve("journal.log")));
+        assertEquals(99, reopened.get("job").getSegments().get("a.mp4").get(0).getPosition());
+        assertNull(reopened.get("missing"));
+        assertTrue(reopened.unfinishedJobs().size() == 1);
+        reopened.shutdown();
+    }
+}
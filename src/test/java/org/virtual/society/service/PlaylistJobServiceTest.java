@@ -0,0 +1,222 @@
+package org.virtual.society.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.virtual.society.model.JobPriority;
+import org.virtual.society.model.JobRecord;
+import org.virtual.society.model.JobState;
+import org.virtual.society.model.JobType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class PlaylistJobServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JobJournal journal;
+    private PlaylistJobService playlists;
+
+    // Enumerates a fixed playlist and records entry downloads; each finishes when the test completes it
+    private class FakeDownloadService extends YoutubeDownloadService {
+        final List<String> startedUrls = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<File>> started = new CopyOnWriteArrayList<>();
+        final List<Integer> enumeratedFrom = new CopyOnWriteArrayList<>();
+        final int size;
+
+        FakeDownloadService(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Process startPlaylistEnumeration(String playlistUrl, int startIndex) throws IOException {
+            enumeratedFrom.add(startIndex);
+            StringBuilder lines = new StringBuilder();
+            for (int i = startIndex; i <= size; i++) {
+                lines.append(i).append("\tNA\thttps://www.youtube.com/watch?v=v").append(i).append('\n');
+            }
+            Path listing = Files.writeString(tempDir.resolve("listing-" + startIndex + ".txt"), lines);
+            return new ProcessBuilder("cat", listing.toString()).start();
+        }
+
+        @Override
+        public CompletableFuture<File> downloadVideo(String videoUrl, String formatId, String downloadId,
+                                                     String clientId, JobPriority priority) {
+            CompletableFuture<File> future = new CompletableFuture<>();
+            startedUrls.add(videoUrl);
+            started.add(future);
+            return future;
+        }
+    }
+
+    private PlaylistJobService open(FakeDownloadService downloads) {
+        journal = new JobJournal();
+        journal.enabled = true;
+        journal.journalDir = tempDir.resolve("journal").toString();
+        journal.flushIntervalMillis = 1;
+        journal.retainFinishedHours = 24;
+        journal.compactMinRecords = 1000;
+        journal.init();
+
+        ArtifactStore store = new ArtifactStore();
+        store.storeDir = tempDir.resolve("store").toString();
+        store.stagingDir = tempDir.resolve("staging").toString();
+        store.maxBytes = Long.MAX_VALUE;
+
+        DownloadProgressService progress = new DownloadProgressService();
+        progress.rateWindow = Duration.ofSeconds(5);
+        progress.shards = 4;
+        progress.maxEntries = 1000;
+        progress.finishedTtl = Duration.ofMinutes(10);
+        progress.idleTtl = Duration.ofHours(6);
+        progress.backendType = "memory";
+        progress.init();
+        DownloadJobService jobs = new DownloadJobService();
+        jobs.downloadService = downloads;
+        jobs.progressService = progress;
+        jobs.journal = journal;
+        jobs.artifactStore = store;
+
+        playlists = new PlaylistJobService();
+        playlists.downloadService = downloads;
+        playlists.jobService = jobs;
+        playlists.progressService = progress;
+        playlists.journal = journal;
+        playlists.metrics = new DownloadMetrics();
+        playlists.metrics.registry = new SimpleMeterRegistry();
+        playlists.maxInFlight = 2;
+        playlists.queueRetryDelay = Duration.ofMillis(10);
+        playlists.init();
+        return playlists;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (playlists != null) {
+            playlists.shutdown();
+        }
+        if (journal != null) {
+            journal.shutdown();
+        }
+    }
+
+    @Test
+    void entriesRunWithBoundedFanOutAndTheResumeIndexFollowsTheOldestUnfinishedEntry() throws Exception {
+        FakeDownloadService downloads = new FakeDownloadService(5);
+        PlaylistJobService service = open(downloads);
+        String id = service.submit("https://www.youtube.com/playlist?list=PL1", "18", "archiver", null);
+
+        await(() -> downloads.started.size() == 2);
+        Thread.sleep(100);
+        assertEquals(2, downloads.started.size(), "only max-in-flight entries may be outstanding");
+
+        // The second entry finishes first: the resume index has to stay on the first one
+        downloads.started.get(1).complete(tempDir.resolve("v2.mp4").toFile());
+        await(() -> downloads.started.size() == 3);
+        assertEquals(1, journal.get(id).getResumeIndex());
+
+        downloads.started.get(0).completeExceptionally(new IllegalStateException("gone"));
+        await(() -> journal.get(id).getResumeIndex() == 3);
+        assertEquals(1, journal.get(id).getEntriesCompleted());
+        assertEquals(1, journal.get(id).getEntriesFailed());
+
+        await(() -> downloads.started.size() == 4);
+        downloads.started.get(2).complete(tempDir.resolve("v3.mp4").toFile());
+        downloads.started.get(3).complete(tempDir.resolve("v4.mp4").toFile());
+        await(() -> downloads.started.size() == 5);
+        downloads.started.get(4).complete(tempDir.resolve("v5.mp4").toFile());
+
+        await(() -> journal.get(id).getState() == JobState.DONE);
+        JobRecord record = journal.get(id);
+        assertEquals(JobType.PLAYLIST, record.getType());
+        assertEquals(4, record.getEntriesCompleted());
+        assertEquals(1, record.getEntriesFailed());
+        assertEquals(5, record.getEntriesTotal());
+        assertEquals(6, record.getResumeIndex());
+        assertEquals(JobPriority.BATCH, record.getPriority());
+        assertEquals("https://www.youtube.com/watch?v=v1", downloads.startedUrls.get(0));
+        assertEquals(100, service.progressService.getProgress(id).getPercentage());
+    }
+
+    @Test
+    void issuingStopsAFixedDistancePastAnEntryThatDoesNotFinish() throws Exception {
+        FakeDownloadService downloads = new FakeDownloadService(100);
+        PlaylistJobService service = open(downloads);
+        String id = service.submit("https://www.youtube.com/playlist?list=PL1", "18", "archiver", null);
+
+        // The first entry hangs while every later one finishes as soon as it starts
+        int window = service.maxInFlight * 16;
+        await(() -> {
+            for (int i = 1; i < downloads.started.size(); i++) {
+                downloads.started.get(i).complete(tempDir.resolve("video.mp4").toFile());
+            }
+            return downloads.started.size() == window;
+        });
+        Thread.sleep(200);
+        assertEquals(window, downloads.started.size(), "issuing may only run " + window + " entries ahead");
+        assertEquals(1, journal.get(id).getResumeIndex());
+
+        downloads.started.get(0).complete(tempDir.resolve("v1.mp4").toFile());
+        await(() -> {
+            for (CompletableFuture<File> future : downloads.started) {
+                future.complete(tempDir.resolve("video.mp4").toFile());
+            }
+            return journal.get(id).getState() == JobState.DONE;
+        });
+        assertEquals(100, journal.get(id).getEntriesCompleted());
+        assertEquals(101, journal.get(id).getResumeIndex());
+    }
+
+    @Test
+    void resumedPlaylistContinuesFromItsResumeIndex() throws Exception {
+        FakeDownloadService downloads = new FakeDownloadService(4);
+        PlaylistJobService service = open(downloads);
+        JobRecord interrupted = new JobRecord("playlist", "https://www.youtube.com/@channel/videos", null,
+                "archiver", JobPriority.BATCH);
+        interrupted.setType(JobType.PLAYLIST);
+        interrupted.setState(JobState.RUNNING);
+        interrupted.setResumeIndex(3);
+        interrupted.setEntriesCompleted(2);
+        journal.record(interrupted);
+
+        service.onStart(null);
+        await(() -> downloads.started.size() == 2);
+        assertEquals(List.of(3), downloads.enumeratedFrom);
+        List<String> expected = new ArrayList<>(List.of("https://www.youtube.com/watch?v=v3",
+                "https://www.youtube.com/watch?v=v4"));
+        assertEquals(expected, downloads.startedUrls);
+        for (CompletableFuture<File> future : downloads.started) {
+            future.complete(tempDir.resolve("video.mp4").toFile());
+        }
+
+        await(() -> journal.get("playlist").getState() == JobState.DONE);
+        assertEquals(4, journal.get("playlist").getEntriesCompleted());
+        assertEquals(4, journal.get("playlist").getEntriesTotal());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met within 5 seconds");
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,48 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.Test;
+import org.virtual.society.service.ProgressLineParser.LineType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressLineParserTest {
+
+    private final ProgressLineParser parser = new ProgressLineParser();
+
+    @Test
+    void parsesProgressLines() {
+        assertEquals(LineType.PROGRESS, parser.parse("[download]  45.3% of   10.00MiB at    1.50MiB/s ETA 00:05"));
+        assertEquals(45.3, parser.percent(), 1e-9);
+        assertEquals(10L * 1024 * 1024, parser.totalBytes());
+        assertEquals(1.5 * 1024 * 1024, parser.bytesPerSecond(), 1e-6);
+        assertEquals(5, parser.etaSeconds());
+        assertEquals((long) (10L * 1024 * 1024 * 0.453), parser.downloadedBytes());
+
+        assertEquals(LineType.PROGRESS, parser.parse("[download]   3.0% of ~  1.20GiB at  512.00KiB/s ETA 1:02:05 (frag 3/120)"));
+        assertTrue(parser.totalEstimated());
+        assertEquals((long) (1.2 * 1024 * 1024 * 1024), parser.totalBytes());
+        assertEquals(3725, parser.etaSeconds());
+
+        assertEquals(LineType.PROGRESS, parser.parse("[download]   0.0% of   10.00MiB at  Unknown B/s ETA Unknown"));
+        assertEquals(-1, parser.bytesPerSecond());
+        assertEquals(-1, parser.etaSeconds());
+    }
+
+    @Test
+    void recognizesStartAndSummaryLines() {
+        assertEquals(LineType.STARTED, parser.parse("[download] Destination: Title [abc].f137.mp4"));
+        assertEquals(LineType.FINISHED, parser.parse("[download] 100% of   10.00MiB in 00:00:08 at 1.25MiB/s"));
+        assertEquals(100, parser.percent());
+        assertEquals(1.25 * 1024 * 1024, parser.bytesPerSecond(), 1e-6);
+        assertEquals(LineType.MERGING, parser.parse("[Merger] Merging formats into \"Title [abc].mp4\""));
+    }
+
+    @Test
+    void ignoresOtherOutput() {
+        assertEquals(LineType.NONE, parser.parse("[youtube] abc: Downloading webpage"));
+        assertEquals(LineType.NONE, parser.parse("[download] Title [abc].mp4 has already been downloaded"));
+        assertEquals(LineType.NONE, parser.parse("[download]"));
+        assertEquals(LineType.NONE, parser.parse(""));
+    }
+}
@@ -0,0 +1,117 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.DownloadProgress;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressStoreTest {
+
+    private static final long MINUTE = 60_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void finishedEntriesExpireAfterTheirTtlAndActiveOnesAreRescheduled() {
+        long now = 1_000_000;
+        ProgressStore store = new ProgressStore(4, 1000, 10 * MINUTE, 60 * MINUTE, now);
+        DownloadProgress finished = store.getOrCreate("finished", now);
+        finished.transition(DownloadPhase.COMPLETED, null, now);
+        DownloadProgress running = store.getOrCreate("running", now);
+
+        assertEquals(List.of(), store.expire(now + 9 * MINUTE));
+        assertEquals(List.of("finished"), store.expire(now + 11 * MINUTE));
+        assertNull(store.get("finished"));
+        assertNotNull(store.get("running"));
+
+        // An update pushes the expiry out without touching the wheel
+        running.recordTransfer(50, 1000, 2000, now + 50 * MINUTE, 5000);
+        assertEquals(List.of(), store.expire(now + 70 * MINUTE));
+        assertNotNull(store.get("running"));
+        assertEquals(List.of("running"), store.expire(now + 111 * MINUTE));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void wheelCatchesUpAfterAPauseLongerThanARevolution() {
+        long now = 0;
+        ExpiryWheel wheel = new ExpiryWheel(8, 1000, now);
+        wheel.schedule("a", 3_000);
+        wheel.schedule("b", 20_000);
+        wheel.schedule("c", 100_000);
+        assertEquals(List.of(), wheel.advance(2_500));
+        assertEquals(List.of("a", "b"), wheel.advance(50_000).stream().sorted().toList());
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("c"), wheel.advance(100_000));
+    }
+
+    @Test
+    void capEvictsFinishedJobsBeforeRunningOnes() {
+        long now = 0;
+        ProgressStore store = new ProgressStore(1, 3, 10 * MINUTE, 60 * MINUTE, now);
+        store.getOrCreate("running-1", now);
+        store.getOrCreate("done", now).transition(DownloadPhase.FAILED, "boom", now);
+        store.getOrCreate("running-2", now);
+
+        store.getOrCreate("running-3", now);
+        assertNull(store.get("done"));
+        assertEquals(3, store.size());
+        store.getOrCreate("running-4", now);
+        assertNull(store.get("running-1"));
+        assertEquals(2, store.evictions());
+        assertEquals(List.of("done", "running-1"), store.expire(now + 1000));
+    }
+
+    @Test
+    void bulkLookupKeepsRequestOrderAndSkipsUnknownIds() {
+        DownloadProgressService service = newService();
+        service.updatePhase("b", DownloadPhase.DOWNLOADING);
+        service.updatePhase("a", DownloadPhase.QUEUED);
+
+        Map<String, DownloadProgress> found = service.getProgress(List.of("a", "missing", "b"));
+        assertEquals(List.of("a", "b"), List.copyOf(found.keySet()));
+        assertEquals(DownloadPhase.DOWNLOADING, found.get("b").getPhase());
+    }
+
+    @Test
+    void directoryBackendSharesProgressWithAnotherInstance() {
+        DownloadProgressService owner = newService();
+        owner.setBackend(new DirectoryProgressBackend(tempDir, Duration.ofHours(6)));
+        DownloadProgressService other = newService();
+        other.setBackend(new DirectoryProgressBackend(tempDir, Duration.ofHours(6)));
+
+        owner.updateTransfer("job-1", 40, 400, 1000);
+        assertNull(other.getProgress("job-1"), "nothing is written outside the maintenance tick");
+        owner.maintain(System.currentTimeMillis());
+        DownloadProgress shared = other.getProgress("job-1");
+        assertEquals(400, shared.getBytesDone());
+        assertEquals(DownloadPhase.DOWNLOADING, shared.getPhase());
+
+        owner.removeProgress("job-1");
+        assertNull(other.getProgress("job-1"));
+        assertNull(other.getProgress("../escape"));
+    }
+
+    private static DownloadProgressService newService() {
+        DownloadProgressService service = new DownloadProgressService();
+        service.rateWindow = Duration.ofSeconds(5);
+        service.shards = 4;
+        service.maxEntries = 1000;
+        service.finishedTtl = Duration.ofMinutes(10);
+        service.idleTtl = Duration.ofHours(6);
+        service.backendType = "memory";
+        service.init();
+        return service;
+    }
+}
@@ -0,0 +1,148 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.virtual.society.model.DownloadPhase;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StallWatchdogTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private DownloadProgressService progress;
+    private StallWatchdog watchdog;
+    private Process process;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        progress = new DownloadProgressService();
+        progress.rateWindow = Duration.ofSeconds(5);
+        progress.shards = 4;
+        progress.maxEntries = 1000;
+        progress.finishedTtl = Duration.ofMinutes(10);
+        progress.idleTtl = Duration.ofHours(6);
+        progress.backendType = "memory";
+        progress.init();
+        watchdog = new StallWatchdog();
+        watchdog.progressService = progress;
+        watchdog.startTimeout = Duration.ofSeconds(120);
+        watchdog.stallTimeout = Duration.ofSeconds(60);
+        watchdog.initialDeadline = Duration.ofSeconds(300);
+        watchdog.maxDuration = Duration.ofHours(12);
+        watchdog.minBytesPerSecond = 16 * 1024;
+        watchdog.mergeTimeout = Duration.ofMinutes(30);
+        watchdog.maxRetries = 3;
+        watchdog.retryBackoff = Duration.ofSeconds(5);
+        process = new ProcessBuilder("sleep", "60").start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        process.destroyForcibly();
+    }
+
+    @Test
+    void transferWithoutNewBytesIsKilledAsStalled() throws Exception {
+        long start = System.currentTimeMillis();
+        StallWatchdog.Watch watch = watchdog.watch("job", process);
+        transfer(0);
+        transfer(MB);
+        watchdog.check(start + 1_000);
+        watchdog.check(start + 40_000);
+        assertNull(watch.getVerdict());
+        assertTrue(process.isAlive());
+
+        watchdog.check(start + 62_000);
+        assertEquals(StallWatchdog.Verdict.STALLED, watch.getVerdict());
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void healthyTransferRunsPastTheInitialDeadline() {
+        long start = System.currentTimeMillis();
+        StallWatchdog.Watch watch = watchdog.watch("job", process);
+        transfer(0);
+        for (int second = 10; second <= 900; second += 10) {
+            transfer(second / 10 * MB);
+            watchdog.check(start + second * 1000L);
+        }
+        assertNull(watch.getVerdict());
+        assertTrue(process.isAlive());
+    }
+
+    @Test
+    void trickleBelowTheMinimumRateTimesOutAtTheDeadline() throws Exception {
+        long start = System.currentTimeMillis();
+        StallWatchdog.Watch watch = watchdog.watch("job", process);
+        transfer(0);
+        // 1 KiB/s keeps clear of the stall timeout but is far below the healthy rate
+        for (int second = 10; second <= 290; second += 10) {
+            transfer(second * 1024L);
+            watchdog.check(start + second * 1000L);
+        }
+        assertNull(watch.getVerdict());
+        transfer(310 * 1024L);
+        watchdog.check(start + 310_000);
+        assertEquals(StallWatchdog.Verdict.TIMED_OUT, watch.getVerdict());
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void aLongMergeIsNotAStallButHasItsOwnTimeout() throws Exception {
+        long start = System.currentTimeMillis();
+        StallWatchdog.Watch watch = watchdog.watch("job", process);
+        transfer(0);
+        for (int second = 10; second <= 100; second += 10) {
+            transfer(second / 10 * MB);
+            watchdog.check(start + second * 1000L);
+        }
+        progress.updatePhase("job", DownloadPhase.MERGING);
+        // Far past both the stall timeout and the deadline the transfer earned
+        watchdog.check(start + 110_000);
+        watchdog.check(start + 1_500_000);
+        assertNull(watch.getVerdict());
+        assertTrue(process.isAlive());
+
+        watchdog.check(start + 1_911_000);
+        assertEquals(StallWatchdog.Verdict.TIMED_OUT, watch.getVerdict());
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void processThatNeverStartsTransferringGetsTheStartTimeout() {
+        long start = System.currentTimeMillis();
+        StallWatchdog.Watch watch = watchdog.watch("job", process);
+        watchdog.check(start + 90_000);
+        assertNull(watch.getVerdict());
+        watchdog.check(start + 125_000);
+        assertEquals(StallWatchdog.Verdict.STALLED, watch.getVerdict());
+    }
+
+    @Test
+    void closedWatchesAreNoLongerChecked() {
+        long start = System.currentTimeMillis();
+        StallWatchdog.Watch watch = watchdog.watch("job", process);
+        watch.close();
+        watchdog.check(start + 600_000);
+        assertNull(watch.getVerdict());
+        assertTrue(process.isAlive());
+        assertEquals(Duration.ofSeconds(20), watchdog.backoff(3));
+    }
+
+    private void transfer(long bytes) {
+        try {
+            // Progress samples within the same millisecond are not counted as transferred bytes
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        progress.updateTransfer("job", bytes * 100.0 / (1024 * MB), bytes, 1024 * MB);
+    }
+}
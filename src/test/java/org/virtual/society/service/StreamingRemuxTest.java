@@ -0,0 +1,113 @@
+package org.virtual.society.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.virtual.society.model.SegmentState;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class StreamingRemuxTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DownloadMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new DownloadMetrics();
+        metrics.registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void contiguousBytesStopAtTheFirstGap() {
+        assertEquals(0, StreamingRemux.contiguousBytes(List.of()));
+        assertEquals(300, StreamingRemux.contiguousBytes(List.of(
+                new SegmentState(200, 300, 400), new SegmentState(0, 100, 100), new SegmentState(100, 200, 200))));
+        assertEquals(150, StreamingRemux.contiguousBytes(List.of(
+                new SegmentState(0, 100, 100), new SegmentState(100, 150, 200), new SegmentState(200, 400, 400))));
+        assertEquals(400, StreamingRemux.contiguousBytes(List.of(
+                new SegmentState(0, 200, 200), new SegmentState(200, 400, 400))));
+    }
+
+    // The muxer copies each pipe to its own file, so the test sees exactly what was fed
+    @Test
+    void feedsOnlyTheDurablePrefixOfEachPart() throws Exception {
+        byte[] video = randomBytes(300_000, 1);
+        byte[] audio = randomBytes(120_000, 2);
+        Path videoPart = Files.write(tempDir.resolve("clip.f137.mp4"), video);
+        Path audioPart = Files.write(tempDir.resolve("clip.f140.m4a"), audio);
+        Path videoOut = tempDir.resolve("video.out");
+        Path audioOut = tempDir.resolve("audio.out");
+
+        StreamingRemux remux = StreamingRemux.start(List.of(videoPart, audioPart), inputs -> new ProcessBuilder(
+                "sh", "-c", "cat \"$1\" > \"$3\" & cat \"$2\" > \"$4\"; wait", "sh",
+                inputs.get(0).toString(), inputs.get(1).toString(), videoOut.toString(), audioOut.toString())
+                .start(), metrics);
+        assertNotNull(remux);
+        try {
+            remux.advance(0, 100_000, false);
+            remux.advance(1, 50_000, false);
+            awaitSize(videoOut, 100_000);
+            awaitSize(audioOut, 50_000);
+            Thread.sleep(100);
+            assertEquals(100_000, Files.size(videoOut));
+            assertEquals(50_000, Files.size(audioOut));
+            assertFalse(remux.await(10, TimeUnit.MILLISECONDS), "the muxer must wait for the rest of the parts");
+
+            remux.advance(1, audio.length, true);
+            remux.advance(0, video.length, true);
+            assertTrue(remux.await(5, TimeUnit.SECONDS));
+        } finally {
+            remux.close();
+        }
+        assertArrayEquals(video, Files.readAllBytes(videoOut));
+        assertArrayEquals(audio, Files.readAllBytes(audioOut));
+        assertFalse(Files.exists(tempDir.resolve("clip.f137.mp4.fifo")));
+    }
+
+    @Test
+    void aMuxerThatNeverOpensItsInputsDoesNotHangTheDownload() throws Exception {
+        Path videoPart = Files.write(tempDir.resolve("clip.f137.mp4"), randomBytes(1000, 3));
+        Path audioPart = Files.write(tempDir.resolve("clip.f140.m4a"), randomBytes(1000, 4));
+
+        StreamingRemux remux = StreamingRemux.start(List.of(videoPart, audioPart),
+                inputs -> new ProcessBuilder("sh", "-c", "exit 3").start(), metrics);
+        assertNotNull(remux);
+        remux.advance(0, 1000, true);
+        remux.advance(1, 1000, true);
+        assertFalse(remux.await(5, TimeUnit.SECONDS));
+        assertTimeoutPreemptively(Duration.ofSeconds(5), remux::close);
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void awaitSize(Path file, long size) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!Files.exists(file) || Files.size(file) < size) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(file + " did not reach " + size + " bytes");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
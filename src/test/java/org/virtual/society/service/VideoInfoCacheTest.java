@@ -0,0 +1,125 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.model.VideoInfo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VideoInfoCacheTest {
+
+    private VideoInfoCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new VideoInfoCache();
+        cache.maxBytes = 1024 * 1024;
+        cache.ttl = Duration.ofMinutes(30);
+        cache.init();
+    }
+
+    @Test
+    void concurrentLookupsOfOneVideoShareASingleExtraction() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        VideoInfo loaded = info("abc");
+
+        List<Future<VideoInfo>> lookups = new ArrayList<>();
+        try (ExecutorService callers = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                lookups.add(callers.submit(() -> cache.get("abc", videoId -> {
+                    loads.incrementAndGet();
+                    try {
+                        // Keeps the load in flight until every caller has asked for the video
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return loaded;
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<VideoInfo> lookup : lookups) {
+                assertSame(loaded, lookup.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(7, cache.getStats().getHitCount());
+        assertSame(loaded, cache.getIfPresent("abc"));
+    }
+
+    @Test
+    void aFailedExtractionIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        DownloadException failure = assertThrows(DownloadException.class, () -> cache.get("abc", videoId -> {
+            loads.incrementAndGet();
+            throw new DownloadException("yt-dlp exited with code 1");
+        }));
+        assertEquals("yt-dlp exited with code 1", failure.getMessage());
+        assertNull(cache.getIfPresent("abc"));
+
+        VideoInfo loaded = info("abc");
+        assertSame(loaded, cache.get("abc", videoId -> {
+            loads.incrementAndGet();
+            return loaded;
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void waitersAreReleasedWhenTheLoaderThrowsAnError() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService callers = Executors.newFixedThreadPool(2)) {
+            Future<VideoInfo> loader = callers.submit(() -> cache.get("abc", videoId -> {
+                loading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new OutOfMemoryError("Java heap space");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<VideoInfo> waiter = callers.submit(() -> cache.get("abc", videoId -> info("other")));
+            Thread.sleep(200);
+            release.countDown();
+
+            ExecutionException loaderFailure = assertThrows(ExecutionException.class, () -> loader.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(OutOfMemoryError.class, loaderFailure.getCause());
+            ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DownloadException.class, waiterFailure.getCause());
+        }
+        assertNull(cache.getIfPresent("abc"));
+        VideoInfo loaded = info("abc");
+        assertSame(loaded, cache.get("abc", videoId -> loaded));
+    }
+
+    private static VideoInfo info(String videoId) {
+        VideoInfo info = new VideoInfo();
+        info.setId(videoId);
+        info.setTitle("Video " + videoId);
+        return info;
+    }
+}
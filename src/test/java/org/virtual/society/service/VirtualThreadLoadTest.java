@@ -0,0 +1,122 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.virtual.society.model.JobPriority;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Many concurrently running jobs must not cost a platform thread each or starve the common pool
+class VirtualThreadLoadTest {
+
+    private DownloadScheduler scheduler;
+
+    private DownloadScheduler newScheduler(int maxConcurrent) {
+        scheduler = new DownloadScheduler();
+        scheduler.maxConcurrent = maxConcurrent;
+        scheduler.queueCapacity = maxConcurrent;
+        scheduler.interactiveWeight = 3;
+        scheduler.init();
+        return scheduler;
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void thousandsOfBlockedJobsRunWithoutAPlatformThreadEach() throws Exception {
+        int jobs = 5_000;
+        newScheduler(jobs);
+        int platformThreadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < jobs; i++) {
+            futures.add(scheduler.submit("client-" + (i % 50), JobPriority.values()[i % 2], () -> {
+                try {
+                    return release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }));
+        }
+        waitForRunning(jobs);
+
+        // Every job is running and blocked at once; the JVM only sees the carriers
+        int platformThreadsGrowth = ManagementFactory.getThreadMXBean().getThreadCount() - platformThreadsBefore;
+        assertTrue(platformThreadsGrowth < Runtime.getRuntime().availableProcessors() + 32,
+                "platform threads grew by " + platformThreadsGrowth);
+        assertEquals(42, CompletableFuture.supplyAsync(() -> 42).get(1, TimeUnit.SECONDS),
+                "common pool must stay available");
+
+        release.countDown();
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.get(30, TimeUnit.SECONDS));
+        }
+        assertEquals(jobs, scheduler.getStats().getStarted());
+    }
+
+    @Test
+    void concurrentSubprocessesAreWaitedOnWithoutPinningCarriers() throws Exception {
+        // More processes than the virtual-thread scheduler has carriers, even after compensation
+        int jobs = 300;
+        newScheduler(jobs);
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < jobs; i++) {
+            int job = i;
+            futures.add(scheduler.submit("load", JobPriority.BATCH, () -> runProcess(job)));
+        }
+        for (int i = 0; i < jobs; i++) {
+            assertEquals("done " + i, futures.get(i).get(60, TimeUnit.SECONDS));
+        }
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+        // Serialised on a handful of carriers this would take jobs x 1s
+        assertTrue(seconds < 30, "took " + seconds + "s");
+    }
+
+    private String runProcess(int job) {
+        try {
+            Process process = new ProcessBuilder("sh", "-c", "sleep 1; echo done " + job)
+                    .redirectErrorStream(true).start();
+            String line;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                line = reader.readLine();
+            }
+            if (!Processes.waitFor(process, 30, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                throw new IllegalStateException("process " + job + " did not exit cleanly");
+            }
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void waitForRunning(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (scheduler.getStats().getRunning() != expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("expected " + expected + " running jobs, saw " + scheduler.getStats().getRunning());
+            }
+            Thread.sleep(10);
+        }
+    }
+}
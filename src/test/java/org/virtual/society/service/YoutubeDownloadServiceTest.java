@@ -0,0 +1,141 @@
+package org.virtual.society.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.exceptions.ProcessFailedException;
+import org.virtual.society.model.DownloadPhase;
+import org.virtual.society.model.JobPriority;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YoutubeDownloadServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DownloadProgressService progress;
+    private DownloadScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        progress = new DownloadProgressService();
+        progress.rateWindow = Duration.ofSeconds(5);
+        progress.shards = 4;
+        progress.maxEntries = 1000;
+        progress.finishedTtl = Duration.ofMinutes(10);
+        progress.idleTtl = Duration.ofHours(6);
+        progress.backendType = "memory";
+        progress.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    // A non-zero yt-dlp exit surfaces as a RuntimeException, which has to report FAILED like I/O errors do
+    @Test
+    void aFailedYtDlpRunEndsTheStream() throws Exception {
+        Path ytDlp = tempDir.resolve("yt-dlp");
+        Files.writeString(ytDlp, "#!/bin/sh\necho 'ERROR: [youtube] abc: Video unavailable'\nexit 1\n");
+        assertTrue(ytDlp.toFile().setExecutable(true));
+        YoutubeDownloadService downloads = downloadService(ytDlp);
+
+        ProgressSubscription subscription = progress.subscribe(Set.of("job"));
+        CompletableFuture<?> download = downloads.downloadVideo("https://www.youtube.com/watch?v=abc", "best",
+                "job", "client", JobPriority.INTERACTIVE);
+
+        assertThrows(ExecutionException.class, () -> download.get(10, TimeUnit.SECONDS));
+        assertEquals(DownloadPhase.FAILED, progress.getProgress("job").getPhase());
+        subscription.drain();
+        assertTrue(subscription.isFinished());
+    }
+
+    // The process keeps its stdout open without finishing the document, so only the deadline ends the parse
+    @Test
+    void aDumpJsonFallbackThatHangsTimesOut() throws Exception {
+        Path ytDlp = tempDir.resolve("yt-dlp");
+        Files.writeString(ytDlp, "#!/bin/sh\nprintf '{\"id\": \"abc\", '\nexec sleep 60\n");
+        assertTrue(ytDlp.toFile().setExecutable(true));
+        YoutubeDownloadService downloads = downloadService(ytDlp);
+        downloads.dumpJsonTimeout = Duration.ofSeconds(1);
+
+        DownloadException failure = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                assertThrows(DownloadException.class,
+                        () -> downloads.getVideoInfo("https://www.youtube.com/watch?v=abc")));
+        ProcessFailedException cause = assertInstanceOf(ProcessFailedException.class, failure.getCause());
+        assertTrue(cause.isTimedOut());
+    }
+
+    private YoutubeDownloadService downloadService(Path ytDlp) {
+        DownloadMetrics metrics = new DownloadMetrics();
+        metrics.registry = new SimpleMeterRegistry();
+        scheduler = new DownloadScheduler();
+        scheduler.maxConcurrent = 1;
+        scheduler.queueCapacity = 10;
+        scheduler.interactiveWeight = 3;
+        scheduler.init();
+        BandwidthManager bandwidth = new BandwidthManager();
+        bandwidth.burstBytes = 262144;
+        bandwidth.init();
+        ArtifactStore store = new ArtifactStore();
+        store.storeDir = tempDir.resolve("store").toString();
+        store.stagingDir = tempDir.resolve("staging").toString();
+        store.maxBytes = Long.MAX_VALUE;
+        JobJournal journal = new JobJournal();
+        journal.enabled = false;
+        InfoJsonStore infoJson = new InfoJsonStore();
+        infoJson.enabled = false;
+        StallWatchdog watchdog = new StallWatchdog();
+        watchdog.progressService = progress;
+        watchdog.startTimeout = Duration.ofSeconds(120);
+        watchdog.stallTimeout = Duration.ofSeconds(60);
+        watchdog.initialDeadline = Duration.ofSeconds(300);
+        watchdog.maxDuration = Duration.ofHours(12);
+        watchdog.minBytesPerSecond = 16384;
+        watchdog.mergeTimeout = Duration.ofMinutes(30);
+        watchdog.maxRetries = 3;
+        watchdog.retryBackoff = Duration.ofSeconds(5);
+
+        VideoInfoCache videoInfoCache = new VideoInfoCache();
+        videoInfoCache.maxBytes = 1024 * 1024;
+        videoInfoCache.ttl = Duration.ofMinutes(30);
+        videoInfoCache.init();
+        YtDlpWorkerPool workerPool = new YtDlpWorkerPool();
+        workerPool.enabled = false;
+
+        YoutubeDownloadService downloads = new YoutubeDownloadService();
+        downloads.progressService = progress;
+        downloads.scheduler = scheduler;
+        downloads.journal = journal;
+        downloads.bandwidthManager = bandwidth;
+        downloads.artifactStore = store;
+        downloads.infoJsonStore = infoJson;
+        downloads.videoInfoCache = videoInfoCache;
+        downloads.workerPool = workerPool;
+        downloads.metrics = metrics;
+        downloads.watchdog = watchdog;
+        downloads.ytDlpCommand = ytDlp.toString();
+        downloads.engineEnabled = false;
+        downloads.dumpJsonTimeout = Duration.ofSeconds(300);
+        return downloads;
+    }
+}
@@ -0,0 +1,34 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.virtual.society.model.YtDlpStatus;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YtDlpHealthProberTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void aProbeThatHangsWithItsOutputOpenTimesOut() throws Exception {
+        Path hanging = tempDir.resolve("yt-dlp");
+        Files.writeString(hanging, "#!/bin/sh\necho 2025.01.01\nexec sleep 60\n");
+        assertTrue(hanging.toFile().setExecutable(true));
+        YtDlpHealthProber prober = new YtDlpHealthProber();
+        prober.ytDlpCommand = hanging.toString();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), prober::probeVersions);
+
+        YtDlpStatus status = prober.getStatus();
+        assertFalse(status.isAvailable());
+        assertTrue(status.getError().contains("timed out"), status.getError());
+    }
+}
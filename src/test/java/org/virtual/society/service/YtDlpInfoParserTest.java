@@ -0,0 +1,86 @@
+package org.virtual.society.service;
+
+import org.junit.jupiter.api.Test;
+import org.virtual.society.model.MediaStream;
+import org.virtual.society.model.ResolvedMedia;
+import org.virtual.society.model.VideoFormat;
+import org.virtual.society.model.VideoInfo;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YtDlpInfoParserTest {
+
+    private static final String DOCUMENT = """
+            {"id": "abc123", "title": "Sample", "description": "About", "thumbnail": "https://i.ytimg.com/a.jpg",
+             "duration": 3725, "view_count": 1520000, "upload_date": "20240131",
+             "automatic_captions": {"en": [{"ext": "vtt", "url": "https://captions/en", "nested": {"deep": [1, 2, {"x": null}]}}]},
+             "formats": [
+               {"format_id": "140", "ext": "m4a", "vcodec": "none", "acodec": "mp4a.40.2", "asr": 44100, "filesize": 2048,
+                "url": "https://media/140", "fragments": [{"url": "a"}, {"url": "b"}]},
+               {"format_id": "137", "ext": "mp4", "vcodec": "avc1.640028", "acodec": "none", "height": 1080, "fps": 29.97,
+                "filesize": 5242880, "url": "https://media/137"},
+               {"format_id": "sb0", "ext": "mhtml", "vcodec": "none", "acodec": "none"}
+             ],
+             "requested_formats": [
+               {"format_id": "137", "ext": "mp4", "protocol": "https", "url": "https://media/137", "vcodec": "avc1",
+                "acodec": "none", "filesize": 5242880, "http_headers": {"User-Agent": "UA"}},
+               {"format_id": "140", "ext": "m4a", "protocol": "https", "url": "https://media/140", "vcodec": "none",
+                "acodec": "mp4a.40.2", "filesize_approx": 2048}
+             ],
+             "http_headers": {"User-Agent": "root"},
+             "ext": "mp4"}
+            """;
+
+    @Test
+    void extractsInfoAndSkipsUnusedSubtrees() throws Exception {
+        VideoInfo info = YtDlpInfoParser.parseVideoInfo(new StringReader(DOCUMENT));
+        assertEquals("abc123", info.getId());
+        assertEquals("Sample", info.getTitle());
+        assertEquals("1:02:05", info.getDuration());
+        assertEquals("1.5M views", info.getViews());
+        assertEquals("2024-01-31", info.getUploadDate());
+        assertEquals(2, info.getFormats().size());
+
+        VideoFormat audio = info.getFormats().get(0);
+        assertEquals("Audio Only", audio.getQuality());
+        assertEquals("M4A", audio.getFormat());
+        assertEquals("44 kHz", audio.getBitrate());
+        assertEquals("2.0 KB", audio.getSize());
+
+        VideoFormat video = info.getFormats().get(1);
+        assertEquals("1080p", video.getQuality());
+        assertEquals(29, video.getFps());
+        assertEquals("5.0 MB", video.getSize());
+    }
+
+    @Test
+    void resolvesRequestedFormatsWithHeaderFallback() throws Exception {
+        ResolvedMedia media = YtDlpInfoParser.parseResolvedMedia(new StringReader(DOCUMENT));
+        assertEquals("abc123", media.getVideoId());
+        assertEquals(2, media.getStreams().size());
+        MediaStream video = media.getStreams().get(0);
+        assertEquals("https://media/137", video.getUrl());
+        assertEquals("UA", video.getHttpHeaders().get("User-Agent"));
+        MediaStream audio = media.getStreams().get(1);
+        assertEquals(2048, audio.getFileSize());
+        assertEquals("root", audio.getHttpHeaders().get("User-Agent"));
+    }
+
+    @Test
+    void fallsBackToTheTopLevelUrlForSingleFileFormats() throws Exception {
+        ResolvedMedia media = YtDlpInfoParser.parseResolvedMedia(new StringReader(
+                "{\"id\": \"one\", \"title\": null, \"format_id\": \"18\", \"url\": \"https://media/18\","
+                        + " \"protocol\": \"https\", \"vcodec\": \"avc1\", \"acodec\": \"mp4a\", \"formats\": [{\"url\": \"x\"}]}"));
+        assertEquals("video", media.getTitle());
+        assertEquals("mp4", media.getExt());
+        assertEquals(1, media.getStreams().size());
+        MediaStream stream = media.getStreams().get(0);
+        assertEquals("18", stream.getFormatId());
+        assertEquals("https://media/18", stream.getUrl());
+        assertTrue(stream.isVideo() && stream.isAudio());
+        assertTrue(stream.getHttpHeaders().isEmpty());
+    }
+}
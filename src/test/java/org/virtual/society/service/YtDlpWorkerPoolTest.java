@@ -0,0 +1,161 @@
+package org.virtual.society.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.virtual.society.exceptions.DownloadException;
+import org.virtual.society.exceptions.WorkerUnavailableException;
+
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YtDlpWorkerPoolTest {
+
+    // Speaks the worker protocol without yt_dlp; the payload reports the serving process id
+    private static final String FAKE_WORKER = """
+            import json, os, sys, time
+            for line in sys.stdin:
+                request = json.loads(line)
+                header = {'id': request['id'], 'ok': True}
+                if request['op'] == 'ping':
+                    print(json.dumps(header), flush=True)
+                    continue
+                url = request['url']
+                if url == 'crash':
+                    sys.exit(1)
+                if url == 'slow':
+                    time.sleep(30)
+                if url == 'broken':
+                    print(json.dumps({'id': request['id'], 'ok': False, 'error': 'Unsupported URL'}), flush=True)
+                    continue
+                print(json.dumps(header), flush=True)
+                print(json.dumps({'pid': os.getpid(), 'format': request.get('format'),
+                                  'info_file': request.get('info_file')}), flush=True)
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private YtDlpWorkerPool pool;
+
+    private YtDlpWorkerPool open(int maxRequests) throws Exception {
+        Path script = tempDir.resolve("fake_worker.py");
+        Files.writeString(script, FAKE_WORKER);
+        pool = new YtDlpWorkerPool();
+        pool.metrics = new DownloadMetrics();
+        pool.metrics.registry = new SimpleMeterRegistry();
+        pool.enabled = true;
+        pool.command = "python3";
+        pool.script = Optional.of(script.toString());
+        pool.size = 1;
+        pool.maxRequests = maxRequests;
+        pool.callTimeout = Duration.ofSeconds(2);
+        pool.startupTimeout = Duration.ofSeconds(1);
+        pool.init();
+        return pool;
+    }
+
+    @AfterEach
+    void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static String pid(String payload) {
+        return payload.replaceAll(".*\"pid\": (\\d+).*", "$1");
+    }
+
+    @Test
+    void reusesTheSameProcessUntilMaxRequests() throws Exception {
+        open(3);
+        String first = pid(pool.dumpJson("a", "18"));
+        assertEquals(first, pid(pool.dumpJson("b", null)));
+        assertEquals(first, pid(pool.dumpJson("c", null)));
+        // The third call retired the worker
+        assertNotEquals(first, pid(pool.dumpJson("d", null)));
+        assertTrue(pool.dumpJson("e", "18").contains("\"format\": \"18\""));
+    }
+
+    @Test
+    void replacesWorkersThatTimeOutOrCrash() throws Exception {
+        open(100);
+        String first = pid(pool.dumpJson("a", null));
+        DownloadException timeout = assertThrows(DownloadException.class, () -> pool.dumpJson("slow", null));
+        assertTrue(timeout.getMessage().contains("timed out"), timeout.getMessage());
+        String second = pid(pool.dumpJson("a", null));
+        assertNotEquals(first, second);
+
+        assertThrows(DownloadException.class, () -> pool.dumpJson("crash", null));
+        assertNotEquals(second, pid(pool.dumpJson("a", null)));
+    }
+
+    @Test
+    void aWorkerThatHangsAtStartupDoesNotBlockThePool() throws Exception {
+        open(100);
+        Path hanging = tempDir.resolve("hanging_worker.py");
+        Files.writeString(hanging, "import time\ntime.sleep(60)\n");
+        pool.script = Optional.of(hanging.toString());
+
+        pool.onStart(null);
+
+        // The startup ping times out and the pool reports itself unavailable instead of hanging
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            while (true) {
+                try {
+                    pool.dumpJson("a", null);
+                } catch (WorkerUnavailableException e) {
+                    return;
+                } catch (DownloadException e) {
+                    // Still waiting for the permit the prewarm holds
+                }
+            }
+        });
+    }
+
+    @Test
+    void extractionErrorsKeepTheWorker() throws Exception {
+        open(100);
+        String first = pid(pool.dumpJson("a", null));
+        DownloadException error = assertThrows(DownloadException.class, () -> pool.dumpJson("broken", null));
+        assertTrue(error.getMessage().contains("Unsupported URL"));
+        assertEquals(first, pid(pool.dumpJson("a", null)));
+    }
+
+    @Test
+    void partiallyReadPayloadsDoNotDesyncTheWorker() throws Exception {
+        open(100);
+        char[] head = new char[5];
+        String prefix = pool.extract("a", null, payload -> new String(head, 0, payload.read(head)));
+        assertEquals("{\"pid", prefix);
+        assertTrue(pool.dumpJson("b", null).startsWith("{\"pid\""));
+    }
+
+    @Test
+    void passesStoredExtractionsToTheWorker() throws Exception {
+        open(100);
+        Path infoJson = tempDir.resolve("abc.info.json");
+        String payload = pool.extract("a", infoJson, "18", reader -> new BufferedReader(reader).readLine());
+        assertTrue(payload.contains("\"info_file\": \"" + infoJson.toAbsolutePath() + "\""), payload);
+        assertTrue(pool.dumpJson("b", null).contains("\"info_file\": null"));
+    }
+
+    @Test
+    void reportsUnavailableWhenWorkersCannotStart() throws Exception {
+        open(100);
+        pool.command = "definitely-not-python";
+        assertThrows(WorkerUnavailableException.class, () -> pool.dumpJson("a", null));
+        // Later calls skip straight to the fallback instead of retrying the spawn
+        assertThrows(WorkerUnavailableException.class, () -> pool.dumpJson("a", null));
+    }
+}